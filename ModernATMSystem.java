@@ -1,17 +1,61 @@
 import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Date;
-import java.util.HashMap;
-import java.util.Map;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.text.NumberFormat;
+import java.math.BigDecimal;
 import java.util.Locale;
 import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
 import java.util.function.Predicate;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import javax.swing.*;
 import javax.swing.border.*;
 import javax.swing.table.*;
@@ -37,22 +81,65 @@ public class ModernATMSystem {
         switch (mode) {
             case "console" -> {
                 // Start console mode
-                var atm = new ATM();
-                atm.start();
+                try (var bank = openBank()) {
+                    var atm = new ATM(bank);
+                    atm.start();
+                } catch (IOException e) {
+                    System.out.println("Could not close journal: " + e.getMessage());
+                }
             }
             case "demo" -> {
                 // Start demo mode
                 DemoATM.main(null);
             }
+            case "server" -> {
+                // Host remote terminals against one shared bank
+                int port = args.length > 1 ? Integer.parseInt(args[1]) : ATMHostServer.DEFAULT_PORT;
+                try (var bank = openBank(); var server = new ATMHostServer(bank, port)) {
+                    System.out.println("ATM host listening on localhost:" + server.getPort());
+                    server.serve();
+                } catch (IOException e) {
+                    System.out.println("Server error: " + e.getMessage());
+                }
+            }
+            case "host" -> {
+                // Host binary-protocol terminals from a single NIO selector thread
+                int port = args.length > 1 ? Integer.parseInt(args[1]) : TerminalHostServer.DEFAULT_PORT;
+                try (var bank = openBank(); var host = new TerminalHostServer(bank, port)) {
+                    System.out.println("Terminal host listening on localhost:" + host.getPort());
+                    host.serve();
+                } catch (IOException e) {
+                    System.out.println("Server error: " + e.getMessage());
+                }
+            }
+            case "load" -> {
+                // Import accounts from a CSV file into the journaled bank
+                if (args.length < 2) {
+                    printUsage();
+                    return;
+                }
+                try (var bank = openBank()) {
+                    var result = bank.loadAccounts(Path.of(args[1]));
+                    System.out.printf("Loaded %,d accounts (%,d already existed, %,d rejected)%n",
+                            result.loaded(), result.duplicates(), result.rejected());
+                } catch (IOException e) {
+                    System.out.println("Load failed: " + e.getMessage());
+                }
+            }
+            case "bench" -> {
+                // Run the performance benchmarks (optionally just one by name)
+                ATMBenchmark.main(java.util.Arrays.copyOfRange(args, 1, args.length));
+            }
             case "swing" -> {
                 // Start Swing GUI mode using lambdas
+                var bank = openBank();
                 SwingUtilities.invokeLater(() -> {
                     try {
                         UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
                     } catch (Exception e) {
                         e.printStackTrace();
                     }
-                    var app = new ATMSwingApp();
+                    var app = new ATMSwingApp(bank);
                     app.setVisible(true);
                 });
             }
@@ -63,6 +150,22 @@ public class ModernATMSystem {
         }
     }
 
+    /**
+     * Opens the bank on its journal so accounts survive restarts, with a
+     * snapshot every five minutes to keep startup short. Falls back to an
+     * in-memory bank if the journal can't be opened.
+     */
+    private static Bank openBank() {
+        try {
+            var bank = new Bank("State Bank of India", Bank.DEFAULT_JOURNAL);
+            bank.startSnapshots(5, java.util.concurrent.TimeUnit.MINUTES);
+            return bank;
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Journal unavailable (" + e.getMessage() + "), changes will not be saved");
+            return new Bank("State Bank of India");
+        }
+    }
+
     private static void printUsage() {
         // Using text blocks introduced in Java 15
         System.out.println("""
@@ -70,48 +173,314 @@ public class ModernATMSystem {
             Available modes:
               console - Start the console-based ATM interface
               demo    - Run a demonstration of ATM features
+              bench   - Run the performance benchmarks (bench <name> runs just one)
               swing   - Start the Swing GUI interface (default)
+              server  - Host remote ATM terminals on localhost (server <port>, default 9090)
+              host    - Host binary-protocol terminals on localhost (host <port>, default 9091)
+              load    - Import accounts from a CSV file (load <file>, lines of accountNumber,pin,holder,balance)
+
+            console, swing, server, host and load keep their accounts in atm-data/ledger.journal.
             """);
     }
 }
 
+/**
+ * Money helpers for amounts held as a primitive long count of paise.
+ *
+ * All balances and transaction amounts in the ledger are whole paise, so
+ * adding and subtracting them is exact and never allocates. Rupee strings
+ * only exist at the edges: parse() when reading what the user typed and
+ * format()/plain() when showing an amount on screen.
+ *
+ * The rupee formatting is done by hand rather than with a NumberFormat: it
+ * has no state, so any thread can call it, and appendTo()/put() write
+ * straight into the caller's StringBuilder or ByteBuffer without
+ * allocating anything. The JDK's en-IN currency format groups by
+ * thousands (DecimalFormat can't do the two-digit lakh and crore groups),
+ * so this gives "₹12,34,567.89" where it gave "₹1,234,567.89"; the
+ * symbol, sign and decimals are the same.
+ */
+final class Money {
+    static final long PAISE_PER_RUPEE = 100;
+    private static final char RUPEE = '₹';
+    private static final byte[] RUPEE_UTF8 = "₹".getBytes(StandardCharsets.UTF_8);
+
+    private Money() {
+    }
+
+    /**
+     * Converts a whole rupee amount to paise.
+     */
+    static long ofRupees(long rupees) {
+        return Math.multiplyExact(rupees, PAISE_PER_RUPEE);
+    }
+
+    /**
+     * Parses a rupee amount typed by the user (e.g. "1500" or "99.50") into paise.
+     * Anything with fractions of a paisa is rejected rather than rounded.
+     */
+    static long parse(String rupees) {
+        if (rupees == null) {
+            throw new NumberFormatException("No amount entered");
+        }
+
+        try {
+            return new BigDecimal(rupees.trim()).movePointRight(2).longValueExact();
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("Amount must be in whole paise: " + rupees);
+        }
+    }
+
+    /**
+     * Formats paise as Indian Rupees with the ₹ symbol and lakh grouping.
+     */
+    static String format(long paise) {
+        return appendTo(new StringBuilder(24), paise).toString();
+    }
+
+    /**
+     * Appends paise formatted as by {@link #format(long)}, e.g. "-₹12,34,567.89".
+     */
+    static StringBuilder appendTo(StringBuilder out, long paise) {
+        // Divide before taking the sign off, so Long.MIN_VALUE can't overflow
+        long rupees = Math.abs(paise / PAISE_PER_RUPEE);
+        int fraction = (int) Math.abs(paise % PAISE_PER_RUPEE);
+        if (paise < 0) {
+            out.append('-');
+        }
+        out.append(RUPEE);
+
+        // Size it first, then fill in the digits from the right
+        int end = out.length() + groupedLength(rupees) + 3;
+        out.setLength(end);
+        out.setCharAt(--end, (char) ('0' + fraction % 10));
+        out.setCharAt(--end, (char) ('0' + fraction / 10));
+        out.setCharAt(--end, '.');
+        int digits = 0;
+        do {
+            if (digits == 3 || (digits > 3 && (digits & 1) == 1)) {
+                out.setCharAt(--end, ',');
+            }
+            out.setCharAt(--end, (char) ('0' + rupees % 10));
+            rupees /= 10;
+            digits++;
+        } while (rupees != 0);
+        return out;
+    }
+
+    /**
+     * Writes paise formatted as by {@link #format(long)} into the buffer
+     * as UTF-8, advancing its position.
+     */
+    static ByteBuffer put(ByteBuffer out, long paise) {
+        long rupees = Math.abs(paise / PAISE_PER_RUPEE);
+        int fraction = (int) Math.abs(paise % PAISE_PER_RUPEE);
+        if (paise < 0) {
+            out.put((byte) '-');
+        }
+        out.put(RUPEE_UTF8);
+
+        int end = out.position() + groupedLength(rupees) + 3;
+        out.position(end);
+        out.put(--end, (byte) ('0' + fraction % 10));
+        out.put(--end, (byte) ('0' + fraction / 10));
+        out.put(--end, (byte) '.');
+        int digits = 0;
+        do {
+            if (digits == 3 || (digits > 3 && (digits & 1) == 1)) {
+                out.put(--end, (byte) ',');
+            }
+            out.put(--end, (byte) ('0' + rupees % 10));
+            rupees /= 10;
+            digits++;
+        } while (rupees != 0);
+        return out;
+    }
+
+    // Digits plus commas: one after the last three digits, then one every two
+    private static int groupedLength(long rupees) {
+        int digits = 1;
+        while (rupees >= 10) {
+            rupees /= 10;
+            digits++;
+        }
+        return digits <= 3 ? digits : digits + 1 + (digits - 4) / 2;
+    }
+
+    /**
+     * Formats paise as a plain rupee number with two decimals, e.g. "1500.00".
+     */
+    static String plain(long paise) {
+        return BigDecimal.valueOf(paise, 2).toPlainString();
+    }
+}
+
+/**
+ * Renders epoch milliseconds as "yyyy-MM-dd HH:mm:ss" in the system time
+ * zone, the same text SimpleDateFormat gives, without a Calendar.
+ *
+ * The date part and the zone offset are worked out once per local day (or
+ * up to the next daylight-saving change) and the whole text once per
+ * second; history is in time order, so a long statement almost always
+ * hits both caches and a row costs a few char copies. Each cache is an
+ * immutable object behind a volatile field, so any thread can format.
+ */
+final class Timestamps {
+    static final int LENGTH = 19;
+    private static final long DAY_MILLIS = 86_400_000L;
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+
+    private static volatile Day day = new Day(0, 0, 0, new char[0]);
+    private static volatile Second second = new Second(Long.MIN_VALUE, "");
+
+    private Timestamps() {
+    }
+
+    /**
+     * Formats a timestamp as "yyyy-MM-dd HH:mm:ss".
+     */
+    static String format(long millis) {
+        long epochSecond = Math.floorDiv(millis, 1000);
+        Second cached = second;
+        if (cached.epochSecond() == epochSecond) {
+            return cached.text();
+        }
+        var chars = new char[LENGTH];
+        encode(millis, chars);
+        String text = new String(chars);
+        second = new Second(epochSecond, text);
+        return text;
+    }
+
+    /**
+     * Appends a timestamp as "yyyy-MM-dd HH:mm:ss". Allocates nothing
+     * unless the day changes.
+     */
+    static StringBuilder appendTo(StringBuilder out, long millis) {
+        Second cached = second;
+        if (cached.epochSecond() == Math.floorDiv(millis, 1000)) {
+            return out.append(cached.text());
+        }
+        int start = out.length();
+        out.setLength(start + LENGTH);
+        Day current = dayAt(millis);
+        char[] prefix = current.prefix();
+        for (int i = 0; i < prefix.length; i++) {
+            out.setCharAt(start + i, prefix[i]);
+        }
+        int secondOfDay = (int) (Math.floorMod(millis + current.offset(), DAY_MILLIS) / 1000);
+        out.setCharAt(start + 11, (char) ('0' + secondOfDay / 36000));
+        out.setCharAt(start + 12, (char) ('0' + secondOfDay / 3600 % 10));
+        out.setCharAt(start + 13, ':');
+        out.setCharAt(start + 14, (char) ('0' + secondOfDay / 600 % 6));
+        out.setCharAt(start + 15, (char) ('0' + secondOfDay / 60 % 10));
+        out.setCharAt(start + 16, ':');
+        out.setCharAt(start + 17, (char) ('0' + secondOfDay % 60 / 10));
+        out.setCharAt(start + 18, (char) ('0' + secondOfDay % 10));
+        return out;
+    }
+
+    private static void encode(long millis, char[] chars) {
+        Day current = dayAt(millis);
+        System.arraycopy(current.prefix(), 0, chars, 0, 11);
+
+        int secondOfDay = (int) (Math.floorMod(millis + current.offset(), DAY_MILLIS) / 1000);
+        twoDigits(chars, 11, secondOfDay / 3600);
+        chars[13] = ':';
+        twoDigits(chars, 14, secondOfDay / 60 % 60);
+        chars[16] = ':';
+        twoDigits(chars, 17, secondOfDay % 60);
+    }
+
+    private static Day dayAt(long millis) {
+        Day current = day;
+        if (millis < current.start() || millis >= current.end()) {
+            current = dayOf(millis);
+            day = current;
+        }
+        return current;
+    }
+
+    // The stretch of the local day around millis that has one zone offset
+    private static Day dayOf(long millis) {
+        var instant = java.time.Instant.ofEpochMilli(millis);
+        var rules = ZONE.getRules();
+        int offset = rules.getOffset(instant).getTotalSeconds() * 1000;
+        long localDay = Math.floorDiv(millis + offset, DAY_MILLIS);
+        long start = localDay * DAY_MILLIS - offset;
+        long end = start + DAY_MILLIS;
+        var previous = rules.previousTransition(instant.plusMillis(1));
+        if (previous != null && previous.getInstant().toEpochMilli() > start) {
+            start = previous.getInstant().toEpochMilli();
+        }
+        var next = rules.nextTransition(instant);
+        if (next != null && next.getInstant().toEpochMilli() < end) {
+            end = next.getInstant().toEpochMilli();
+        }
+
+        var prefix = LocalDate.ofEpochDay(localDay).toString().toCharArray(); // yyyy-MM-dd
+        if (prefix.length != 10) {
+            throw new IllegalArgumentException("Timestamp out of range: " + millis);
+        }
+        prefix = java.util.Arrays.copyOf(prefix, 11);
+        prefix[10] = ' ';
+        return new Day(start, end, offset, prefix);
+    }
+
+    private static void twoDigits(char[] chars, int at, int value) {
+        chars[at] = (char) ('0' + value / 10);
+        chars[at + 1] = (char) ('0' + value % 10);
+    }
+
+    private record Day(long start, long end, int offset, char[] prefix) {
+    }
+
+    private record Second(long epochSecond, String text) {
+    }
+}
+
 /**
  * TransactionDetails - Immutable record of transaction information
  *
  * I'm using Java 16's record feature here to reduce boilerplate.
  * This was so much easier than writing all the getters, equals, hashCode etc!
- *
- * Note to self: Need to eventually add transaction ID for audit purposes
  */
 record TransactionDetails(
+        long transactionId,     // From TransactionIds, 0 if the transaction never had one
         String source,          // Source account number
         String destination,     // Destination account number
-        double amount,          // Transaction amount in rupees
+        long amount,            // Transaction amount in paise
         String description,     // Transaction description
-        LocalDateTime timestamp // When the transaction occurred
+        Instant timestamp       // When the transaction occurred, exactly as recorded
 ) {
-    // Format the timestamp in a readable format
+    // Format the timestamp in a readable format, in the system time zone
     public String formattedTimestamp() {
         // DD-MM-YYYY format is more common in India, but bank statements
         // typically use international format, so sticking with that
-        return timestamp.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+        return Timestamps.format(timestamp.toEpochMilli());
     }
 
     // Gets nicely formatted amount with ₹ symbol
     public String formattedAmount() {
-        // Using Indian locale for Rupee symbol
-        return NumberFormat.getCurrencyInstance(new Locale("en", "IN")).format(amount);
+        return Money.format(amount);
     }
 }
 
 /**
  * Represents a transaction in the ATM system.
+ *
+ * Transactions read from the history carry a description code instead of
+ * text; the description is only rendered when someone asks for it. The
+ * timestamp is kept as epoch milliseconds; getTimestamp() makes a Date
+ * for callers that want one.
  */
 class Transaction {
+    private final long id;
     private final TransactionType type;
-    private final double amount;
-    private final String description;
-    private final Date timestamp;
+    private final long amount;
+    private final String description; // null when rendered from descriptionCode
+    private final byte descriptionCode;
+    private final long timestamp; // epoch milliseconds
     private final String sourceAccountNumber;
     private final String destinationAccountNumber;
 
@@ -120,46 +489,74 @@ class Transaction {
      */
     public Transaction(
             TransactionType type,
-            double amount,
+            long amount,
             String description,
             Date timestamp,
             String sourceAccountNumber,
             String destinationAccountNumber) {
+        this(0, type, amount, description, (byte) 0, timestamp.getTime(), sourceAccountNumber,
+                destinationAccountNumber);
+    }
+
+    /**
+     * Constructs a recorded Transaction whose description is rendered from
+     * one of the {@link TransactionStore} description codes.
+     */
+    Transaction(long id, TransactionType type, long amount, byte descriptionCode, long timestamp,
+                String sourceAccountNumber, String destinationAccountNumber) {
+        this(id, type, amount, null, descriptionCode, timestamp, sourceAccountNumber, destinationAccountNumber);
+    }
+
+    private Transaction(long id, TransactionType type, long amount, String description, byte descriptionCode,
+                        long timestamp, String sourceAccountNumber, String destinationAccountNumber) {
+        this.id = id;
         this.type = type;
         this.amount = amount;
         this.description = description;
+        this.descriptionCode = descriptionCode;
         this.timestamp = timestamp;
         this.sourceAccountNumber = sourceAccountNumber;
         this.destinationAccountNumber = destinationAccountNumber;
     }
 
     // Getters
+    public long getId() { return id; }
     public TransactionType getType() { return type; }
-    public double getAmount() { return amount; }
-    public String getDescription() { return description; }
-    public Date getTimestamp() { return timestamp; }
+    public long getAmount() { return amount; }
+
+    public String getDescription() {
+        if (description != null) {
+            return description;
+        }
+        // The counterparty is the destination of a transfer out and the source of everything else
+        return TransactionStore.describe(descriptionCode, descriptionCode == TransactionStore.TRANSFER_OUT
+                ? destinationAccountNumber : sourceAccountNumber);
+    }
+
+    public Date getTimestamp() { return new Date(timestamp); }
+    public long getTimestampMillis() { return timestamp; }
     public String getSourceAccountNumber() { return sourceAccountNumber; }
     public String getDestinationAccountNumber() { return destinationAccountNumber; }
 
     // Convert to TransactionDetails record
     public TransactionDetails toDetails() {
         return new TransactionDetails(
+                id,
                 sourceAccountNumber,
                 destinationAccountNumber,
                 amount,
-                description,
-                LocalDateTime.now() // In a real app, we would convert the timestamp to LocalDateTime
+                getDescription(),
+                Instant.ofEpochMilli(timestamp)
         );
     }
 
     @Override
     public String toString() {
-        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-        return String.format("%s | %s | ₹%.2f | %s | From: %s | To: %s",
-                dateFormat.format(timestamp),
+        return String.format("%s | %s | ₹%s | %s | From: %s | To: %s",
+                Timestamps.format(timestamp),
                 type,
-                amount,
-                description,
+                Money.plain(amount),
+                getDescription(),
                 sourceAccountNumber,
                 destinationAccountNumber);
     }
@@ -203,1821 +600,9202 @@ enum TransactionType {
  * Custom exception for insufficient funds.
  */
 class InsufficientFundsException extends Exception {
-    private final double requested;
-    private final double available;
+    private final long requested;
+    private final long available;
 
-    public InsufficientFundsException(String message, double requested, double available) {
+    public InsufficientFundsException(String message, long requested, long available) {
         super(message);
         this.requested = requested;
         this.available = available;
     }
 
-    public double getRequested() { return requested; }
-    public double getAvailable() { return available; }
+    public long getRequested() { return requested; }
+    public long getAvailable() { return available; }
 
     @Override
     public String getMessage() {
-        // Using Indian Rupee format
-        var formatter = NumberFormat.getCurrencyInstance(new Locale("en", "IN"));
-        return super.getMessage() +
-                " Requested: " + formatter.format(requested) +
-                ", Available: " + formatter.format(available);
+        var message = new StringBuilder(96).append(super.getMessage()).append(" Requested: ");
+        Money.appendTo(message, requested).append(", Available: ");
+        return Money.appendTo(message, available).toString();
     }
 }
 
 /**
- * Represents a bank account in the ATM system.
+ * Outcome of a withdrawal or transfer made through the non-throwing
+ * Account methods (tryWithdraw, tryTransfer): one of the LedgerStatus
+ * codes, the amount asked for and the balance it was checked against.
+ *
+ * A declined withdrawal is an everyday thing at an ATM, so it comes back
+ * here instead of as an InsufficientFundsException with a stack trace.
+ * Like a LedgerCompletion, a result belongs to one caller and can be
+ * passed again for the next debit, so nothing is allocated per
+ * transaction. Not thread-safe.
  */
-class Account {
-    private final String accountNumber;
-    private String pin;
-    private final String accountHolder;
-    private double balance;
-    private final java.util.List<Transaction> transactionHistory;
+final class DebitResult {
+    private LedgerStatus status;
+    private long requested;
+    private long available;
+    private long journalSequence;
 
     /**
-     * Constructs a new Account with the given details.
+     * Gets the outcome: APPROVED, INSUFFICIENT_FUNDS or INVALID_AMOUNT.
      */
-    public Account(String accountNumber, String pin, String accountHolder, double initialBalance) {
-        this.accountNumber = accountNumber;
-        this.pin = pin;
-        this.accountHolder = accountHolder;
-        this.balance = initialBalance;
-        this.transactionHistory = new ArrayList<>();
-
-        // Record the initial deposit as a transaction
-        if (initialBalance > 0) {
-            this.transactionHistory.add(new Transaction(
-                    TransactionType.DEPOSIT,
-                    initialBalance,
-                    "Initial deposit",
-                    new Date(),
-                    this.accountNumber,
-                    this.accountNumber
-            ));
-        }
-    }
+    public LedgerStatus getStatus() { return status; }
+    public boolean isApproved() { return status == LedgerStatus.APPROVED; }
+    public long getRequested() { return requested; }
+    public long getAvailable() { return available; }
 
     /**
-     * Authenticates the user using a PIN.
+     * Journal sequence to wait on before acknowledging an approved debit,
+     * or 0 if the account isn't journaled.
      */
-    public boolean authenticate(String inputPin) {
-        return this.pin.equals(inputPin);
+    long getJournalSequence() { return journalSequence; }
+
+    DebitResult approve(long requested, long available) {
+        return set(LedgerStatus.APPROVED, requested, available);
     }
 
-    // Getters
-    public double getBalance() { return balance; }
-    public String getAccountNumber() { return accountNumber; }
-    public String getAccountHolder() { return accountHolder; }
+    DebitResult decline(LedgerStatus reason, long requested, long available) {
+        return set(reason, requested, available);
+    }
 
-    /**
-     * Gets the transaction history for this account.
-     */
-    public java.util.List<Transaction> getTransactionHistory() {
-        return new ArrayList<>(transactionHistory); // Return a copy to maintain encapsulation
+    void setJournalSequence(long sequence) {
+        journalSequence = sequence;
     }
 
     /**
-     * Gets the transaction history filtered by type.
-     * Using Java 8+ Stream API for filtering
+     * Builds the exception the throwing API reports a shortfall with.
      */
-    public java.util.List<Transaction> getTransactionHistoryByType(TransactionType type) {
-        return transactionHistory.stream()
-                .filter(t -> t.getType() == type)
-                .collect(Collectors.toList());
+    InsufficientFundsException toException(String message) {
+        return new InsufficientFundsException(message, requested, available);
     }
 
-    /**
-     * Gets the total transaction amount for a specific type.
-     * Using Java 8+ Stream API for summing
-     */
-    public double getTotalForTransactionType(TransactionType type) {
-        return transactionHistory.stream()
-                .filter(t -> t.getType() == type)
-                .mapToDouble(Transaction::getAmount)
-                .sum();
+    private DebitResult set(LedgerStatus outcome, long requestedAmount, long availableBalance) {
+        status = outcome;
+        requested = requestedAmount;
+        available = availableBalance;
+        journalSequence = 0;
+        return this;
     }
+}
+
+/**
+ * Hands out 64-bit transaction ids without locks.
+ *
+ * An id is the milliseconds since 2024-01-01 UTC (41 bits, good until
+ * 2093), then the shard number (10 bits) and a sequence within the
+ * millisecond (12 bits). Ids from one generator only ever go up; processes
+ * running different shards never collide, and ids from all of them sort
+ * roughly by time. Taking an id is one compare-and-set. When more than
+ * 4,096 are taken in a millisecond the generator runs ahead into the next
+ * one instead of waiting, and it never goes back if the clock does.
+ */
+final class TransactionIds {
+    static final long EPOCH = 1_704_067_200_000L; // 2024-01-01T00:00:00Z
+    static final int SHARD_BITS = 10;
+    static final int SEQUENCE_BITS = 12;
+    static final int MAX_SHARD = (1 << SHARD_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final int TIME_SHIFT = SHARD_BITS + SEQUENCE_BITS;
 
     /**
-     * Deposits money into the account.
+     * The generator accounts take their ids from; the shard comes from the
+     * {@code atm.shard} system property.
      */
-    public boolean deposit(double amount) {
-        if (amount <= 0) {
-            throw new IllegalArgumentException("Deposit amount must be positive");
-        }
-
-        balance += amount;
+    static final TransactionIds PROCESS = new TransactionIds(Integer.getInteger("atm.shard", 0));
 
-        // Record the transaction
-        Transaction transaction = new Transaction(
-                TransactionType.DEPOSIT,
-                amount,
-                "Deposit to account",
-                new Date(),
-                this.accountNumber,
-                this.accountNumber
-        );
-        transactionHistory.add(transaction);
+    private final long shardBits;
+    private final AtomicLong last = new AtomicLong();
 
-        return true;
+    TransactionIds(int shard) {
+        if (shard < 0 || shard > MAX_SHARD) {
+            throw new IllegalArgumentException("Shard must be between 0 and " + MAX_SHARD);
+        }
+        this.shardBits = (long) shard << SEQUENCE_BITS;
     }
 
     /**
-     * Withdraws money from the account.
+     * Takes the next id.
      */
-    public boolean withdraw(double amount) throws InsufficientFundsException {
-        if (amount <= 0) {
-            throw new IllegalArgumentException("Withdrawal amount must be positive");
-        }
-
-        if (amount > balance) {
-            throw new InsufficientFundsException(
-                    "Insufficient funds for withdrawal",
-                    amount,
-                    balance
-            );
-        }
-
-        balance -= amount;
-
-        // Record the transaction
-        Transaction transaction = new Transaction(
-                TransactionType.WITHDRAWAL,
-                amount,
-                "Withdrawal from account",
-                new Date(),
-                this.accountNumber,
-                this.accountNumber
-        );
-        transactionHistory.add(transaction);
-
-        return true;
+    long next() {
+        return next(1);
     }
 
     /**
-     * Transfers money to another account.
+     * Takes {@code count} consecutive ids and returns the first; the others
+     * are the following numbers. A transfer takes one for each leg.
      */
-    public boolean transfer(Account destinationAccount, double amount) throws InsufficientFundsException {
-        if (amount <= 0) {
-            throw new IllegalArgumentException("Transfer amount must be positive");
-        }
-
-        if (amount > balance) {
-            throw new InsufficientFundsException(
-                    "Insufficient funds for transfer",
-                    amount,
-                    balance
-            );
+    long next(int count) {
+        while (true) {
+            long previous = last.get();
+            long previousTime = previous >>> TIME_SHIFT;
+            long time = Math.max(System.currentTimeMillis() - EPOCH, previousTime);
+            long sequence = time == previousTime && previous != 0 ? (previous & SEQUENCE_MASK) + 1 : 0;
+            if (sequence + count - 1 > SEQUENCE_MASK) {
+                time++; // this millisecond is used up
+                sequence = 0;
+            }
+            long first = time << TIME_SHIFT | shardBits | sequence;
+            if (last.compareAndSet(previous, first + count - 1)) {
+                return first;
+            }
         }
-
-        // Update balances
-        balance -= amount;
-        destinationAccount.balance += amount;
-
-        // Record the transaction in the source account
-        Transaction sourceTransaction = new Transaction(
-                TransactionType.TRANSFER,
-                amount,
-                "Transfer to account " + destinationAccount.getAccountNumber(),
-                new Date(),
-                this.accountNumber,
-                destinationAccount.getAccountNumber()
-        );
-        transactionHistory.add(sourceTransaction);
-
-        // Record the transaction in the destination account
-        Transaction destinationTransaction = new Transaction(
-                TransactionType.TRANSFER,
-                amount,
-                "Transfer from account " + this.accountNumber,
-                new Date(),
-                this.accountNumber,
-                destinationAccount.getAccountNumber()
-        );
-        destinationAccount.transactionHistory.add(destinationTransaction);
-
-        return true;
     }
 
     /**
-     * Changes the account PIN.
+     * Makes sure every later id is greater than one read back from the
+     * journal, in case the clock is behind the run that wrote it.
      */
-    public boolean changePin(String oldPin, String newPin) {
-        if (!authenticate(oldPin)) {
-            return false;
+    void advancePast(long id) {
+        long previous;
+        while (id > (previous = last.get()) && !last.compareAndSet(previous, id)) {
+            Thread.onSpinWait();
         }
+    }
 
-        this.pin = newPin;
-        return true;
+    /**
+     * Gets the time an id was taken at, in epoch milliseconds.
+     */
+    static long timeOf(long id) {
+        return (id >>> TIME_SHIFT) + EPOCH;
     }
 
-    @Override
-    public String toString() {
-        return "Account [accountNumber=" + accountNumber + ", accountHolder=" + accountHolder
-                + ", balance=" + balance + "]";
+    /**
+     * Gets the shard an id was taken on.
+     */
+    static int shardOf(long id) {
+        return (int) (id >>> SEQUENCE_BITS) & MAX_SHARD;
     }
 }
 
 /**
- * Represents a bank that manages accounts in the ATM system.
+ * Columnar binary store for transaction history, split into segments.
+ *
+ * History is kept in chunks that each belong to one account. A chunk holds
+ * a fixed number of transactions column by column: all the timestamps,
+ * then the transaction ids, the amounts, the counterparty ids, the
+ * description codes and the types, after a small header with the capacity,
+ * the address of the account's previous chunk and how many transactions
+ * that chunk ended up holding. A transaction takes 30 bytes, and summing an
+ * account's amounts of one type is a tight loop over two columns per
+ * chunk. Counterparty account numbers are stored as int ids into a
+ * dictionary kept alongside the store; deposits and withdrawals don't need
+ * one at all.
+ *
+ * A durable bank keeps its segments as memory-mapped files in a directory,
+ * rolling over to a new file whenever the current one is full; an
+ * in-memory bank uses a tiered store of heap segments instead, and
+ * accounts that aren't in a bank yet share one for the whole process.
+ * Allocating a chunk takes one compare-and-set, so appenders only take a
+ * lock when a new segment has to be created. A chunk never spans two segments.
+ *
+ * A tiered heap store only keeps its newest segments on the heap. Older
+ * ones are deflated into the {@link HistorySpill} file by a background
+ * thread and read back through a small cache when someone pages that far
+ * back, so a busy account's heap stays bounded however long it lives.
+ * Since history is appended in time order, an account's recent
+ * transactions are in the recent segments. A spilled segment is never
+ * written again: a quiet account whose newest chunk was spilled carries on
+ * in a fresh chunk.
  */
-class Bank {
-    private final Map<String, Account> accounts;
-    private final String name;
+final class TransactionStore {
+    static final int DEFAULT_SEGMENT_BYTES = 64 << 20;
+    static final int HEAP_SEGMENT_BYTES = 1 << 20;
+    static final int HEAP_HOT_SEGMENTS = 64;
+    static final int NO_COUNTERPARTY = -1;
+
+    // Description codes; the text is rebuilt from these when a record is read
+    static final byte INITIAL_DEPOSIT = 1;
+    static final byte DEPOSIT = 2;
+    static final byte WITHDRAWAL = 3;
+    static final byte TRANSFER_OUT = 4;
+    static final byte TRANSFER_IN = 5;
+    static final byte REVERSAL = 6;
+
+    // Description text by code. Fixed descriptions are shared constants; the
+    // ones that name a counterparty hold the text that goes before its number
+    private static final String[] DESCRIPTIONS = {
+            null,
+            "Initial deposit",
+            "Deposit to account",
+            "Withdrawal from account",
+            "Transfer to account ",
+            "Transfer from account ",
+            "Reversal of transfer to account "
+    };
+
+    // Chunk layout: header, then one column per field
+    private static final int PREVIOUS = 0; // address of the account's previous chunk, -1 for its first
+    private static final int CAPACITY = 8;
+    private static final int PREVIOUS_COUNT = 12; // transactions in the previous chunk
+    private static final int HEADER_BYTES = 16;
+    private static final int TRANSACTION_BYTES = 8 + 8 + 8 + 4 + 1 + 1;
+    private static final int FIRST_CHUNK = 2;
+    private static final int LARGEST_CHUNK = 256;
+    private static final int SPILL_RUN_BYTES = 64 << 10; // small segments are deflated this many at a time
+    private static final int COLD_RUNS = 2;              // spilled runs cached on the heap
+
+    private static final TransactionType[] TYPES = TransactionType.values();
+
+    private final Path directory; // null for heap segments
+    private final int segmentBytes;
+    private final int largestChunk;
+    private final int hotSegments;  // 0 keeps every segment
+    private final int spillRun;     // segments deflated together
+    private final AtomicLong nextByte = new AtomicLong();
+    private final ReentrantLock rollover = new ReentrantLock();
+
+    // Written under rollover; segments is always published before segmentCount
+    private volatile ByteBuffer[] segments = new ByteBuffer[4];
+    private volatile int segmentCount;
+
+    // Segments below spilledThrough take no more writes. Writers hold an
+    // optimistic read of spilling, which is write-locked to move that line
+    private final StampedLock spilling = new StampedLock();
+    private volatile int spilledThrough;
+    private final AtomicBoolean spillQueued = new AtomicBoolean();
+    private final ReentrantLock spillLock = new ReentrantLock();
+    // Where each run sits in the spill file; a fresh copy is published before its segments are dropped
+    private volatile SpillIndex spillIndex = new SpillIndex(new long[0], new int[0]);
+    private volatile long spilledBytes;
+    private final ReentrantLock coldLock = new ReentrantLock();
+    private final java.util.LinkedHashMap<Integer, ByteBuffer> coldCache =
+            new java.util.LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(java.util.Map.Entry<Integer, ByteBuffer> eldest) {
+                    return size() > COLD_RUNS * spillRun;
+                }
+            };
+
+    // Counterparty dictionary; new ids are handed out under idLock
+    private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+    private final ReentrantLock idLock = new ReentrantLock();
+    private volatile String[] accountNumbers = new String[16];
+    private int idCount;
+
+    private TransactionStore(Path directory, int segmentBytes, int hotSegments) {
+        int largest = LARGEST_CHUNK;
+        while (largest > FIRST_CHUNK && chunkBytes(largest) > segmentBytes) {
+            largest >>= 1;
+        }
+        this.largestChunk = largest;
+        this.segmentBytes = Math.max(segmentBytes, chunkBytes(largest));
+        this.directory = directory;
+        this.hotSegments = hotSegments;
+        this.spillRun = Math.max(1, SPILL_RUN_BYTES / this.segmentBytes);
+    }
 
     /**
-     * Constructs a new Bank with the given name.
+     * Creates a store on the heap, for accounts that only live in memory.
      */
-    public Bank(String name) {
-        this.name = name;
-        this.accounts = new HashMap<>();
-
-        // For demonstration purposes, initialize the bank with some test accounts
-        initializeTestAccounts();
+    static TransactionStore inMemory(int segmentBytes) {
+        return new TransactionStore(null, segmentBytes, 0);
     }
 
     /**
-     * Gets the name of the bank.
+     * Creates a heap store that keeps only its newest {@code hotSegments}
+     * segments on the heap and spills older ones to disk.
      */
-    public String getName() {
-        return name;
+    static TransactionStore tiered(int segmentBytes, int hotSegments) {
+        if (hotSegments < 2) {
+            throw new IllegalArgumentException("A tiered store needs at least two hot segments");
+        }
+        return new TransactionStore(null, segmentBytes, hotSegments);
     }
 
     /**
-     * Gets the account with the specified account number.
+     * Gets the tiered heap store shared by accounts that aren't in a bank
+     * yet. It is created on first use, and its segments are only allocated
+     * as history fills them.
      */
-    public Account getAccount(String accountNumber) {
-        return accounts.get(accountNumber);
+    static TransactionStore shared() {
+        return Shared.STORE;
+    }
+
+    private static final class Shared {
+        static final TransactionStore STORE = tiered(HEAP_SEGMENT_BYTES, HEAP_HOT_SEGMENTS);
     }
 
     /**
-     * Adds an account to the bank.
+     * Creates an empty store of memory-mapped segment files in the given
+     * directory. Segment files left over from an earlier run are removed.
      */
-    public boolean addAccount(Account account) {
-        if (accounts.containsKey(account.getAccountNumber())) {
-            return false;
+    static TransactionStore create(Path directory, int segmentBytes) throws IOException {
+        Files.createDirectories(directory);
+        try (var files = Files.newDirectoryStream(directory, "segment-*.dat")) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
         }
-
-        accounts.put(account.getAccountNumber(), account);
-        return true;
+        return new TransactionStore(directory, segmentBytes, 0);
     }
 
     /**
-     * Authenticates a user by account number and PIN.
+     * Maps the segment files of an existing store that has the given number
+     * of bytes in use, with its counterparty dictionary. New chunks are
+     * allocated after the existing ones.
      */
-    public Account authenticateUser(String accountNumber, String pin) {
-        Account account = getAccount(accountNumber);
-
-        if (account != null && account.authenticate(pin)) {
-            return account;
+    static TransactionStore open(Path directory, int segmentBytes, long size,
+                                 java.util.List<String> accountNumbers) throws IOException {
+        var store = new TransactionStore(directory, segmentBytes, 0);
+        long segmentCount = (size + store.segmentBytes - 1) / store.segmentBytes;
+        for (int i = 0; i < segmentCount; i++) {
+            Path file = directory.resolve(String.format("segment-%06d.dat", i));
+            if (!Files.exists(file)) {
+                throw new IOException("History segment " + file + " is missing");
+            }
+            store.segmentForAppend((long) i * store.segmentBytes);
         }
-
-        return null;
+        store.nextByte.set(size);
+        for (String accountNumber : accountNumbers) {
+            store.idOf(accountNumber);
+        }
+        return store;
     }
 
     /**
-     * Gets all accounts in the bank.
-     * Using Java 8+ approach for conversion
+     * Gets the capacity of an account's chunk with the given index. Chunks
+     * start small so accounts with little history stay small, and double up
+     * to a limit.
      */
-    public java.util.List<Account> getAllAccounts() {
-        return new ArrayList<>(accounts.values());
+    int chunkCapacity(int index) {
+        return index >= 30 ? largestChunk : Math.min(FIRST_CHUNK << index, largestChunk);
     }
 
     /**
-     * Search for accounts by a predicate
-     * Using Java 8+ Predicate for flexible filtering
+     * Allocates an empty chunk linked to the account's previous one, which
+     * holds {@code previousCount} transactions, and returns its address.
      */
-    public java.util.List<Account> findAccounts(Predicate<Account> criteria) {
-        return accounts.values().stream()
-                .filter(criteria)
-                .collect(Collectors.toList());
+    long newChunk(int capacity, long previous, int previousCount) {
+        int bytes = chunkBytes(capacity);
+        while (true) {
+            long address;
+            long start;
+            do {
+                start = nextByte.get();
+                long used = start % segmentBytes;
+                address = used + bytes > segmentBytes ? start - used + segmentBytes : start;
+            } while (!nextByte.compareAndSet(start, address + bytes));
+
+            segmentForAppend(address);
+            long stamp = hotSegments == 0 ? 0 : spilling.readLock();
+            try {
+                // Only a tiered store that spilled the segment in between has to try again
+                ByteBuffer segment = writableSegment(address);
+                if (segment != null) {
+                    int offset = offsetOf(address);
+                    segment.putLong(offset + PREVIOUS, previous)
+                            .putInt(offset + CAPACITY, capacity)
+                            .putInt(offset + PREVIOUS_COUNT, previousCount);
+                    return address;
+                }
+            } finally {
+                if (hotSegments != 0) {
+                    spilling.unlockRead(stamp);
+                }
+            }
+        }
     }
 
     /**
-     * Search for accounts containing the given text in the holder's name
-     * Using Java 8+ features for searching
+     * Writes a transaction into a slot of a chunk. Returns false, having
+     * written nothing that counts, if the chunk has been spilled; the
+     * caller then continues in a new chunk.
      */
-    public java.util.List<Account> searchByHolderName(String searchText) {
-        return findAccounts(account ->
-                account.getAccountHolder().toLowerCase().contains(searchText.toLowerCase()));
+    boolean put(long chunk, int slot, TransactionType type, byte description, long amount, long timestamp,
+                int counterparty, long id) {
+        long stamp = spilling.tryOptimisticRead();
+        ByteBuffer segment = writableSegment(chunk);
+        if (segment == null) {
+            return false;
+        }
+        write(segment, offsetOf(chunk), slot, type, description, amount, timestamp, counterparty, id);
+        if (hotSegments == 0) {
+            return true;
+        }
+
+        // A spill that started while we wrote may have missed the write, so check, and if so redo it
+        VarHandle.fullFence();
+        if (spilling.validate(stamp)) {
+            return true;
+        }
+        stamp = spilling.readLock();
+        try {
+            segment = writableSegment(chunk);
+            if (segment == null) {
+                return false;
+            }
+            write(segment, offsetOf(chunk), slot, type, description, amount, timestamp, counterparty, id);
+            return true;
+        } finally {
+            spilling.unlockRead(stamp);
+        }
+    }
+
+    private static void write(ByteBuffer segment, int offset, int slot, TransactionType type, byte description,
+                              long amount, long timestamp, int counterparty, long id) {
+        int capacity = segment.getInt(offset + CAPACITY);
+        int column = offset + HEADER_BYTES;
+
+        segment.putLong(column + slot * 8, timestamp)
+                .putLong(column + capacity * 8 + slot * 8, id)
+                .putLong(column + capacity * 16 + slot * 8, amount)
+                .putInt(column + capacity * 24 + slot * 4, counterparty)
+                .put(column + capacity * 28 + slot, description)
+                .put(column + capacity * 29 + slot, (byte) (type.ordinal() + 1)); // last, so a set type means a complete record
     }
 
     /**
-     * Find accounts with balance greater than the given amount
-     * Using Java 8+ features for filtering
+     * Gets the capacity of a chunk.
      */
-    public java.util.List<Account> findAccountsWithBalanceAbove(double minBalance) {
-        return findAccounts(account -> account.getBalance() > minBalance);
+    int capacity(long chunk) {
+        return segmentOf(chunk).getInt(offsetOf(chunk) + CAPACITY);
     }
 
     /**
-     * Initializes the bank with some test accounts.
+     * Gets the address of the same account's previous chunk, or -1.
      */
-    private void initializeTestAccounts() {
-        // Initialize with some typical Indian names and reasonable balances
-        addAccount(new Account("123456", "1234", "Rajesh Kumar", 50000.0));
-        addAccount(new Account("234567", "2345", "Priya Sharma", 35000.0));
-        addAccount(new Account("345678", "3456", "Amit Patel", 72000.0));
-        addAccount(new Account("456789", "4567", "Sunita Verma", 28000.0));
+    long previousChunk(long chunk) {
+        ByteBuffer segment = segmentOf(chunk);
+        return segment == null ? -1 : segment.getLong(offsetOf(chunk) + PREVIOUS);
     }
-}
-
-/**
- * Represents an ATM that provides banking services through a console interface.
- */
-class ATM {
-    private final Bank bank;
-    private Account currentAccount;
-    private final BufferedReader reader;
-    private boolean isRunning;
 
     /**
-     * Constructs a new ATM.
+     * Gets the number of transactions in the same account's previous chunk.
+     * That is its capacity unless it was spilled before it filled up.
      */
-    public ATM() {
-        this.bank = new Bank("State Bank of India");
-        this.reader = new BufferedReader(new InputStreamReader(System.in));
-        this.isRunning = false;
+    int previousCount(long chunk) {
+        ByteBuffer segment = segmentOf(chunk);
+        return segment == null ? 0 : segment.getInt(offsetOf(chunk) + PREVIOUS_COUNT);
     }
 
     /**
-     * Starts the ATM.
+     * Gets the type of a transaction, or null if it hasn't been written.
      */
-    public void start() {
-        isRunning = true;
-        displayWelcomeScreen();
-
-        while (isRunning) {
-            if (currentAccount == null) {
-                authenticateUser();
-            } else {
-                showMainMenu();
-            }
+    TransactionType type(long chunk, int slot) {
+        ByteBuffer segment = segmentOf(chunk);
+        if (segment == null) {
+            return null;
         }
+        int offset = offsetOf(chunk);
+        int type = segment.get(offset + HEADER_BYTES + segment.getInt(offset + CAPACITY) * 29 + slot);
+        return type > 0 && type <= TYPES.length ? TYPES[type - 1] : null;
+    }
 
-        System.out.println("Thank you for using " + bank.getName() + " ATM. Goodbye!");
-        try {
-            reader.close();
-        } catch (Exception e) {
-            System.out.println("Error closing resources: " + e.getMessage());
-        }
+    /**
+     * Gets the amount of a transaction in paise.
+     */
+    long amount(long chunk, int slot) {
+        ByteBuffer segment = segmentOf(chunk);
+        int offset = offsetOf(chunk);
+        return segment.getLong(offset + HEADER_BYTES + segment.getInt(offset + CAPACITY) * 16 + slot * 8);
     }
 
     /**
-     * Displays the welcome screen.
+     * Gets the id of a transaction.
      */
-    private void displayWelcomeScreen() {
-        System.out.println("""
-            ================================================
-                  Welcome to %s ATM
-            ================================================
-            """.formatted(bank.getName()));
+    long id(long chunk, int slot) {
+        ByteBuffer segment = segmentOf(chunk);
+        int offset = offsetOf(chunk);
+        return segment.getLong(offset + HEADER_BYTES + segment.getInt(offset + CAPACITY) * 8 + slot * 8);
     }
 
     /**
-     * Authenticates a user by prompting for account number and PIN.
+     * Gets the timestamp of a transaction in epoch milliseconds.
      */
-    private void authenticateUser() {
-        System.out.println("\nPlease login to your account:");
+    long timestamp(long chunk, int slot) {
+        return segmentOf(chunk).getLong(offsetOf(chunk) + HEADER_BYTES + slot * 8);
+    }
 
-        try {
-            System.out.print("Enter your account number: ");
-            String accountNumber = reader.readLine();
+    /**
+     * Gets the counterparty id of a transaction, or NO_COUNTERPARTY.
+     */
+    int counterparty(long chunk, int slot) {
+        ByteBuffer segment = segmentOf(chunk);
+        int offset = offsetOf(chunk);
+        return segment.getInt(offset + HEADER_BYTES + segment.getInt(offset + CAPACITY) * 24 + slot * 4);
+    }
 
-            System.out.print("Enter your PIN: ");
-            String pin = reader.readLine();
+    /**
+     * Gets the description code of a transaction.
+     */
+    byte description(long chunk, int slot) {
+        ByteBuffer segment = segmentOf(chunk);
+        int offset = offsetOf(chunk);
+        return segment.get(offset + HEADER_BYTES + segment.getInt(offset + CAPACITY) * 28 + slot);
+    }
 
-            Account account = bank.authenticateUser(accountNumber, pin);
+    /**
+     * Sums the amounts of the first {@code count} transactions of a chunk
+     * that have the given type.
+     */
+    long total(long chunk, int count, TransactionType type) {
+        return total(chunk, 0, count, type);
+    }
 
-            if (account != null) {
-                currentAccount = account;
-                System.out.println("\nAuthentication successful!");
-                System.out.println("Welcome, " + currentAccount.getAccountHolder() + "!");
-            } else {
-                System.out.println("\nAuthentication failed. Invalid account number or PIN.");
-                System.out.println("Please try again.");
+    /**
+     * Sums the amounts of the transactions in slots {@code first} (inclusive)
+     * to {@code end} (exclusive) of a chunk that have the given type.
+     */
+    long total(long chunk, int first, int end, TransactionType type) {
+        ByteBuffer segment = segmentOf(chunk);
+        int offset = offsetOf(chunk);
+        int capacity = segment.getInt(offset + CAPACITY);
+        int amounts = offset + HEADER_BYTES + capacity * 16;
+        int types = offset + HEADER_BYTES + capacity * 29;
+        byte wanted = (byte) (type.ordinal() + 1);
+
+        long sum = 0;
+        for (int i = first; i < end; i++) {
+            if (segment.get(types + i) == wanted) {
+                sum += segment.getLong(amounts + i * 8);
             }
-        } catch (Exception e) {
-            System.out.println("Error reading input: " + e.getMessage());
         }
+        return sum;
     }
 
     /**
-     * Shows the main menu and processes user selections.
+     * Builds a Transaction for a slot of one of the given account's chunks,
+     * for callers that need the object form.
      */
-    private void showMainMenu() {
-        // Using text blocks for cleaner menu representation
-        System.out.println("""
-            
-            ================================================
-                               MAIN MENU
-            ================================================
-            1. Check Balance
-            2. Deposit Funds
-            3. Withdraw Funds
-            4. Transfer Funds
-            5. View Transaction History
-            6. Change PIN
-            7. Logout
-            8. Exit
-            ================================================
-            Enter your choice (1-8): """);
+    Transaction read(long chunk, int slot, String owner) {
+        ByteBuffer segment = segmentOf(chunk);
+        int offset = offsetOf(chunk);
+        int capacity = segment.getInt(offset + CAPACITY);
+        int column = offset + HEADER_BYTES;
+        int counterparty = segment.getInt(column + capacity * 24 + slot * 4);
+        String other = counterparty == NO_COUNTERPARTY ? owner : accountNumberOf(counterparty);
+
+        byte code = segment.get(column + capacity * 28 + slot);
+        return new Transaction(
+                segment.getLong(column + capacity * 8 + slot * 8),
+                type(chunk, slot),
+                segment.getLong(column + capacity * 16 + slot * 8),
+                code,
+                segment.getLong(column + slot * 8),
+                code == TRANSFER_OUT ? owner : other,
+                code == TRANSFER_OUT ? other : owner
+        );
+    }
 
-        try {
-            int choice = Integer.parseInt(reader.readLine());
+    /**
+     * Builds the TransactionDetails for a slot straight from the columns,
+     * without a Transaction in between.
+     */
+    TransactionDetails details(long chunk, int slot, String owner) {
+        ByteBuffer segment = segmentOf(chunk);
+        int offset = offsetOf(chunk);
+        int capacity = segment.getInt(offset + CAPACITY);
+        int column = offset + HEADER_BYTES;
+        int counterparty = segment.getInt(column + capacity * 24 + slot * 4);
+        String other = counterparty == NO_COUNTERPARTY ? owner : accountNumberOf(counterparty);
+
+        byte code = segment.get(column + capacity * 28 + slot);
+        return new TransactionDetails(
+                segment.getLong(column + capacity * 8 + slot * 8),
+                code == TRANSFER_OUT ? owner : other,
+                code == TRANSFER_OUT ? other : owner,
+                segment.getLong(column + capacity * 16 + slot * 8),
+                describe(code, other),
+                Instant.ofEpochMilli(segment.getLong(column + slot * 8))
+        );
+    }
 
-            // Using switch expressions
-            switch (choice) {
-                case 1 -> checkBalance();
-                case 2 -> depositFunds();
-                case 3 -> withdrawFunds();
-                case 4 -> transferFunds();
-                case 5 -> viewTransactionHistory();
-                case 6 -> changePin();
-                case 7 -> logout();
-                case 8 -> isRunning = false;
-                default -> System.out.println("Invalid choice. Please enter a number between 1 and 8.");
+    /**
+     * Renders the description for a code. Only the descriptions that name
+     * the counterparty build a new string.
+     */
+    static String describe(byte code, String counterparty) {
+        return code >= INITIAL_DEPOSIT && code <= WITHDRAWAL
+                ? DESCRIPTIONS[code]
+                : DESCRIPTIONS[code == TRANSFER_OUT || code == TRANSFER_IN ? code : REVERSAL].concat(counterparty);
+    }
+
+    /**
+     * Gets the dictionary id of an account number, adding it if it's new.
+     */
+    int idOf(String accountNumber) {
+        Integer id = ids.get(accountNumber);
+        if (id != null) {
+            return id;
+        }
+
+        idLock.lock();
+        try {
+            id = ids.get(accountNumber);
+            if (id == null) {
+                String[] array = accountNumbers;
+                if (idCount == array.length) {
+                    array = java.util.Arrays.copyOf(array, idCount * 2);
+                }
+                array[idCount] = accountNumber;
+                accountNumbers = array;
+                id = idCount++;
+                ids.put(accountNumber, id);
             }
-        } catch (NumberFormatException e) {
-            System.out.println("Invalid input. Please enter a valid number.");
-        } catch (Exception e) {
-            System.out.println("Error reading input: " + e.getMessage());
+            return id;
+        } finally {
+            idLock.unlock();
         }
     }
 
     /**
-     * Checks and displays the current account balance.
+     * Gets the account number behind a dictionary id.
      */
-    private void checkBalance() {
-        // Using Indian Rupee format
-        var formatter = NumberFormat.getCurrencyInstance(new Locale("en", "IN"));
+    String accountNumberOf(int id) {
+        return accountNumbers[id];
+    }
 
-        System.out.println("""
-            
-            ================================================
-                           ACCOUNT BALANCE
-            ================================================
-            Account Number: %s
-            Account Holder: %s
-            Current Balance: %s
-            ================================================
-            """.formatted(
-                currentAccount.getAccountNumber(),
-                currentAccount.getAccountHolder(),
-                formatter.format(currentAccount.getBalance())
-        ));
+    /**
+     * Copies the counterparty dictionary, in id order.
+     */
+    java.util.List<String> getAccountNumbers() {
+        idLock.lock();
+        try {
+            return java.util.List.of(java.util.Arrays.copyOf(accountNumbers, idCount));
+        } finally {
+            idLock.unlock();
+        }
+    }
 
-        pressEnterToContinue();
+    /**
+     * Gets the configured segment size in bytes.
+     */
+    int getSegmentBytes() {
+        return segmentBytes;
     }
 
     /**
-     * Processes a deposit transaction.
+     * Gets the number of bytes allocated to chunks so far, including the
+     * unused ends of full segments.
      */
-    private void depositFunds() {
-        // Using Indian Rupee format
-        var formatter = NumberFormat.getCurrencyInstance(new Locale("en", "IN"));
+    long size() {
+        return nextByte.get();
+    }
 
-        System.out.println("""
-            
-            ================================================
-                            DEPOSIT FUNDS
-            ================================================
-            Current Balance: %s
-            """.formatted(formatter.format(currentAccount.getBalance())));
+    /**
+     * Gets the number of segments created so far.
+     */
+    int getSegmentCount() {
+        return segmentCount;
+    }
 
-        try {
-            System.out.print("Enter amount to deposit: ₹");
-            double amount = Double.parseDouble(reader.readLine());
+    /**
+     * Gets the number of segments that have been spilled to disk.
+     */
+    int getSpilledSegmentCount() {
+        return spilledThrough;
+    }
 
-            if (amount <= 0) {
-                System.out.println("Invalid amount. Please enter a positive number.");
-                return;
+    /**
+     * Gets the number of bytes spilled segments take on disk.
+     */
+    long getSpilledBytes() {
+        return spilledBytes;
+    }
+
+    /**
+     * Writes mapped segments back to their files.
+     */
+    void force() {
+        ByteBuffer[] array = segments;
+        for (int i = 0, n = Math.min(segmentCount, array.length); i < n; i++) {
+            if (array[i] instanceof MappedByteBuffer mapped) {
+                mapped.force();
             }
+        }
+    }
 
-            boolean success = currentAccount.deposit(amount);
+    private static int chunkBytes(int capacity) {
+        return (HEADER_BYTES + capacity * TRANSACTION_BYTES + 7) & ~7;
+    }
 
-            if (success) {
-                System.out.println("\nDeposit successful!");
-                System.out.println("New Balance: " + formatter.format(currentAccount.getBalance()));
-            } else {
-                System.out.println("\nDeposit failed. Please try again.");
-            }
-        } catch (NumberFormatException e) {
-            System.out.println("Invalid input. Please enter a valid amount.");
-        } catch (IllegalArgumentException e) {
-            System.out.println("Error: " + e.getMessage());
-        } catch (Exception e) {
-            System.out.println("Error reading input: " + e.getMessage());
+    private int offsetOf(long address) {
+        return (int) (address % segmentBytes);
+    }
+
+    private ByteBuffer segmentOf(long address) {
+        long index = address / segmentBytes;
+        int count = segmentCount;
+        ByteBuffer[] array = segments;
+        if (index >= count || index >= array.length) {
+            return null;
         }
+        ByteBuffer segment = array[(int) index];
+        return segment != null ? segment : coldSegment((int) index);
+    }
 
-        pressEnterToContinue();
+    private ByteBuffer writableSegment(long address) {
+        long index = address / segmentBytes;
+        ByteBuffer[] array = segments;
+        return index < spilledThrough || index >= array.length ? null : array[(int) index];
+    }
+
+    private ByteBuffer coldSegment(int index) {
+        coldLock.lock();
+        try {
+            ByteBuffer segment = coldCache.get(index);
+            if (segment == null) {
+                int run = index / spillRun;
+                SpillIndex spilled = spillIndex;
+                ByteBuffer bytes = HistorySpill.read(spilled.offsets[run], spilled.lengths[run], spillRun * segmentBytes);
+                for (int i = 0; i < spillRun; i++) {
+                    coldCache.put(run * spillRun + i, bytes.slice(i * segmentBytes, segmentBytes));
+                }
+                segment = coldCache.get(index);
+            }
+            return segment;
+        } finally {
+            coldLock.unlock();
+        }
     }
 
     /**
-     * Processes a withdrawal transaction.
+     * Hands the segments past the hot ones to the spill thread, or spills
+     * them here if that thread has fallen far behind.
      */
-    private void withdrawFunds() {
-        // Using Indian Rupee format
-        var formatter = NumberFormat.getCurrencyInstance(new Locale("en", "IN"));
-
-        System.out.println("""
-            
-            ================================================
-                           WITHDRAW FUNDS
-            ================================================
-            Current Balance: %s
-            """.formatted(formatter.format(currentAccount.getBalance())));
+    private void scheduleSpill() {
+        int excess = segmentCount - spilledThrough - hotSegments;
+        if (excess > hotSegments + spillRun) {
+            spillColdSegments();
+        } else if (excess >= spillRun && spillQueued.compareAndSet(false, true)) {
+            HistorySpill.submit(() -> {
+                spillQueued.set(false);
+                spillColdSegments();
+            });
+        }
+    }
 
+    private void spillColdSegments() {
+        spillLock.lock();
         try {
-            System.out.print("Enter amount to withdraw: ₹");
-            double amount = Double.parseDouble(reader.readLine());
-
-            if (amount <= 0) {
-                System.out.println("Invalid amount. Please enter a positive number.");
-                return;
+            while (segmentCount - spilledThrough >= hotSegments + spillRun) {
+                int first = spilledThrough;
+                long stamp = spilling.writeLock();
+                spilledThrough = first + spillRun;
+                spilling.unlockWrite(stamp);
+
+                // No write to the run can count from here on, so it can be deflated without a lock
+                ByteBuffer[] array = segments;
+                var bytes = new byte[spillRun * segmentBytes];
+                for (int i = 0; i < spillRun; i++) {
+                    System.arraycopy(array[first + i].array(), 0, bytes, i * segmentBytes, segmentBytes);
+                }
+                byte[] deflated = HistorySpill.deflate(bytes);
+                spillIndex = spillIndex.with(first / spillRun, HistorySpill.write(deflated), deflated.length);
+                spilledBytes += deflated.length;
+
+                rollover.lock();
+                try {
+                    array = segments;
+                    for (int i = 0; i < spillRun; i++) {
+                        array[first + i] = null; // a reader that still got the heap copy reads the same bytes
+                    }
+                    segments = array;
+                } finally {
+                    rollover.unlock();
+                }
             }
+        } finally {
+            spillLock.unlock();
+        }
+    }
 
-            boolean success = currentAccount.withdraw(amount);
+    /** Spill file positions per run. Never changed once published; with() copies. */
+    private record SpillIndex(long[] offsets, int[] lengths) {
+        SpillIndex with(int run, long offset, int length) {
+            int size = Math.max(run + 1, offsets.length);
+            long[] newOffsets = java.util.Arrays.copyOf(offsets, size);
+            int[] newLengths = java.util.Arrays.copyOf(lengths, size);
+            newOffsets[run] = offset;
+            newLengths[run] = length;
+            return new SpillIndex(newOffsets, newLengths);
+        }
+    }
 
-            if (success) {
-                System.out.println("\nWithdrawal successful!");
-                System.out.println("New Balance: " + formatter.format(currentAccount.getBalance()));
-            } else {
-                System.out.println("\nWithdrawal failed. Please try again.");
+    private ByteBuffer segmentForAppend(long address) {
+        ByteBuffer segment = segmentOf(address);
+        if (segment != null) {
+            return segment;
+        }
+
+        rollover.lock();
+        try {
+            long index = address / segmentBytes;
+            while (segmentCount <= index) {
+                ByteBuffer[] array = segments;
+                int count = segmentCount;
+                if (count == array.length) {
+                    array = java.util.Arrays.copyOf(array, count * 2);
+                }
+                array[count] = newSegment(count);
+                segments = array;
+                segmentCount = count + 1;
             }
-        } catch (NumberFormatException e) {
-            System.out.println("Invalid input. Please enter a valid amount.");
-        } catch (IllegalArgumentException e) {
-            System.out.println("Error: " + e.getMessage());
-        } catch (InsufficientFundsException e) {
-            System.out.println("Error: " + e.getMessage());
-        } catch (Exception e) {
-            System.out.println("Error reading input: " + e.getMessage());
+            segment = segments[(int) index];
+        } finally {
+            rollover.unlock();
         }
+        if (hotSegments != 0) {
+            scheduleSpill();
+        }
+        return segment;
+    }
 
-        pressEnterToContinue();
+    private ByteBuffer newSegment(int index) {
+        if (directory == null) {
+            return ByteBuffer.allocate(segmentBytes);
+        }
+        Path file = directory.resolve(String.format("segment-%06d.dat", index));
+        try (var channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not create history segment " + file, e);
+        }
     }
+}
 
-    /**
-     * Processes a fund transfer transaction.
-     */
-    private void transferFunds() {
-        // Using Indian Rupee format
-        var formatter = NumberFormat.getCurrencyInstance(new Locale("en", "IN"));
+/**
+ * The file that tiered transaction stores spill their cold segments to,
+ * shared by every store in the process so a thousand busy accounts don't
+ * need a thousand open files. Segments are deflated on the way out; the
+ * columns compress well since neighbouring timestamps, amounts and ids
+ * look alike. The file is append-only and is deleted when the JVM exits.
+ */
+final class HistorySpill {
+    private static final AtomicLong end = new AtomicLong();
+    private static FileChannel channel;
 
-        System.out.println("""
-            
-            ================================================
-                           TRANSFER FUNDS
-            ================================================
-            Current Balance: %s
-            """.formatted(formatter.format(currentAccount.getBalance())));
+    // Setting up zlib costs more than deflating a small segment, so both are reused.
+    // The filtered strategy deflates the columns a third faster at the same ratio
+    private static final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private static final Inflater inflater = new Inflater();
 
-        try {
-            System.out.print("Enter destination account number: ");
-            String destinationAccountNumber = reader.readLine();
+    static {
+        deflater.setStrategy(Deflater.FILTERED);
+    }
 
-            if (destinationAccountNumber.equals(currentAccount.getAccountNumber())) {
-                System.out.println("Cannot transfer to same account.");
-                pressEnterToContinue();
-                return;
-            }
+    private static final ExecutorService spiller = Executors.newSingleThreadExecutor(task -> {
+        var thread = new Thread(task, "history-spill");
+        thread.setDaemon(true);
+        return thread;
+    });
 
-            Account destinationAccount = bank.getAccount(destinationAccountNumber);
+    private HistorySpill() {
+    }
 
-            if (destinationAccount == null) {
-                System.out.println("Destination account not found.");
-                pressEnterToContinue();
-                return;
+    /**
+     * Runs a spill on the spill thread.
+     */
+    static void submit(Runnable spill) {
+        spiller.execute(spill);
+    }
+
+    /**
+     * Deflates the bytes of one or more segments.
+     */
+    static byte[] deflate(byte[] bytes) {
+        synchronized (deflater) {
+            deflater.setInput(bytes);
+            deflater.finish();
+            byte[] out = new byte[bytes.length / 4 + 64];
+            int length = 0;
+            while (!deflater.finished()) {
+                if (length == out.length) {
+                    out = java.util.Arrays.copyOf(out, out.length * 2);
+                }
+                length += deflater.deflate(out, length, out.length - length);
             }
+            byte[] deflated = java.util.Arrays.copyOf(out, length);
+            deflater.reset();
+            return deflated;
+        }
+    }
 
-            System.out.print("Enter amount to transfer: ₹");
-            double amount = Double.parseDouble(reader.readLine());
+    /**
+     * Appends deflated bytes to the file and returns where they start.
+     */
+    static long write(byte[] deflated) {
+        long offset = end.getAndAdd(deflated.length);
+        try {
+            var buffer = ByteBuffer.wrap(deflated);
+            while (buffer.hasRemaining()) {
+                channel().write(buffer, offset + buffer.position());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not spill transaction history", e);
+        }
+        return offset;
+    }
 
-            if (amount <= 0) {
-                System.out.println("Invalid amount. Please enter a positive number.");
-                pressEnterToContinue();
-                return;
+    /**
+     * Reads back and inflates bytes written by {@link #write}.
+     */
+    static ByteBuffer read(long offset, int length, int inflatedBytes) {
+        var deflated = ByteBuffer.allocate(length);
+        byte[] bytes = new byte[inflatedBytes];
+        try {
+            while (deflated.hasRemaining()) {
+                if (channel().read(deflated, offset + deflated.position()) < 0) {
+                    throw new EOFException("Spilled history ends early");
+                }
+            }
+            synchronized (inflater) {
+                try {
+                    inflater.setInput(deflated.array());
+                    if (inflater.inflate(bytes) != inflatedBytes) {
+                        throw new DataFormatException("Spilled history segment is short");
+                    }
+                } finally {
+                    inflater.reset();
+                }
             }
+            return ByteBuffer.wrap(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read spilled transaction history", e);
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Spilled transaction history is corrupt", e);
+        }
+    }
 
-            System.out.println("""
-                
-                Transfer Details:
-                From: %s (%s)
-                To: %s (%s)
-                Amount: %s
-                """.formatted(
-                    currentAccount.getAccountNumber(),
-                    currentAccount.getAccountHolder(),
-                    destinationAccount.getAccountNumber(),
-                    destinationAccount.getAccountHolder(),
-                    formatter.format(amount)
-            ));
+    private static synchronized FileChannel channel() throws IOException {
+        if (channel == null) {
+            Path file = Files.createTempFile("atm-history-", ".spill");
+            file.toFile().deleteOnExit();
+            channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+        return channel;
+    }
+}
 
-            System.out.print("Confirm transfer? (yes/no): ");
-            String confirm = reader.readLine();
+/**
+ * Append-only transaction history of one account.
+ *
+ * The transactions themselves live in chunks of a {@link TransactionStore},
+ * each chunk pointing back at the account's previous one, so the log only
+ * has to remember the newest chunk, how full it is and the count. Writers
+ * append under a StampedLock write lock. Readers take an optimistic read of
+ * just those fields and then walk the chunks without any lock, since
+ * written slots never change; queries therefore don't make deposits and
+ * withdrawals wait. A restored account starts from a head and count taken
+ * from a snapshot without reading any of its history. Each chunk records
+ * how full its predecessor ended up, since a chunk spilled to disk before
+ * it filled is left part-empty.
+ *
+ * The log is kept in time order: a transaction stamped earlier than the
+ * one before it (two threads racing for the account) is recorded at the
+ * earlier one's time. That lets range queries binary-search the chunks.
+ *
+ * Once attached to a bank's {@link TransactionIndex}, every append also
+ * registers the transaction id with where it was written.
+ */
+final class TransactionLog {
+    // A page token holds the log's generation, a chunk address and how many
+    // of that chunk's slots are still unread
+    private static final int TOKEN_SLOT_BITS = 9;
+    private static final int TOKEN_GENERATION_SHIFT = 56;
+    private static final long TOKEN_CHUNK_MASK = (1L << (TOKEN_GENERATION_SHIFT - TOKEN_SLOT_BITS)) - 1;
+    private static final int TOKEN_GENERATION_MASK = 0x7F;
+
+    private final StampedLock lock = new StampedLock();
+    private final String owner;
+    private TransactionStore store;
+    private int generation; // bumped by moveTo, so page tokens into the old store are turned away
+    private long head = -1; // newest chunk, -1 when empty
+    private int headCount;  // transactions in the newest chunk
+    private int chunks;
+    private int size;
+    private long lastTimestamp = Long.MIN_VALUE;
+    private volatile TransactionTotals totals; // null until first asked for after a restore
+    private volatile HistoryIndex index;       // null until the first range query
+    private TransactionIndex audit;            // null unless the bank keeps a transaction index
+
+    TransactionLog(String owner, TransactionStore store) {
+        this.owner = owner;
+        this.store = store;
+        this.totals = new TransactionTotals();
+    }
 
-            if (!confirm.equalsIgnoreCase("yes")) {
-                System.out.println("Transfer cancelled.");
-                pressEnterToContinue();
-                return;
-            }
+    /**
+     * Reattaches a log whose transactions are already in the store.
+     */
+    TransactionLog(String owner, TransactionStore store, long head, int size) {
+        this.owner = owner;
+        this.store = store;
+        this.head = head;
+        this.size = size;
+
+        // Chunk capacities follow a fixed schedule, so the count says how full the head is
+        int remaining = size;
+        while (remaining > 0) {
+            int capacity = store.chunkCapacity(chunks++);
+            headCount = Math.min(remaining, capacity);
+            remaining -= capacity;
+        }
+        if (size > 0) {
+            lastTimestamp = store.timestamp(head, headCount - 1);
+        }
+    }
 
-            boolean success = currentAccount.transfer(destinationAccount, amount);
+    /**
+     * Adds a transaction to the end of the log. The counterparty is null
+     * for deposits and withdrawals.
+     */
+    void append(TransactionType type, byte description, long amount, long timestamp, String counterparty, long id) {
+        long stamp = lock.writeLock();
+        try {
+            int counterpartyId = counterparty == null ? TransactionStore.NO_COUNTERPARTY : store.idOf(counterparty);
+            appendLocked(type, description, amount, timestamp, counterpartyId, id);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
 
-            if (success) {
-                System.out.println("\nTransfer successful!");
-                System.out.println("New Balance: " + formatter.format(currentAccount.getBalance()));
-            } else {
-                System.out.println("\nTransfer failed. Please try again.");
-            }
-        } catch (NumberFormatException e) {
-            System.out.println("Invalid input. Please enter a valid amount.");
-        } catch (IllegalArgumentException e) {
-            System.out.println("Error: " + e.getMessage());
-        } catch (InsufficientFundsException e) {
-            System.out.println("Error: " + e.getMessage());
-        } catch (Exception e) {
-            System.out.println("Error reading input: " + e.getMessage());
+    private void appendLocked(TransactionType type, byte description, long amount, long timestamp, int counterparty,
+                              long id) {
+        timestamp = Math.max(timestamp, lastTimestamp);
+        lastTimestamp = timestamp;
+        if (head < 0 || headCount == store.chunkCapacity(chunks - 1)) {
+            startChunk(timestamp);
+        }
+        while (!store.put(head, headCount, type, description, amount, timestamp, counterparty, id)) {
+            startChunk(timestamp); // the head chunk was spilled to disk
+        }
+        if (audit != null) {
+            audit.put(id, this, head << 9 | headCount);
+        }
+        headCount++;
+        size++;
+        TransactionTotals running = totals;
+        if (running != null) {
+            running.add(type, amount, timestamp);
         }
+    }
 
-        pressEnterToContinue();
+    private void startChunk(long timestamp) {
+        head = store.newChunk(store.chunkCapacity(chunks++), head, headCount);
+        headCount = 0;
+        HistoryIndex chunkIndex = index;
+        if (chunkIndex != null) {
+            chunkIndex.add(head, timestamp);
+        }
     }
 
     /**
-     * Displays the transaction history for the current account.
+     * Copies every transaction into another store and keeps appending there.
      */
-    private void viewTransactionHistory() {
-        System.out.println("""
-            
-            ================================================
-                        TRANSACTION HISTORY
-            ================================================
-            """);
+    void moveTo(TransactionStore target) {
+        long stamp = lock.writeLock();
+        try {
+            if (target == store) {
+                return;
+            }
+            var oldChunks = new long[chunks];
+            var counts = new int[chunks];
+            long chunk = head;
+            int inChunk = headCount;
+            for (int i = chunks - 1; i >= 0; i--) {
+                oldChunks[i] = chunk;
+                counts[i] = inChunk;
+                inChunk = store.previousCount(chunk);
+                chunk = store.previousChunk(chunk);
+            }
+
+            TransactionStore from = store;
+            store = target;
+            generation = (generation + 1) & TOKEN_GENERATION_MASK;
+            head = -1;
+            headCount = 0;
+            chunks = 0;
+            size = 0;
+            lastTimestamp = Long.MIN_VALUE;
+            index = null;
+            for (int i = 0; i < oldChunks.length; i++) {
+                long oldChunk = oldChunks[i];
+                for (int slot = 0; slot < counts[i]; slot++) {
+                    int id = from.counterparty(oldChunk, slot);
+                    appendLocked(from.type(oldChunk, slot), from.description(oldChunk, slot),
+                            from.amount(oldChunk, slot), from.timestamp(oldChunk, slot),
+                            id == TransactionStore.NO_COUNTERPARTY ? id : target.idOf(from.accountNumberOf(id)),
+                            from.id(oldChunk, slot));
+                }
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
 
-        var transactions = currentAccount.getTransactionHistory();
+    /**
+     * Gets the number of transactions in the log.
+     */
+    int size() {
+        long stamp = lock.tryOptimisticRead();
+        int n = size;
+        if (lock.validate(stamp)) {
+            return n;
+        }
 
-        if (transactions.isEmpty()) {
-            System.out.println("No transactions found.");
-        } else {
-            SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+        stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
 
-            System.out.println("Date & Time            | Type       | Amount    | Description");
-            System.out.println("---------------------------------------------------------------------");
+    /**
+     * Registers every transaction so far with the index and keeps
+     * registering new ones.
+     */
+    void attachIndex(TransactionIndex transactionIndex) {
+        long stamp = lock.writeLock();
+        try {
+            audit = transactionIndex;
+            long chunk = head;
+            int inChunk = headCount;
+            while (chunk >= 0) {
+                for (int slot = 0; slot < inChunk; slot++) {
+                    transactionIndex.put(store.id(chunk, slot), this, chunk << 9 | slot);
+                }
+                inChunk = store.previousCount(chunk);
+                chunk = store.previousChunk(chunk);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
 
-            // Using modern for-each loop with formatted output
-            transactions.forEach(transaction -> {
-                String formattedDate = dateFormat.format(transaction.getTimestamp());
-                String type = transaction.getType().toString();
-                String amount = String.format("₹%.2f", transaction.getAmount());
+    /**
+     * Reads the transaction a {@link TransactionIndex} position points at,
+     * or null if it isn't the one with the given id.
+     */
+    Transaction read(long position, long id) {
+        long stamp = lock.readLock();
+        try {
+            long chunk = position >>> 9;
+            int slot = (int) (position & 0x1FF);
+            if (chunk >= store.size() || slot >= store.capacity(chunk) || store.id(chunk, slot) != id) {
+                return null; // moved to another store since it was looked up
+            }
+            return store.read(chunk, slot, owner);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
 
-                System.out.printf("%-22s | %-10s | %-9s | %s%n",
-                        formattedDate, type, amount, transaction.getDescription());
-            });
+    /**
+     * Gets the id of the newest transaction, or 0 if there is none.
+     */
+    long lastId() {
+        long stamp = lock.readLock();
+        try {
+            long chunk = head;
+            int inChunk = headCount;
+            while (chunk >= 0 && inChunk == 0) {
+                inChunk = store.previousCount(chunk);
+                chunk = store.previousChunk(chunk);
+            }
+            return chunk < 0 ? 0 : store.id(chunk, inChunk - 1);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
 
-            // Also show transaction statistics
-            System.out.println("\nTransaction Statistics:");
-            System.out.println("---------------------------------------------------------------------");
+    /**
+     * Gets the address of the newest chunk, or -1 if there is none.
+     */
+    long head() {
+        long stamp = lock.readLock();
+        try {
+            return head;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
 
-            var depositTotal = currentAccount.getTotalForTransactionType(TransactionType.DEPOSIT);
-            var withdrawalTotal = currentAccount.getTotalForTransactionType(TransactionType.WITHDRAWAL);
-            var transferTotal = currentAccount.getTotalForTransactionType(TransactionType.TRANSFER);
+    /**
+     * Copies the whole log, oldest first.
+     */
+    java.util.List<Transaction> snapshot() {
+        return latest(Integer.MAX_VALUE);
+    }
 
-            System.out.printf("Total Deposits:    ₹%.2f%n", depositTotal);
-            System.out.printf("Total Withdrawals: ₹%.2f%n", withdrawalTotal);
-            System.out.printf("Total Transfers:   ₹%.2f%n", transferTotal);
+    /**
+     * Copies the last {@code count} transactions, oldest first.
+     */
+    java.util.List<Transaction> latest(int count) {
+        long stamp = lock.tryOptimisticRead();
+        TransactionStore from = store;
+        long chunk = head;
+        int inChunk = headCount;
+        int n = size;
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                from = store;
+                chunk = head;
+                inChunk = headCount;
+                n = size;
+            } finally {
+                lock.unlockRead(stamp);
+            }
         }
 
-        pressEnterToContinue();
+        var transactions = new Transaction[Math.min(count, n)];
+        for (int i = transactions.length - 1; i >= 0; ) {
+            for (int slot = inChunk - 1; slot >= 0 && i >= 0; slot--) {
+                transactions[i--] = from.read(chunk, slot, owner);
+            }
+            inChunk = from.previousCount(chunk);
+            chunk = from.previousChunk(chunk);
+        }
+        return java.util.Arrays.asList(transactions);
     }
 
     /**
-     * Changes the PIN for the current account.
+     * Streams the whole log as TransactionDetails, oldest first. The
+     * records are built one at a time from the columns as the stream is
+     * consumed, so exporting a long history doesn't copy it first.
+     * Transactions appended after the call aren't included.
      */
-    private void changePin() {
-        System.out.println("""
-            
-            ================================================
-                            CHANGE PIN
-            ================================================
-            """);
+    java.util.stream.Stream<TransactionDetails> details() {
+        long stamp = lock.tryOptimisticRead();
+        TransactionStore from = store;
+        long chunk = head;
+        int inChunk = headCount;
+        int chunkCount = chunks;
+        int n = size;
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                from = store;
+                chunk = head;
+                inChunk = headCount;
+                chunkCount = chunks;
+                n = size;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
 
-        try {
-            System.out.print("Enter your current PIN: ");
-            String currentPin = reader.readLine();
+        var addresses = new long[chunkCount];
+        var counts = new int[chunkCount];
+        for (int i = chunkCount - 1; i >= 0; i--) {
+            addresses[i] = chunk;
+            counts[i] = inChunk;
+            inChunk = from.previousCount(chunk);
+            chunk = from.previousChunk(chunk);
+        }
 
-            System.out.print("Enter your new PIN: ");
-            String newPin = reader.readLine();
+        TransactionStore source = from;
+        var records = new java.util.Spliterators.AbstractSpliterator<TransactionDetails>(n,
+                java.util.Spliterator.ORDERED | java.util.Spliterator.SIZED | java.util.Spliterator.NONNULL) {
+            private int i;
+            private int slot;
 
-            System.out.print("Confirm your new PIN: ");
-            String confirmPin = reader.readLine();
+            @Override
+            public boolean tryAdvance(java.util.function.Consumer<? super TransactionDetails> action) {
+                while (i < addresses.length) {
+                    if (slot < counts[i]) {
+                        action.accept(source.details(addresses[i], slot++, owner));
+                        return true;
+                    }
+                    i++;
+                    slot = 0;
+                }
+                return false;
+            }
 
-            if (!newPin.equals(confirmPin)) {
-                System.out.println("PINs do not match. PIN change cancelled.");
-                pressEnterToContinue();
-                return;
+            @Override
+            public void forEachRemaining(java.util.function.Consumer<? super TransactionDetails> action) {
+                for (; i < addresses.length; i++, slot = 0) {
+                    for (; slot < counts[i]; slot++) {
+                        action.accept(source.details(addresses[i], slot, owner));
+                    }
+                }
             }
+        };
+        return java.util.stream.StreamSupport.stream(records, false);
+    }
 
-            boolean success = currentAccount.changePin(currentPin, newPin);
+    /**
+     * Reads up to {@code pageSize} transactions, newest first, starting
+     * at a token from an earlier page or at the newest transaction for
+     * {@link HistoryPage#FIRST}. Only the transactions on the page are
+     * read, so the first page costs the same however long the history is.
+     * Tokens handed out before the history moved to another store are
+     * refused.
+     */
+    HistoryPage page(long token, int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be positive");
+        }
+        long stamp = lock.tryOptimisticRead();
+        TransactionStore from = store;
+        int current = generation;
+        long chunk = head;
+        int inChunk = headCount;
+        int n = size;
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                from = store;
+                current = generation;
+                chunk = head;
+                inChunk = headCount;
+                n = size;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
 
-            if (success) {
-                System.out.println("PIN changed successfully!");
+        if (token != HistoryPage.FIRST) {
+            if (token < 0) {
+                throw new IllegalArgumentException("Invalid history token " + token);
+            }
+            if ((int) (token >>> TOKEN_GENERATION_SHIFT) != current) {
+                throw new IllegalArgumentException("History token " + token + " is from before the history was moved");
+            }
+            chunk = token >>> TOKEN_SLOT_BITS & TOKEN_CHUNK_MASK;
+            inChunk = (int) (token & ((1 << TOKEN_SLOT_BITS) - 1));
+            if (chunk >= from.size() || inChunk > from.capacity(chunk)) {
+                throw new IllegalArgumentException("Invalid history token " + token);
+            }
+        }
+
+        var transactions = new ArrayList<Transaction>(Math.min(pageSize, n));
+        while (chunk >= 0) {
+            if (inChunk == 0) {
+                inChunk = from.previousCount(chunk);
+                chunk = from.previousChunk(chunk);
+            } else if (transactions.size() < pageSize) {
+                transactions.add(from.read(chunk, --inChunk, owner));
             } else {
-                System.out.println("PIN change failed. Incorrect current PIN.");
+                break;
             }
-        } catch (Exception e) {
-            System.out.println("Error reading input: " + e.getMessage());
         }
+        return new HistoryPage(transactions, chunk < 0 ? HistoryPage.END
+                : (long) current << TOKEN_GENERATION_SHIFT | chunk << TOKEN_SLOT_BITS | inChunk, n);
+    }
 
-        pressEnterToContinue();
+    /**
+     * Copies the transactions stamped from {@code from} (inclusive) to
+     * {@code to} (exclusive), oldest first. Binary-searches the chunk
+     * index and then the timestamp column of one chunk, so only the
+     * transactions in the range are read.
+     */
+    java.util.List<Transaction> between(long from, long to) {
+        var transactions = new ArrayList<Transaction>();
+        if (from >= to) {
+            return transactions;
+        }
+
+        ChunkRange range = chunksFrom(from);
+        TransactionStore source = range.source();
+        for (int i = range.first(); i < range.count(); i++) {
+            long chunk = range.chunks()[i];
+            int filled = range.filled(i);
+            for (int slot = i == range.first() ? firstSlotFrom(source, chunk, filled, from) : 0; slot < filled; slot++) {
+                if (source.timestamp(chunk, slot) >= to) {
+                    return transactions;
+                }
+                transactions.add(source.read(chunk, slot, owner));
+            }
+        }
+        return transactions;
     }
 
     /**
-     * Logs out the current user.
+     * Sums the amounts of the transactions of the given type stamped from
+     * {@code from} (inclusive) to {@code to} (exclusive). Finds the range
+     * the same way as {@link #between} and then sums the type and amount
+     * columns of each chunk in it, without building any Transactions.
      */
-    private void logout() {
-        System.out.println("\nLogging out...");
-        currentAccount = null;
+    long totalBetween(TransactionType type, long from, long to) {
+        if (from >= to) {
+            return 0;
+        }
+
+        ChunkRange range = chunksFrom(from);
+        TransactionStore source = range.source();
+        long sum = 0;
+        for (int i = range.first(); i < range.count(); i++) {
+            long chunk = range.chunks()[i];
+            int filled = range.filled(i);
+            int end = firstSlotFrom(source, chunk, filled, to);
+            sum += source.total(chunk, i == range.first() ? firstSlotFrom(source, chunk, filled, from) : 0, end, type);
+            if (end < filled) {
+                break;
+            }
+        }
+        return sum;
     }
 
     /**
-     * Prompts the user to press Enter to continue.
+     * The chunks a range query reads, from the one it starts in to the
+     * newest, as seen at one moment.
      */
-    private void pressEnterToContinue() {
-        System.out.println("\nPress Enter to continue...");
-        try {
-            reader.readLine();
-        } catch (Exception e) {
-            System.out.println("Error reading input: " + e.getMessage());
+    private record ChunkRange(TransactionStore source, long[] chunks, int count, int inHead, int first) {
+        int filled(int i) {
+            return i == count - 1 ? inHead : source.previousCount(chunks[i + 1]);
         }
     }
-}
 
-/**
- * A demonstration class that shows how to use the ATM system with sample inputs.
- * This class provides an alternative to the interactive ATM that doesn't require user input.
- *
- * Created this for quick demos and testing during development.
- * It's a simple way to showcase features without having to go through
- * the full GUI or console interface each time.
- *
- * @author Rahul Verma
- * @version 1.3
- * @since 15-Apr-2025
- */
-class DemoATM {
-    public static void main(String[] args) {
-        System.out.println("""
-            SBI ATM Simulation System - Demo Mode
-            ===================================
-            """);
+    /**
+     * Finds the chunk a range starting at {@code from} begins in: the last
+     * one that starts before it.
+     */
+    private ChunkRange chunksFrom(long from) {
+        HistoryIndex chunkIndex = index;
+        if (chunkIndex == null) {
+            chunkIndex = buildIndex();
+        }
 
-        // Create bank and account objects
-        var bank = new Bank("State Bank of India");
+        long stamp = lock.tryOptimisticRead();
+        TransactionStore source = store;
+        int inHead = headCount;
+        long[] chunkAddresses = chunkIndex.chunks();
+        long[] firstTimestamps = chunkIndex.firstTimestamps();
+        int count = chunkIndex.count();
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                source = store;
+                inHead = headCount;
+                chunkAddresses = chunkIndex.chunks();
+                firstTimestamps = chunkIndex.firstTimestamps();
+                count = chunkIndex.count();
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
 
-        // Get one of the test accounts
-        var account = bank.getAccount("123456");
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (firstTimestamps[middle] < from) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return new ChunkRange(source, chunkAddresses, count, inHead, Math.max(0, low - 1));
+    }
 
-        if (account != null) {
-            // Use Indian Rupee format
-            var formatter = NumberFormat.getCurrencyInstance(new Locale("en", "IN"));
+    private static int firstSlotFrom(TransactionStore source, long chunk, int filled, long from) {
+        int low = 0;
+        int high = filled;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (source.timestamp(chunk, middle) < from) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
 
-            System.out.println("""
-                
-                Account Information:
-                Account Number: %s
-                Account Holder: %s
-                Initial Balance: %s
-                
-                Performing transactions...
-                """.formatted(
-                    account.getAccountNumber(),
-                    account.getAccountHolder(),
-                    formatter.format(account.getBalance())
-            ));
+    /**
+     * Lists the chunks in time order the first time a range is asked for;
+     * from then on new chunks are added as they are allocated.
+     */
+    private HistoryIndex buildIndex() {
+        long stamp = lock.writeLock();
+        try {
+            if (index == null) {
+                var addresses = new long[chunks];
+                var counts = new int[chunks];
+                long chunk = head;
+                int inChunk = headCount;
+                for (int i = chunks - 1; i >= 0; i--) {
+                    addresses[i] = chunk;
+                    counts[i] = inChunk;
+                    inChunk = store.previousCount(chunk);
+                    chunk = store.previousChunk(chunk);
+                }
+                var chunkIndex = new HistoryIndex(Math.max(chunks, 4));
+                long firstTimestamp = Long.MIN_VALUE;
+                for (int i = 0; i < chunks; i++) {
+                    // A chunk spilled before its first write is empty; keep the timestamps sorted
+                    if (counts[i] > 0) {
+                        firstTimestamp = store.timestamp(addresses[i], 0);
+                    }
+                    chunkIndex.add(addresses[i], firstTimestamp);
+                }
+                index = chunkIndex;
+            }
+            return index;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
 
-            try {
-                // Perform a deposit
-                double depositAmount = 500.0;
-                account.deposit(depositAmount);
-                System.out.println("Deposited: " + formatter.format(depositAmount));
-                System.out.println("New Balance: " + formatter.format(account.getBalance()));
+    /**
+     * Gets the total amount of every transaction of the given type.
+     */
+    long total(TransactionType type) {
+        return readTotals(running -> running.amount(type));
+    }
 
-                // Perform a withdrawal
-                double withdrawalAmount = 200.0;
-                account.withdraw(withdrawalAmount);
-                System.out.println("\nWithdrawn: " + formatter.format(withdrawalAmount));
-                System.out.println("New Balance: " + formatter.format(account.getBalance()));
+    /**
+     * Gets the number of transactions of the given type.
+     */
+    int count(TransactionType type) {
+        return (int) readTotals(running -> running.count(type));
+    }
 
-                // Perform a transfer
-                Account destinationAccount = bank.getAccount("234567");
-                double transferAmount = 300.0;
+    /**
+     * Gets the total amount of transactions of the given type on one day.
+     * Recent days come from the running totals; a day that has dropped out
+     * of them is summed from that day's part of the history.
+     */
+    long dailyTotal(TransactionType type, LocalDate day) {
+        long epochDay = day.toEpochDay();
+        long amount = readTotals(running -> running.dailyAmount(type, epochDay));
+        if (amount >= 0) {
+            return amount;
+        }
 
-                if (destinationAccount != null) {
-                    double initialDestBalance = destinationAccount.getBalance();
+        return totalBetween(type, day.atStartOfDay(TransactionTotals.ZONE).toInstant().toEpochMilli(),
+                day.plusDays(1).atStartOfDay(TransactionTotals.ZONE).toInstant().toEpochMilli());
+    }
 
-                    account.transfer(destinationAccount, transferAmount);
+    private long readTotals(java.util.function.ToLongFunction<TransactionTotals> query) {
+        TransactionTotals running = totals;
+        if (running == null) {
+            running = rebuildTotals();
+        }
 
-                    System.out.println("""
-                        
-                        Transferred: %s
-                        From Account: %s (%s)
-                        To Account: %s (%s)
-                        New Source Balance: %s
-                        New Destination Balance: %s
-                        """.formatted(
-                            formatter.format(transferAmount),
-                            account.getAccountNumber(),
-                            account.getAccountHolder(),
-                            destinationAccount.getAccountNumber(),
-                            destinationAccount.getAccountHolder(),
-                            formatter.format(account.getBalance()),
-                            formatter.format(destinationAccount.getBalance())
-                    ));
+        long stamp = lock.tryOptimisticRead();
+        long value = query.applyAsLong(running);
+        if (lock.validate(stamp)) {
+            return value;
+        }
+
+        stamp = lock.readLock();
+        try {
+            return query.applyAsLong(running);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Builds the running totals of a restored log from its history, the
+     * first time they are asked for.
+     */
+    private TransactionTotals rebuildTotals() {
+        long stamp = lock.writeLock();
+        try {
+            if (totals == null) {
+                var running = new TransactionTotals();
+                long chunk = head;
+                int inChunk = headCount;
+                while (chunk >= 0) {
+                    for (int slot = 0; slot < inChunk; slot++) {
+                        running.add(store.type(chunk, slot), store.amount(chunk, slot), store.timestamp(chunk, slot));
+                    }
+                    inChunk = store.previousCount(chunk);
+                    chunk = store.previousChunk(chunk);
                 }
+                totals = running;
+            }
+            return totals;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
 
-                // Show transaction history
-                System.out.println("""
-                    
-                    Transaction History:
-                    ====================
-                    """);
+    /**
+     * Sums the amounts of every transaction of the given type by reading
+     * the whole history, one chunk column at a time. The running totals
+     * make this unnecessary for statistics; it is kept for comparison.
+     */
+    long scanTotal(TransactionType type) {
+        long stamp = lock.tryOptimisticRead();
+        TransactionStore from = store;
+        long chunk = head;
+        int inChunk = headCount;
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                from = store;
+                chunk = head;
+                inChunk = headCount;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
 
-                SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+        long sum = 0;
+        while (chunk >= 0) {
+            sum += from.total(chunk, inChunk, type);
+            inChunk = from.previousCount(chunk);
+            chunk = from.previousChunk(chunk);
+        }
+        return sum;
+    }
+}
 
-                // Using stream and lambdas to print transaction history
-                account.getTransactionHistory()
-                        .forEach(transaction ->
-                                System.out.println(dateFormat.format(transaction.getTimestamp()) + " | " +
-                                        transaction.getType() + " | " +
-                                        formatter.format(transaction.getAmount()) + " | " +
-                                        transaction.getDescription())
-                        );
+/**
+ * The chunks of one account's history in time order, with the timestamp
+ * each one starts at. Since the history is in time order those timestamps
+ * are sorted, so a binary search finds the chunk a range starts in. Not
+ * thread-safe on its own; its {@link TransactionLog} adds chunks under the
+ * log's write lock and reads it under an optimistic stamp.
+ */
+final class HistoryIndex {
+    private long[] chunks;
+    private long[] firstTimestamps;
+    private int count;
+
+    HistoryIndex(int capacity) {
+        this.chunks = new long[capacity];
+        this.firstTimestamps = new long[capacity];
+    }
 
-                // Show transaction statistics using the new methods
-                System.out.println("""
-                    
-                    Transaction Statistics:
-                    ====================
-                    """);
+    /**
+     * Adds the newest chunk.
+     */
+    void add(long chunk, long firstTimestamp) {
+        if (count == chunks.length) {
+            // Replace both arrays so a reader holding the old ones still sees a complete prefix
+            chunks = java.util.Arrays.copyOf(chunks, count * 2);
+            firstTimestamps = java.util.Arrays.copyOf(firstTimestamps, count * 2);
+        }
+        chunks[count] = chunk;
+        firstTimestamps[count] = firstTimestamp;
+        count++;
+    }
 
-                System.out.println("Total deposits: " +
-                        formatter.format(account.getTotalForTransactionType(TransactionType.DEPOSIT)));
-                System.out.println("Total withdrawals: " +
-                        formatter.format(account.getTotalForTransactionType(TransactionType.WITHDRAWAL)));
-                System.out.println("Total transfers: " +
-                        formatter.format(account.getTotalForTransactionType(TransactionType.TRANSFER)));
+    long[] chunks() { return chunks; }
+    long[] firstTimestamps() { return firstTimestamps; }
+    int count() { return count; }
+}
 
-            } catch (InsufficientFundsException e) {
-                System.out.println("Error: " + e.getMessage());
-            } catch (Exception e) {
-                System.out.println("An error occurred: " + e.getMessage());
+/**
+ * Bank-wide index from transaction id to where the transaction is kept:
+ * its account's {@link TransactionLog} and the chunk and slot in it. An
+ * auditor can then read any transaction with one hash probe instead of
+ * scanning every account's history.
+ *
+ * Ids are spread over 64 stripes, each an open-addressing table of
+ * primitive arrays (no boxed keys, no entry objects) probed linearly from
+ * a Fibonacci hash of the id. A stripe is written under its StampedLock
+ * write lock and read under an optimistic stamp, so appends to different
+ * stripes don't contend and lookups don't block anyone. Id 0 marks an
+ * empty slot; the generator never hands it out.
+ */
+final class TransactionIndex {
+    private static final int STRIPE_BITS = 6;
+    private static final int MIN_SLOT_BITS = 10;
+    private static final long GOLDEN = 0x9E3779B97F4A7C15L;
+
+    private final Stripe[] stripes = new Stripe[1 << STRIPE_BITS];
+
+    TransactionIndex() {
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * Records where a transaction is kept, replacing any earlier position.
+     */
+    void put(long id, TransactionLog log, long position) {
+        if (id == 0) {
+            return; // never had an id, so it can't be looked up
+        }
+        long hash = id * GOLDEN;
+        Stripe stripe = stripes[(int) (hash >>> (64 - STRIPE_BITS))];
+        long stamp = stripe.lock.writeLock();
+        try {
+            stripe.put(hash, id, log, position);
+        } finally {
+            stripe.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Reads the transaction with the given id, or null if there is none.
+     */
+    Transaction find(long id) {
+        if (id == 0) {
+            return null;
+        }
+        long hash = id * GOLDEN;
+        Stripe stripe = stripes[(int) (hash >>> (64 - STRIPE_BITS))];
+        while (true) {
+            long stamp = stripe.lock.tryOptimisticRead();
+            long[] positions = stripe.positions;
+            TransactionLog[] logs = stripe.logs;
+            int slot = Stripe.slotOf(stripe.keys, hash, id);
+            // Racing a resize, the arrays can be of different sizes until the stamp is checked
+            boolean found = slot >= 0 && slot < positions.length && slot < logs.length;
+            TransactionLog log = found ? logs[slot] : null;
+            long position = found ? positions[slot] : 0;
+            if (!stripe.lock.validate(stamp)) {
+                stamp = stripe.lock.readLock();
+                try {
+                    slot = Stripe.slotOf(stripe.keys, hash, id);
+                    log = slot < 0 ? null : stripe.logs[slot];
+                    position = slot < 0 ? 0 : stripe.positions[slot];
+                } finally {
+                    stripe.lock.unlockRead(stamp);
+                }
             }
-        } else {
-            System.out.println("Test account not found!");
+            if (log == null) {
+                return null;
+            }
+            Transaction transaction = log.read(position, id);
+            if (transaction != null) {
+                return transaction;
+            }
+            // The history moved stores while we looked; it has been re-registered since
         }
+    }
 
-        System.out.println("""
-            
-            Demo completed. Run 'java ModernATMSystem' for the full interactive SBI ATM experience.
-            """);
+    /**
+     * Gets the number of transactions indexed.
+     */
+    long size() {
+        long total = 0;
+        for (Stripe stripe : stripes) {
+            long stamp = stripe.lock.readLock();
+            try {
+                total += stripe.count;
+            } finally {
+                stripe.lock.unlockRead(stamp);
+            }
+        }
+        return total;
+    }
+
+    private static final class Stripe {
+        final StampedLock lock = new StampedLock();
+        long[] keys = new long[1 << MIN_SLOT_BITS];
+        long[] positions = new long[1 << MIN_SLOT_BITS];
+        TransactionLog[] logs = new TransactionLog[1 << MIN_SLOT_BITS];
+        int count;
+
+        /**
+         * Finds the slot holding an id, or -1. Safe to run under an
+         * optimistic stamp: it only reads, and gives up after one lap.
+         */
+        static int slotOf(long[] table, long hash, long id) {
+            int mask = table.length - 1;
+            int slot = home(hash, table.length);
+            for (int probes = 0; probes <= mask; probes++, slot = (slot + 1) & mask) {
+                long key = table[slot];
+                if (key == id) {
+                    return slot;
+                }
+                if (key == 0) {
+                    return -1;
+                }
+            }
+            return -1;
+        }
+
+        void put(long hash, long id, TransactionLog log, long position) {
+            int mask = keys.length - 1;
+            int slot = home(hash, keys.length);
+            while (keys[slot] != 0 && keys[slot] != id) {
+                slot = (slot + 1) & mask;
+            }
+            if (keys[slot] == 0) {
+                if (++count > keys.length >>> 1) {
+                    grow();
+                    put(hash, id, log, position);
+                    return;
+                }
+                keys[slot] = id;
+            }
+            positions[slot] = position;
+            logs[slot] = log;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            long[] oldPositions = positions;
+            TransactionLog[] oldLogs = logs;
+            keys = new long[oldKeys.length * 2];
+            positions = new long[oldKeys.length * 2];
+            logs = new TransactionLog[oldKeys.length * 2];
+            count = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0) {
+                    put(oldKeys[i] * GOLDEN, oldKeys[i], oldLogs[i], oldPositions[i]);
+                }
+            }
+        }
+
+        // The stripe number took the top bits of the hash; the slot takes the ones below them
+        private static int home(long hash, int slots) {
+            return (int) (hash << STRIPE_BITS >>> (64 - Integer.numberOfTrailingZeros(slots)));
+        }
+    }
+}
+
+/**
+ * Running totals of an account's transactions: amount and count per type,
+ * overall and for each of the last few days. The day buckets form a small
+ * ring indexed by epoch day, so today's withdrawals for a daily limit are
+ * one array read. Not thread-safe on its own; its {@link TransactionLog}
+ * updates it under the log's write lock.
+ */
+final class TransactionTotals {
+    static final int DAYS = 8;
+    static final ZoneId ZONE = ZoneId.systemDefault();
+    private static final int TYPE_COUNT = TransactionType.values().length;
+
+    private final long[] amounts = new long[TYPE_COUNT];
+    private final long[] counts = new long[TYPE_COUNT];
+    private final long[] bucketDays = new long[DAYS]; // epoch day each bucket holds
+    private final long[] bucketAmounts = new long[DAYS * TYPE_COUNT];
+    private long newestDay = Long.MIN_VALUE;
+
+    // The day the last timestamp fell in, so most adds skip the calendar
+    private long dayStart = Long.MAX_VALUE;
+    private long dayEnd = Long.MIN_VALUE;
+    private long day;
+
+    TransactionTotals() {
+        java.util.Arrays.fill(bucketDays, Long.MIN_VALUE);
+    }
+
+    /**
+     * Counts a transaction in.
+     */
+    void add(TransactionType type, long amount, long timestamp) {
+        int index = type.ordinal();
+        amounts[index] += amount;
+        counts[index]++;
+
+        long epochDay = epochDay(timestamp);
+        newestDay = Math.max(newestDay, epochDay);
+        int bucket = (int) Math.floorMod(epochDay, (long) DAYS);
+        if (bucketDays[bucket] != epochDay) {
+            if (bucketDays[bucket] > epochDay) {
+                return; // more than DAYS older than a day already kept
+            }
+            bucketDays[bucket] = epochDay;
+            java.util.Arrays.fill(bucketAmounts, bucket * TYPE_COUNT, (bucket + 1) * TYPE_COUNT, 0);
+        }
+        bucketAmounts[bucket * TYPE_COUNT + index] += amount;
+    }
+
+    long amount(TransactionType type) {
+        return amounts[type.ordinal()];
+    }
+
+    long count(TransactionType type) {
+        return counts[type.ordinal()];
+    }
+
+    /**
+     * Gets the amount of the given type on a day, or -1 if the day is older
+     * than the buckets kept.
+     */
+    long dailyAmount(TransactionType type, long epochDay) {
+        if (epochDay > newestDay) {
+            return 0;
+        }
+        if (epochDay <= newestDay - DAYS) {
+            return -1;
+        }
+        int bucket = (int) Math.floorMod(epochDay, (long) DAYS);
+        return bucketDays[bucket] == epochDay ? bucketAmounts[bucket * TYPE_COUNT + type.ordinal()] : 0;
+    }
+
+    private long epochDay(long timestamp) {
+        if (timestamp < dayStart || timestamp >= dayEnd) {
+            LocalDate date = java.time.Instant.ofEpochMilli(timestamp).atZone(ZONE).toLocalDate();
+            day = date.toEpochDay();
+            dayStart = date.atStartOfDay(ZONE).toInstant().toEpochMilli();
+            dayEnd = date.plusDays(1).atStartOfDay(ZONE).toInstant().toEpochMilli();
+        }
+        return day;
+    }
+}
+
+/**
+ * One page of an account's transaction history, newest first.
+ *
+ * Pass nextToken back to get the page after it; it is END once the oldest
+ * transaction has been read. Tokens point into the history itself, so
+ * transactions added while paging don't shift later pages. A token stops
+ * working once the account's history moves to another store, for example
+ * when the account is added to a journaled bank.
+ */
+record HistoryPage(
+        java.util.List<Transaction> transactions,
+        long nextToken,
+        int totalCount // transactions in the account when this page was read
+) {
+    static final long FIRST = Long.MAX_VALUE;
+    static final long END = -1;
+
+    public boolean hasMore() {
+        return nextToken != END;
+    }
+}
+
+/**
+ * Represents a bank account in the ATM system.
+ *
+ * Accounts can be shared between several terminal threads. The balance is
+ * only ever changed through compare-and-set on a VarHandle, so deposits and
+ * withdrawals never block each other and a withdrawal can't overdraw the
+ * account even when many threads hit it at once. Reading the balance is a
+ * single volatile load and the history is read optimistically, so balance
+ * inquiries never hold up a deposit or withdrawal. When the account belongs
+ * to a journaled bank, the public mutators only return once the change is
+ * durable in the journal.
+ *
+ * The journal is written ahead: money coming in is journaled before the
+ * balance shows it, so a debit that spends it can never reach the journal
+ * first. A debit is journaled right after the compare-and-set that approves
+ * it, and given back if the journal refuses the record. History rows are
+ * added after the journal record in both cases.
+ *
+ * The PIN is only kept as a salted SHA-256 hash, and that is also what goes
+ * into the journal and snapshots.
+ */
+class Account {
+    private static final VarHandle BALANCE;
+    private static final VarHandle CHANGES;
+    private static final VarHandle JOURNALED_THROUGH;
+    private static final long CHANGE_FINISHED = (1L << 32) - 1; // one more finished, one fewer in flight
+    static final AccountLockStripes TRANSFER_LOCKS = new AccountLockStripes(1024);
+    static final int MINI_STATEMENT_SIZE = 10;
+    static final int MAX_ACCOUNT_NUMBER = 255; // the terminal protocol sends it with a one-byte length
+    private static final String PIN_HASH_PREFIX = "sha256:";
+    private static final ThreadLocal<java.security.MessageDigest> PIN_DIGEST = ThreadLocal.withInitial(() -> {
+        try {
+            return java.security.MessageDigest.getInstance("SHA-256");
+        } catch (java.security.NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    });
+
+    static {
+        try {
+            var lookup = MethodHandles.lookup();
+            BALANCE = lookup.findVarHandle(Account.class, "balance", long.class);
+            CHANGES = lookup.findVarHandle(Account.class, "changes", long.class);
+            JOURNALED_THROUGH = lookup.findVarHandle(Account.class, "journaledThrough", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final String accountNumber;
+    private volatile String pinHash; // see hashPin
+    private final String accountHolder;
+    private volatile long balance; // in paise
+    private final TransactionLog transactionHistory;
+    private volatile LedgerJournal journal; // null while the account only lives in memory
+    private volatile boolean ledgerOwned;   // only a PartitionedBank's ledger thread may change it
+    private long openingId; // id of the initial deposit, journaled with the account
+    private long openedAt;  // when the account was opened, journaled with it (0 if restored from a snapshot)
+
+    // Only maintained while journaled, so snapshots can read a consistent state:
+    // low 32 bits count changes in flight, high 32 bits count finished changes
+    private volatile long changes;
+    private volatile long journaledThrough; // sequence of the newest journal record applied here
+
+    /**
+     * Constructs a new Account with the given details. Its history goes
+     * into the store shared by accounts that aren't in a bank yet, and
+     * moves to the bank's store when the account is added to one.
+     */
+    public Account(String accountNumber, String pin, String accountHolder, long initialBalance) {
+        this(accountNumber, pin, accountHolder, initialBalance, TransactionStore.shared());
+    }
+
+    /**
+     * Constructs an Account whose history is kept in the given store.
+     */
+    Account(String accountNumber, String pin, String accountHolder, long initialBalance, TransactionStore store) {
+        checkAccountNumber(accountNumber);
+        this.accountNumber = accountNumber;
+        this.pinHash = hashPin(accountNumber, pin);
+        this.accountHolder = accountHolder;
+        this.balance = initialBalance;
+        this.transactionHistory = new TransactionLog(accountNumber, store);
+        this.openedAt = System.currentTimeMillis();
+
+        // Record the initial deposit as a transaction
+        if (initialBalance > 0) {
+            openingId = TransactionIds.PROCESS.next();
+            recordInitialDeposit(openingId, initialBalance, new Date(openedAt));
+        }
+    }
+
+    /**
+     * Restores an account from a snapshot; its history is already in the store.
+     */
+    Account(AccountState state, TransactionStore store) {
+        this.accountNumber = state.accountNumber();
+        this.pinHash = storedPin(accountNumber, state.pin());
+        this.accountHolder = state.accountHolder();
+        this.balance = state.balance();
+        this.journaledThrough = state.journaledThrough();
+        this.transactionHistory = new TransactionLog(accountNumber, store, state.historyHead(), state.historyCount());
+        TransactionIds.PROCESS.advancePast(transactionHistory.lastId());
+    }
+
+    /**
+     * Checks that an account number can be used at a terminal: ASCII, and
+     * short enough for the protocol's one-byte length field.
+     */
+    private static void checkAccountNumber(String accountNumber) {
+        if (accountNumber.length() > MAX_ACCOUNT_NUMBER) {
+            throw new IllegalArgumentException("Account number longer than " + MAX_ACCOUNT_NUMBER + " characters");
+        }
+        for (int i = 0; i < accountNumber.length(); i++) {
+            if (accountNumber.charAt(i) > 0x7F) {
+                throw new IllegalArgumentException("Account number must be ASCII");
+            }
+        }
+    }
+
+    /**
+     * Authenticates the user using a PIN.
+     */
+    public boolean authenticate(String inputPin) {
+        return inputPin != null && java.security.MessageDigest.isEqual(
+                pinHash.getBytes(StandardCharsets.US_ASCII),
+                hashPin(accountNumber, inputPin).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Hashes a PIN with the account number as salt. This keeps PINs out of
+     * the journal and snapshot files in clear; it is no substitute for
+     * protecting those files, since a short PIN is quick to guess.
+     */
+    static String hashPin(String accountNumber, String pin) {
+        var digest = PIN_DIGEST.get();
+        digest.update(accountNumber.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        return PIN_HASH_PREFIX + java.util.HexFormat.of().formatHex(digest.digest(pin.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Turns a PIN read back from a journal or snapshot into its hash.
+     * Files written before PINs were hashed hold them in clear.
+     */
+    static String storedPin(String accountNumber, String stored) {
+        return stored.startsWith(PIN_HASH_PREFIX) ? stored : hashPin(accountNumber, stored);
+    }
+
+    // Getters
+    public long getBalance() { return balance; }
+    public String getAccountNumber() { return accountNumber; }
+    public String getAccountHolder() { return accountHolder; }
+    String getPinHash() { return pinHash; }
+    LedgerJournal getJournal() { return journal; }
+    long getOpeningId() { return openingId; }
+    long getOpenedAt() { return openedAt; }
+    long getJournaledThrough() { return journaledThrough; }
+
+    /**
+     * Registers the account's transactions with the bank's transaction index.
+     */
+    void attachIndex(TransactionIndex index) {
+        transactionHistory.attachIndex(index);
+    }
+
+    /**
+     * Moves the history into the given store; later transactions are appended there too.
+     */
+    void moveHistoryTo(TransactionStore store) {
+        transactionHistory.moveTo(store);
+    }
+
+    /**
+     * Hands the account to a partition's ledger thread. From then on the
+     * public deposit, withdraw and transfer methods refuse to touch it;
+     * changes have to go through the PartitionedBank.
+     */
+    void assignToLedger() {
+        ledgerOwned = true;
+    }
+
+    private void checkNotLedgerOwned() {
+        if (ledgerOwned) {
+            throw new IllegalStateException("Account " + accountNumber + " is owned by a ledger partition");
+        }
+    }
+
+    /**
+     * Starts recording every change to this account in the given journal.
+     */
+    void attachJournal(LedgerJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Gets the transaction history for this account.
+     */
+    public java.util.List<Transaction> getTransactionHistory() {
+        return transactionHistory.snapshot(); // Return a copy to maintain encapsulation
+    }
+
+    /**
+     * Streams the whole history as TransactionDetails, oldest first, for
+     * exports and audits. Each record keeps the transaction's own time.
+     */
+    public java.util.stream.Stream<TransactionDetails> getTransactionDetails() {
+        return transactionHistory.details();
+    }
+
+    /**
+     * Gets the newest page of the transaction history.
+     */
+    public HistoryPage getHistoryPage(int pageSize) {
+        return transactionHistory.page(HistoryPage.FIRST, pageSize);
+    }
+
+    /**
+     * Gets the page of the transaction history that follows an earlier page.
+     */
+    public HistoryPage getHistoryPage(long token, int pageSize) {
+        return transactionHistory.page(token, pageSize);
+    }
+
+    /**
+     * Gets the transactions from {@code from} (inclusive) up to {@code to}
+     * (exclusive), oldest first.
+     */
+    public java.util.List<Transaction> getTransactionsBetween(Date from, Date to) {
+        return transactionHistory.between(from.getTime(), to.getTime());
+    }
+
+    /**
+     * Gets the ATM mini-statement: the last few transactions, oldest first.
+     */
+    public java.util.List<Transaction> getMiniStatement() {
+        return transactionHistory.latest(MINI_STATEMENT_SIZE);
+    }
+
+    /**
+     * Gets the most recent transactions, oldest first.
+     */
+    public java.util.List<Transaction> getRecentTransactions(int count) {
+        return transactionHistory.latest(count);
+    }
+
+    /**
+     * Gets the number of transactions recorded for this account.
+     */
+    public int getTransactionCount() {
+        return transactionHistory.size();
+    }
+
+    /**
+     * Gets the transaction history filtered by type.
+     * Using Java 8+ Stream API for filtering
+     */
+    public java.util.List<Transaction> getTransactionHistoryByType(TransactionType type) {
+        return transactionHistory.snapshot().stream()
+                .filter(t -> t.getType() == type)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Gets the total transaction amount for a specific type.
+     */
+    public long getTotalForTransactionType(TransactionType type) {
+        return transactionHistory.total(type);
+    }
+
+    /**
+     * Gets the number of transactions of a specific type.
+     */
+    public int getTransactionCountForType(TransactionType type) {
+        return transactionHistory.count(type);
+    }
+
+    /**
+     * Gets the total amount of a specific type on one day, e.g. for a
+     * daily withdrawal limit.
+     */
+    public long getDailyTotal(TransactionType type, LocalDate day) {
+        return transactionHistory.dailyTotal(type, day);
+    }
+
+    /**
+     * Deposits money into the account.
+     * Returns once the deposit is safely in the journal (if there is one).
+     */
+    public boolean deposit(long amount) {
+        checkNotLedgerOwned();
+        awaitDurable(depositAt(amount, new Date()));
+        return true;
+    }
+
+    /**
+     * Deposits money stamped with the given time. Batch callers pass one
+     * timestamp for a whole run of commands instead of reading the clock per row.
+     *
+     * Returns the journal sequence to wait on before acknowledging the
+     * deposit, or 0 if the account isn't journaled.
+     */
+    long depositAt(long amount, Date timestamp) {
+        if (amount <= 0) {
+            throw new IllegalArgumentException("Deposit amount must be positive");
+        }
+
+        boolean tracked = beginChange();
+        long sequence = 0;
+        try {
+            long id = TransactionIds.PROCESS.next();
+            sequence = journal(LedgerJournal.DEPOSIT, id, timestamp, amount, null);
+            credit(amount);
+            recordDeposit(id, amount, timestamp);
+        } finally {
+            endChange(tracked, sequence);
+        }
+        return sequence;
+    }
+
+    /**
+     * Withdraws money from the account.
+     */
+    public boolean withdraw(long amount) throws InsufficientFundsException {
+        checkNotLedgerOwned();
+        awaitDurable(withdrawAt(amount, new Date()));
+        return true;
+    }
+
+    /**
+     * Withdraws money stamped with the given time.
+     * Returns the journal sequence of the withdrawal (0 if not journaled).
+     */
+    long withdrawAt(long amount, Date timestamp) throws InsufficientFundsException {
+        if (amount <= 0) {
+            throw new IllegalArgumentException("Withdrawal amount must be positive");
+        }
+        DebitResult result = tryWithdrawAt(amount, timestamp, new DebitResult());
+        if (!result.isApproved()) {
+            throw result.toException("Insufficient funds for withdrawal");
+        }
+        return result.getJournalSequence();
+    }
+
+    /**
+     * Withdraws money without throwing if the balance doesn't cover it;
+     * the outcome is written into {@code result}, which is returned.
+     */
+    public DebitResult tryWithdraw(long amount, DebitResult result) {
+        checkNotLedgerOwned();
+        awaitDurable(tryWithdrawAt(amount, new Date(), result).getJournalSequence());
+        return result;
+    }
+
+    /**
+     * Withdraws money stamped with the given time, without throwing.
+     */
+    DebitResult tryWithdrawAt(long amount, Date timestamp, DebitResult result) {
+        if (amount <= 0) {
+            return result.decline(LedgerStatus.INVALID_AMOUNT, amount, balance);
+        }
+
+        boolean tracked = beginChange();
+        long sequence = 0;
+        try {
+            if (!debit(amount, result)) {
+                return result;
+            }
+            long id = TransactionIds.PROCESS.next();
+            sequence = journalDebit(LedgerJournal.WITHDRAWAL, id, timestamp, amount, null);
+            recordWithdrawal(id, amount, timestamp);
+            result.setJournalSequence(sequence);
+        } finally {
+            endChange(tracked, sequence);
+        }
+        return result;
+    }
+
+    /**
+     * Transfers money to another account.
+     *
+     * Both legs run while holding the transfer lock stripes of the two
+     * accounts, always taken in stripe order, so opposite transfers
+     * (A to B and B to A) can't deadlock and can't interleave their legs.
+     * Transfers between unrelated accounts usually land on different
+     * stripes and run in parallel. The wait for the journal happens after
+     * the stripes are released, so a slow disk doesn't hold other transfers up.
+     */
+    public boolean transfer(Account destinationAccount, long amount) throws InsufficientFundsException {
+        checkNotLedgerOwned();
+        destinationAccount.checkNotLedgerOwned();
+        awaitDurable(transferAt(destinationAccount, amount, new Date()));
+        return true;
+    }
+
+    /**
+     * Transfers money stamped with the given time.
+     * Returns the journal sequence of the transfer (0 if not journaled).
+     */
+    long transferAt(Account destinationAccount, long amount, Date timestamp) throws InsufficientFundsException {
+        if (amount <= 0) {
+            throw new IllegalArgumentException("Transfer amount must be positive");
+        }
+        return checked(tryTransferAt(destinationAccount, amount, timestamp, new DebitResult()));
+    }
+
+    /**
+     * Transfers money without throwing if the balance doesn't cover it;
+     * the outcome is written into {@code result}, which is returned.
+     * Locking works as for {@link #transfer}.
+     */
+    public DebitResult tryTransfer(Account destinationAccount, long amount, DebitResult result) {
+        checkNotLedgerOwned();
+        destinationAccount.checkNotLedgerOwned();
+        awaitDurable(tryTransferAt(destinationAccount, amount, new Date(), result).getJournalSequence());
+        return result;
+    }
+
+    /**
+     * Transfers money stamped with the given time, without throwing.
+     */
+    DebitResult tryTransferAt(Account destinationAccount, long amount, Date timestamp, DebitResult result) {
+        if (amount <= 0) {
+            return result.decline(LedgerStatus.INVALID_AMOUNT, amount, balance);
+        }
+
+        TRANSFER_LOCKS.lockPair(this.accountNumber, destinationAccount.accountNumber);
+        try {
+            return tryTransferHoldingLocks(destinationAccount, amount, timestamp, result);
+        } finally {
+            TRANSFER_LOCKS.unlockPair(this.accountNumber, destinationAccount.accountNumber);
+        }
+    }
+
+    /**
+     * Both legs of a transfer, for callers that already hold the transfer
+     * lock stripes of the two accounts. One journal record covers both legs.
+     */
+    long transferHoldingLocks(Account destinationAccount, long amount, Date timestamp)
+            throws InsufficientFundsException {
+        if (amount <= 0) {
+            throw new IllegalArgumentException("Transfer amount must be positive");
+        }
+        return checked(tryTransferHoldingLocks(destinationAccount, amount, timestamp, new DebitResult()));
+    }
+
+    /**
+     * Both legs of a transfer for callers holding the lock stripes, without throwing.
+     */
+    DebitResult tryTransferHoldingLocks(Account destinationAccount, long amount, Date timestamp,
+                                        DebitResult result) {
+        if (amount <= 0) {
+            return result.decline(LedgerStatus.INVALID_AMOUNT, amount, balance);
+        }
+
+        boolean tracked = beginChange();
+        boolean destinationTracked = destinationAccount.beginChange();
+        long sequence = 0;
+        try {
+            if (!debit(amount, result)) {
+                return result;
+            }
+            long id = TransactionIds.PROCESS.next(2); // the incoming leg is id + 1
+            sequence = journalDebit(LedgerJournal.TRANSFER, id, timestamp, amount, destinationAccount.accountNumber);
+            destinationAccount.credit(amount);
+            recordTransferOut(id, destinationAccount.accountNumber, amount, timestamp);
+            destinationAccount.recordTransferIn(id + 1, this.accountNumber, amount, timestamp);
+            result.setJournalSequence(sequence);
+        } finally {
+            destinationAccount.endChange(destinationTracked, sequence);
+            endChange(tracked, sequence);
+        }
+        return result;
+    }
+
+    /**
+     * Source leg of a transfer: takes the money out and records the transfer
+     * in this account's history. Used on its own when the two accounts are
+     * owned by different partitions.
+     */
+    long debitForTransfer(String destinationAccountNumber, long amount) throws InsufficientFundsException {
+        if (amount <= 0) {
+            throw new IllegalArgumentException("Transfer amount must be positive");
+        }
+        return checked(tryDebitForTransfer(destinationAccountNumber, amount, new DebitResult()));
+    }
+
+    /**
+     * Source leg of a transfer, without throwing.
+     */
+    DebitResult tryDebitForTransfer(String destinationAccountNumber, long amount, DebitResult result) {
+        if (amount <= 0) {
+            return result.decline(LedgerStatus.INVALID_AMOUNT, amount, balance);
+        }
+
+        var timestamp = new Date();
+        boolean tracked = beginChange();
+        long sequence = 0;
+        try {
+            if (!debit(amount, result)) {
+                return result;
+            }
+            long id = TransactionIds.PROCESS.next();
+            sequence = journalDebit(LedgerJournal.TRANSFER_OUT, id, timestamp, amount, destinationAccountNumber);
+            recordTransferOut(id, destinationAccountNumber, amount, timestamp);
+            result.setJournalSequence(sequence);
+        } finally {
+            endChange(tracked, sequence);
+        }
+        return result;
+    }
+
+    // The throwing transfer methods are wrappers around the try- ones
+    private static long checked(DebitResult result) throws InsufficientFundsException {
+        if (!result.isApproved()) {
+            throw result.toException("Insufficient funds for transfer");
+        }
+        return result.getJournalSequence();
+    }
+
+    /**
+     * Destination leg of a transfer: adds the money and records where it came from.
+     */
+    long creditFromTransfer(String sourceAccountNumber, long amount) {
+        var timestamp = new Date();
+        boolean tracked = beginChange();
+        long sequence = 0;
+        try {
+            long id = TransactionIds.PROCESS.next();
+            sequence = journal(LedgerJournal.TRANSFER_IN, id, timestamp, amount, sourceAccountNumber);
+            credit(amount);
+            recordTransferIn(id, sourceAccountNumber, amount, timestamp);
+        } finally {
+            endChange(tracked, sequence);
+        }
+        return sequence;
+    }
+
+    /**
+     * Puts back the money of a transfer whose destination leg failed.
+     */
+    long reverseTransfer(String destinationAccountNumber, long amount) {
+        var timestamp = new Date();
+        boolean tracked = beginChange();
+        long sequence = 0;
+        try {
+            long id = TransactionIds.PROCESS.next();
+            sequence = journal(LedgerJournal.REVERSAL, id, timestamp, amount, destinationAccountNumber);
+            credit(amount);
+            recordReversal(id, destinationAccountNumber, amount, timestamp);
+        } finally {
+            endChange(tracked, sequence);
+        }
+        return sequence;
+    }
+
+    /**
+     * Re-applies a change read back from the journal at startup.
+     * No funds checks here: the journal only holds changes that were
+     * already approved, so replaying them must not be able to fail.
+     * Records journaled before transactions had ids (id 0) get a new one,
+     * except an empty opening, which has no transaction.
+     */
+    void replay(long sequence, byte kind, long id, long timestamp, long amount, String counterparty) {
+        journaledThrough = sequence;
+        boolean openedEmpty = kind == LedgerJournal.OPEN && amount <= 0;
+        if (id != 0) {
+            TransactionIds.PROCESS.advancePast(id);
+        } else if (kind != LedgerJournal.PIN_CHANGE && !openedEmpty) {
+            id = TransactionIds.PROCESS.next();
+        }
+        var date = new Date(timestamp);
+        switch (kind) {
+            case LedgerJournal.OPEN -> {
+                openedAt = timestamp;
+                // Same as a live opening: a zero balance records no deposit
+                if (!openedEmpty) {
+                    credit(amount);
+                    openingId = id;
+                    recordInitialDeposit(id, amount, date);
+                }
+            }
+            case LedgerJournal.DEPOSIT -> {
+                credit(amount);
+                recordDeposit(id, amount, date);
+            }
+            case LedgerJournal.WITHDRAWAL -> {
+                credit(-amount);
+                recordWithdrawal(id, amount, date);
+            }
+            case LedgerJournal.TRANSFER, LedgerJournal.TRANSFER_OUT -> {
+                credit(-amount);
+                recordTransferOut(id, counterparty, amount, date);
+            }
+            case LedgerJournal.TRANSFER_IN -> {
+                credit(amount);
+                recordTransferIn(id, counterparty, amount, date);
+            }
+            case LedgerJournal.REVERSAL -> {
+                credit(amount);
+                recordReversal(id, counterparty, amount, date);
+            }
+            case LedgerJournal.PIN_CHANGE -> this.pinHash = storedPin(accountNumber, counterparty);
+            default -> throw new IllegalArgumentException("Unknown journal record kind " + kind);
+        }
+    }
+
+    /**
+     * Reads balance, PIN, history position and journal sequence as one
+     * consistent state, for a snapshot taken while writers keep running.
+     * Retries until it catches the account between changes.
+     */
+    AccountState captureState() {
+        for (int spins = 0; ; spins++) {
+            long before = changes;
+            if ((int) before == 0) {
+                var state = new AccountState(accountNumber, accountHolder, pinHash, balance, journaledThrough,
+                        transactionHistory.head(), transactionHistory.size());
+                if (changes == before) {
+                    return state;
+                }
+            }
+            if (spins < 100) {
+                Thread.onSpinWait();
+            } else {
+                Thread.yield();
+            }
+        }
+    }
+
+    private boolean beginChange() {
+        if (journal == null) {
+            return false;
+        }
+        CHANGES.getAndAdd(this, 1L);
+        return true;
+    }
+
+    private void endChange(boolean tracked, long sequence) {
+        if (!tracked) {
+            return;
+        }
+        long seen;
+        while (sequence > (seen = journaledThrough) && !JOURNALED_THROUGH.compareAndSet(this, seen, sequence)) {
+            Thread.onSpinWait();
+        }
+        CHANGES.getAndAdd(this, CHANGE_FINISHED);
+    }
+
+    /**
+     * Waits until the journal record with the given sequence is on disk.
+     */
+    void awaitDurable(long sequence) {
+        LedgerJournal current = journal;
+        if (current != null && sequence > 0) {
+            current.awaitDurable(sequence);
+        }
+    }
+
+    private long journal(byte kind, long id, Date timestamp, long amount, String counterparty) {
+        LedgerJournal current = journal;
+        return current == null
+                ? 0
+                : current.append(kind, id, timestamp.getTime(), amount, accountNumber, counterparty, null);
+    }
+
+    /**
+     * Journals a debit whose amount has already been taken off the balance,
+     * putting it back if the journal refuses the record.
+     */
+    private long journalDebit(byte kind, long id, Date timestamp, long amount, String counterparty) {
+        try {
+            return journal(kind, id, timestamp, amount, counterparty);
+        } catch (RuntimeException e) {
+            credit(amount);
+            throw e;
+        }
+    }
+
+    private void recordInitialDeposit(long id, long amount, Date timestamp) {
+        transactionHistory.append(TransactionType.DEPOSIT, TransactionStore.INITIAL_DEPOSIT, amount,
+                timestamp.getTime(), null, id);
+    }
+
+    private void recordDeposit(long id, long amount, Date timestamp) {
+        transactionHistory.append(TransactionType.DEPOSIT, TransactionStore.DEPOSIT, amount,
+                timestamp.getTime(), null, id);
+    }
+
+    private void recordWithdrawal(long id, long amount, Date timestamp) {
+        transactionHistory.append(TransactionType.WITHDRAWAL, TransactionStore.WITHDRAWAL, amount,
+                timestamp.getTime(), null, id);
+    }
+
+    private void recordTransferOut(long id, String destinationAccountNumber, long amount, Date timestamp) {
+        // Record the transaction in the source account
+        transactionHistory.append(TransactionType.TRANSFER, TransactionStore.TRANSFER_OUT, amount,
+                timestamp.getTime(), destinationAccountNumber, id);
+    }
+
+    private void recordTransferIn(long id, String sourceAccountNumber, long amount, Date timestamp) {
+        // Record the transaction in the destination account
+        transactionHistory.append(TransactionType.TRANSFER, TransactionStore.TRANSFER_IN, amount,
+                timestamp.getTime(), sourceAccountNumber, id);
+    }
+
+    private void recordReversal(long id, String destinationAccountNumber, long amount, Date timestamp) {
+        transactionHistory.append(TransactionType.DEPOSIT, TransactionStore.REVERSAL, amount,
+                timestamp.getTime(), destinationAccountNumber, id);
+    }
+
+    /**
+     * Adds the amount to the balance with a CAS retry loop.
+     */
+    private void credit(long amount) {
+        long current;
+        do {
+            current = balance;
+        } while (!BALANCE.compareAndSet(this, current, Math.addExact(current, amount)));
+    }
+
+    /**
+     * Takes the amount off the balance, but only if it is covered, and
+     * says which way it went in the result.
+     * The funds check is redone on every retry, so two threads racing for
+     * the last rupees can't both succeed.
+     */
+    private boolean debit(long amount, DebitResult result) {
+        long current;
+        do {
+            current = balance;
+            if (amount > current) {
+                result.decline(LedgerStatus.INSUFFICIENT_FUNDS, amount, current);
+                return false;
+            }
+        } while (!BALANCE.compareAndSet(this, current, current - amount));
+        result.approve(amount, current);
+        return true;
+    }
+
+    /**
+     * Changes the account PIN.
+     */
+    public boolean changePin(String oldPin, String newPin) {
+        long sequence = changePinAt(oldPin, newPin);
+        if (sequence < 0) {
+            return false;
+        }
+        awaitDurable(sequence);
+        return true;
+    }
+
+    /**
+     * Changes the account PIN without waiting for the journal. Returns the
+     * journal sequence of the change (0 when not journaled), or -1 if the
+     * old PIN is wrong.
+     */
+    long changePinAt(String oldPin, String newPin) {
+        long sequence = 0;
+        synchronized (this) {
+            if (!authenticate(oldPin)) {
+                return -1;
+            }
+
+            boolean tracked = beginChange();
+            try {
+                String newHash = hashPin(accountNumber, newPin);
+                LedgerJournal current = journal;
+                if (current != null) {
+                    sequence = current.append(LedgerJournal.PIN_CHANGE, 0, System.currentTimeMillis(), 0,
+                            accountNumber, newHash, null);
+                }
+                this.pinHash = newHash;
+            } finally {
+                endChange(tracked, sequence);
+            }
+        }
+        return sequence;
+    }
+
+    @Override
+    public String toString() {
+        return "Account [accountNumber=" + accountNumber + ", accountHolder=" + accountHolder
+                + ", balance=" + balance + "]";
+    }
+}
+
+/**
+ * Everything a snapshot keeps about one account. The history itself stays
+ * in the bank's transaction store; only its newest record and count are kept.
+ */
+record AccountState(
+        String accountNumber,
+        String accountHolder,
+        String pin,             // hashed; see Account.hashPin
+        long balance,           // in paise
+        long journaledThrough,  // newest journal record already reflected here
+        long historyHead,
+        int historyCount
+) {
+}
+
+/**
+ * A fixed set of locks shared by all accounts, picked by account number.
+ *
+ * Holding one lock per stripe instead of one per account keeps memory flat
+ * when there are millions of accounts. Whenever two accounts have to be
+ * locked together the lower stripe is always taken first, which gives every
+ * thread the same lock order and rules out deadlock.
+ */
+final class AccountLockStripes {
+    private final ReentrantLock[] locks;
+    private final int mask;
+
+    /**
+     * Creates the stripes; the count is rounded up to a power of two.
+     */
+    AccountLockStripes(int stripes) {
+        int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+        this.locks = new ReentrantLock[size];
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Gets the stripe index for an account number.
+     */
+    int stripeOf(String accountNumber) {
+        int h = accountNumber.hashCode();
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    /**
+     * Gets the lock guarding the given account number.
+     */
+    ReentrantLock lockFor(String accountNumber) {
+        return locks[stripeOf(accountNumber)];
+    }
+
+    /**
+     * Gets the number of stripes.
+     */
+    int size() {
+        return locks.length;
+    }
+
+    /**
+     * Locks the stripes of both accounts in ascending stripe order.
+     */
+    void lockPair(String first, String second) {
+        lockStripes(stripeOf(first), stripeOf(second));
+    }
+
+    /**
+     * Releases the stripes taken by {@link #lockPair}.
+     */
+    void unlockPair(String first, String second) {
+        unlockStripes(stripeOf(first), stripeOf(second));
+    }
+
+    /**
+     * Locks two stripes by index in ascending order (once if they're the same).
+     */
+    void lockStripes(int a, int b) {
+        locks[Math.min(a, b)].lock();
+        if (a != b) {
+            locks[Math.max(a, b)].lock();
+        }
+    }
+
+    /**
+     * Releases the stripes taken by {@link #lockStripes}.
+     */
+    void unlockStripes(int a, int b) {
+        if (a != b) {
+            locks[Math.max(a, b)].unlock();
+        }
+        locks[Math.min(a, b)].unlock();
+    }
+}
+
+/**
+ * Concurrent registry of accounts, split into shards by account number.
+ *
+ * Each shard is its own ConcurrentHashMap, so lookups never take a lock and
+ * inserts are an atomic putIfAbsent. Splitting the table keeps resizes small
+ * and local to one shard when millions of accounts are being loaded from
+ * several threads at once.
+ */
+final class AccountRegistry {
+    private final ConcurrentHashMap<String, Account>[] shards;
+    private final int shardShift;
+
+    /**
+     * Creates a registry with a few shards per available core.
+     */
+    AccountRegistry() {
+        this(Runtime.getRuntime().availableProcessors() * 4);
+    }
+
+    /**
+     * Creates a registry with the given number of shards, rounded up to a power of two.
+     */
+    AccountRegistry(int shardCount) {
+        int size = Integer.highestOneBit(Math.max(1, shardCount - 1)) << 1;
+        this.shards = newShards(size);
+        this.shardShift = 32 - Integer.numberOfTrailingZeros(size);
+        for (int i = 0; i < size; i++) {
+            shards[i] = new ConcurrentHashMap<>();
+        }
+    }
+
+    @SuppressWarnings("unchecked") // arrays can't be created with a type argument
+    private static ConcurrentHashMap<String, Account>[] newShards(int size) {
+        return (ConcurrentHashMap<String, Account>[]) new ConcurrentHashMap<?, ?>[size];
+    }
+
+    /**
+     * Picks the shard for an account number. Uses the top bits of a mixed
+     * hash so the shard choice doesn't line up with the low bits each
+     * ConcurrentHashMap uses for its own buckets.
+     */
+    private ConcurrentHashMap<String, Account> shardFor(String accountNumber) {
+        if (shards.length == 1) {
+            return shards[0];
+        }
+        int h = accountNumber.hashCode() * 0x9E3779B9;
+        return shards[h >>> shardShift];
+    }
+
+    /**
+     * Looks up an account without locking. Returns null if it doesn't exist.
+     */
+    Account get(String accountNumber) {
+        return shardFor(accountNumber).get(accountNumber);
+    }
+
+    /**
+     * Adds the account unless one with the same number is already registered.
+     */
+    boolean putIfAbsent(Account account) {
+        return shardFor(account.getAccountNumber()).putIfAbsent(account.getAccountNumber(), account) == null;
+    }
+
+    /**
+     * Gets the number of registered accounts.
+     */
+    int size() {
+        int total = 0;
+        for (var shard : shards) {
+            total += shard.size();
+        }
+        return total;
+    }
+
+    /**
+     * Streams every account across all shards (weakly consistent, like the maps themselves).
+     */
+    java.util.stream.Stream<Account> stream() {
+        return java.util.Arrays.stream(shards).flatMap(shard -> shard.values().stream());
+    }
+}
+
+/**
+ * One row of a bulk command file (salary credits, settlement and so on).
+ *
+ * DEPOSIT and WITHDRAWAL use only the source account; TRANSFER moves the
+ * amount from the source to the destination account.
+ */
+record BankCommand(
+        TransactionType type,
+        String sourceAccountNumber,
+        String destinationAccountNumber,
+        long amount             // Amount in paise
+) {
+    static BankCommand deposit(String accountNumber, long amount) {
+        return new BankCommand(TransactionType.DEPOSIT, accountNumber, accountNumber, amount);
+    }
+
+    static BankCommand withdrawal(String accountNumber, long amount) {
+        return new BankCommand(TransactionType.WITHDRAWAL, accountNumber, accountNumber, amount);
+    }
+
+    static BankCommand transfer(String sourceAccountNumber, String destinationAccountNumber, long amount) {
+        return new BankCommand(TransactionType.TRANSFER, sourceAccountNumber, destinationAccountNumber, amount);
+    }
+}
+
+/**
+ * Append-only write-ahead journal of account changes.
+ *
+ * Every deposit, withdrawal, transfer and PIN change is appended here
+ * before it is acknowledged, and the bank replays the file on startup.
+ * Appends only copy the record into an in-memory buffer. Callers then wait
+ * for their sequence to become durable with group commit: whichever waiter
+ * finds no flush running becomes the leader and writes and fsyncs
+ * everything appended so far in one go, while the others keep appending to
+ * a second buffer and piggyback on the next flush. One fsync therefore
+ * covers as many transactions as arrived while the previous one was running.
+ *
+ * Record layout: int body length, int CRC32C of the body, then the body
+ * (byte kind, the long transaction id if the kind has the HAS_ID bit set,
+ * long timestamp, long amount in paise and three strings, each a short
+ * char count, -1 for null, followed by the chars). Records written before
+ * transactions had ids have no id and replay with id 0. A torn or
+ * corrupt record at the end of the file is cut off on replay. Records are
+ * numbered from 1 at the start of the file, so a sequence number names the
+ * same record across restarts.
+ */
+final class LedgerJournal implements AutoCloseable {
+    static final byte OPEN = 1;          // account, holder, pin; amount = opening balance
+    static final byte DEPOSIT = 2;
+    static final byte WITHDRAWAL = 3;
+    static final byte TRANSFER = 4;      // account = source, text = destination; both legs
+    static final byte TRANSFER_OUT = 5;  // source leg of a cross-partition transfer
+    static final byte TRANSFER_IN = 6;
+    static final byte REVERSAL = 7;
+    static final byte PIN_CHANGE = 8;    // text = new PIN
+    private static final byte HAS_ID = 0x40;
+
+    private static final int HEADER_BYTES = 8;
+    private static final int FIXED_BODY_BYTES = 1 + 8 + 8;
+    private static final int BUFFER_BYTES = 1 << 20;
+
+    /**
+     * Receives the records of the journal in the order they were appended.
+     */
+    @FunctionalInterface
+    interface Visitor {
+        void record(long sequence, byte kind, long id, long timestamp, long amount, String account, String text,
+                    String extra);
+    }
+
+    /**
+     * A point in the journal: the sequence of the last record before it and its file offset.
+     */
+    record Position(long sequence, long offset) {
+    }
+
+    private final FileChannel channel;
+    private final FileLock fileLock;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition flushed = lock.newCondition();
+    private final java.util.zip.CRC32C crc = new java.util.zip.CRC32C();
+
+    // Guarded by lock
+    private ByteBuffer pending = ByteBuffer.allocateDirect(BUFFER_BYTES);
+    private ByteBuffer spare = ByteBuffer.allocateDirect(BUFFER_BYTES);
+    private long appendedSequence;
+    private long appendedBytes; // file offset just past the last appended record
+    private boolean flushing;
+    private IOException failure;
+    private long flushCount;
+    private long flushedRecords;
+
+    private volatile long durableSequence;
+
+    /**
+     * Opens (or creates) the journal file. Only one process can have a
+     * journal open at a time.
+     */
+    LedgerJournal(Path file) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        FileLock acquired;
+        try {
+            acquired = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            acquired = null; // already open elsewhere in this JVM
+        }
+        this.fileLock = acquired;
+        if (fileLock == null) {
+            channel.close();
+            throw new IOException("Journal " + file + " is in use by another process");
+        }
+        channel.position(channel.size());
+        appendedBytes = channel.size();
+    }
+
+    /**
+     * Checks whether the journal has no records yet.
+     */
+    boolean isEmpty() throws IOException {
+        return channel.size() == 0;
+    }
+
+    /**
+     * Reads every complete record after the given position (use
+     * {@code new Position(0, 0)} for the whole file). Anything after the
+     * last good record (a write torn by a crash) is truncated away so new
+     * appends continue from a clean end. Returns the number of records read.
+     */
+    long replay(Position from, Visitor visitor) throws IOException {
+        if (from.offset() > channel.size()) {
+            throw new IOException("Journal ends before offset " + from.offset());
+        }
+
+        var buffer = ByteBuffer.allocate(BUFFER_BYTES);
+        var check = new java.util.zip.CRC32C();
+        long offset = from.offset(); // file offset of buffer[0]
+        long validEnd = from.offset();
+        long records = 0;
+
+        channel.position(from.offset());
+        scan:
+        while (channel.read(buffer) > 0 || buffer.position() > 0) {
+            buffer.flip();
+            boolean progressed = false;
+            while (buffer.remaining() >= HEADER_BYTES) {
+                int start = buffer.position();
+                int length = buffer.getInt(start);
+                if (length < FIXED_BODY_BYTES + 6 || length > BUFFER_BYTES - HEADER_BYTES) {
+                    break scan;
+                }
+                if (buffer.remaining() < HEADER_BYTES + length) {
+                    break;
+                }
+
+                int end = start + HEADER_BYTES + length;
+                check.reset();
+                buffer.limit(end).position(start + HEADER_BYTES);
+                check.update(buffer);
+                buffer.limit(buffer.capacity());
+                if ((int) check.getValue() != buffer.getInt(start + 4)) {
+                    break scan;
+                }
+
+                buffer.position(start + HEADER_BYTES);
+                byte kind = buffer.get();
+                long id = 0;
+                if ((kind & HAS_ID) != 0) {
+                    kind &= ~HAS_ID;
+                    id = buffer.getLong();
+                }
+                long timestamp = buffer.getLong();
+                long amount = buffer.getLong();
+                String account = readText(buffer);
+                String text = readText(buffer);
+                String extra = readText(buffer);
+                if (buffer.position() != end) {
+                    break scan;
+                }
+                records++;
+                visitor.record(from.sequence() + records, kind, id, timestamp, amount, account, text, extra);
+
+                validEnd = offset + end;
+                progressed = true;
+            }
+
+            if (!progressed && buffer.position() == 0 && channel.position() >= channel.size()) {
+                break; // partial record at the end of the file
+            }
+            offset += buffer.position();
+            buffer.compact();
+        }
+
+        if (validEnd < channel.size()) {
+            channel.truncate(validEnd);
+            channel.force(true);
+        }
+        channel.position(validEnd);
+
+        lock.lock();
+        try {
+            appendedSequence = from.sequence() + records;
+            durableSequence = appendedSequence;
+            appendedBytes = validEnd;
+        } finally {
+            lock.unlock();
+        }
+        return records;
+    }
+
+    /**
+     * Adds a record to the journal and returns its sequence number. The
+     * record isn't durable until {@link #awaitDurable(long)} returns for it.
+     * An id of 0 (a PIN change) isn't written.
+     */
+    long append(byte kind, long id, long timestamp, long amount, String account, String text, String extra) {
+        int length = FIXED_BODY_BYTES + (id == 0 ? 0 : 8) + textBytes(account) + textBytes(text) + textBytes(extra);
+        if (length > BUFFER_BYTES - HEADER_BYTES) {
+            throw new IllegalArgumentException("Journal record too large");
+        }
+
+        lock.lock();
+        try {
+            // Buffer full: wait for the flush in progress or run one ourselves
+            while (pending.remaining() < HEADER_BYTES + length) {
+                checkFailure();
+                if (flushing) {
+                    flushed.awaitUninterruptibly();
+                } else {
+                    flush();
+                }
+            }
+            checkFailure();
+
+            ByteBuffer buffer = pending;
+            int start = buffer.position();
+            buffer.position(start + HEADER_BYTES);
+            if (id == 0) {
+                buffer.put(kind);
+            } else {
+                buffer.put((byte) (kind | HAS_ID)).putLong(id);
+            }
+            buffer.putLong(timestamp).putLong(amount);
+            writeText(buffer, account);
+            writeText(buffer, text);
+            writeText(buffer, extra);
+
+            // Checksum the body in place: no copies, no allocation
+            int end = buffer.position();
+            crc.reset();
+            buffer.limit(end).position(start + HEADER_BYTES);
+            crc.update(buffer);
+            buffer.limit(buffer.capacity());
+            buffer.putInt(start, length).putInt(start + 4, (int) crc.getValue());
+
+            appendedBytes += HEADER_BYTES + length;
+            return ++appendedSequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until the record with the given sequence is on disk.
+     */
+    void awaitDurable(long sequence) {
+        if (sequence <= durableSequence) {
+            return;
+        }
+
+        lock.lock();
+        try {
+            while (sequence > durableSequence) {
+                checkFailure();
+                if (flushing) {
+                    flushed.awaitUninterruptibly(); // ride along with the leader's flush
+                } else {
+                    flush();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Checks without waiting whether the record with the given sequence is on disk.
+     */
+    boolean isDurable(long sequence) {
+        return sequence <= durableSequence;
+    }
+
+    /**
+     * Gets the position just past the most recently appended record.
+     */
+    Position position() {
+        lock.lock();
+        try {
+            return new Position(appendedSequence, appendedBytes);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sequence of the most recently appended record.
+     */
+    long getAppendedSequence() {
+        lock.lock();
+        try {
+            return appendedSequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Number of fsyncs done so far.
+     */
+    long getFlushCount() {
+        lock.lock();
+        try {
+            return flushCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Number of records made durable so far.
+     */
+    long getFlushedRecords() {
+        lock.lock();
+        try {
+            return flushedRecords;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Flushes whatever is still buffered and closes the file.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            long last;
+            lock.lock();
+            try {
+                last = appendedSequence;
+            } finally {
+                lock.unlock();
+            }
+            awaitDurable(last);
+        } finally {
+            fileLock.release();
+            channel.close();
+        }
+    }
+
+    /**
+     * Writes and fsyncs the pending buffer. Called with the lock held; the
+     * lock is dropped during the actual I/O so other threads can keep
+     * appending into the spare buffer.
+     */
+    private void flush() {
+        ByteBuffer batch = pending;
+        pending = spare;
+        spare = batch;
+        long upTo = appendedSequence;
+        long records = upTo - durableSequence;
+        flushing = true;
+
+        IOException error = null;
+        lock.unlock();
+        try {
+            batch.flip();
+            while (batch.hasRemaining()) {
+                channel.write(batch);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            error = e;
+        } finally {
+            batch.clear();
+            lock.lock();
+        }
+
+        flushing = false;
+        if (error == null) {
+            durableSequence = upTo;
+            flushCount++;
+            flushedRecords += records;
+        } else {
+            failure = error;
+        }
+        flushed.signalAll();
+    }
+
+    private void checkFailure() {
+        if (failure != null) {
+            throw new UncheckedIOException("Journal write failed", failure);
+        }
+    }
+
+    private static int textBytes(String text) {
+        return 2 + (text == null ? 0 : 2 * text.length());
+    }
+
+    private static void writeText(ByteBuffer buffer, String text) {
+        if (text == null) {
+            buffer.putShort((short) -1);
+            return;
+        }
+        buffer.putShort((short) text.length());
+        for (int i = 0; i < text.length(); i++) {
+            buffer.putChar(text.charAt(i));
+        }
+    }
+
+    private static String readText(ByteBuffer buffer) {
+        int length = buffer.getShort();
+        if (length < 0) {
+            return null;
+        }
+        var chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = buffer.getChar();
+        }
+        return new String(chars);
+    }
+}
+
+/**
+ * A point-in-time copy of every account of a journaled bank.
+ *
+ * The file holds the journal position the snapshot starts from, one
+ * AccountState per account, the size of the transaction store and its
+ * counterparty dictionary, followed by a CRC32C of all of it. It is written to a temporary file and renamed over
+ * the previous snapshot, so there is always one complete snapshot on disk.
+ */
+record BankSnapshot(
+        LedgerJournal.Position journalPosition, // replay starts after this record
+        long historyBytes,                      // bytes in use in the transaction store
+        int historySegmentBytes,
+        java.util.List<AccountState> accounts,
+        java.util.List<String> counterparties   // the store's dictionary, in id order
+) {
+    private static final int MAGIC = 0x534E4150; // "SNAP"
+    private static final int VERSION = 4;
+
+    /**
+     * Writes the header, then one state per account as they are captured.
+     * Returns the number of accounts written.
+     */
+    static int write(Path file, LedgerJournal.Position journalPosition, TransactionStore history,
+                     java.util.Iterator<Account> accounts) throws IOException {
+        var checksum = new java.util.zip.CRC32C();
+        int count = 0;
+        try (var out = new java.io.DataOutputStream(new java.util.zip.CheckedOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(file), 1 << 16), checksum))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(journalPosition.sequence());
+            out.writeLong(journalPosition.offset());
+            out.writeInt(history.getSegmentBytes());
+
+            while (accounts.hasNext()) {
+                AccountState state = accounts.next().captureState();
+                out.writeBoolean(true);
+                out.writeUTF(state.accountNumber());
+                out.writeUTF(state.accountHolder());
+                out.writeUTF(state.pin());
+                out.writeLong(state.balance());
+                out.writeLong(state.journaledThrough());
+                out.writeLong(state.historyHead());
+                out.writeInt(state.historyCount());
+                count++;
+            }
+            out.writeBoolean(false);
+
+            // Read after every account, so it covers all the history they point at
+            out.writeLong(history.size());
+            var counterparties = history.getAccountNumbers();
+            out.writeInt(counterparties.size());
+            for (String accountNumber : counterparties) {
+                out.writeUTF(accountNumber);
+            }
+            out.writeInt(count);
+            out.writeInt((int) checksum.getValue());
+        }
+        return count;
+    }
+
+    /**
+     * Reads a snapshot, or returns null if there is none or it is damaged.
+     */
+    static BankSnapshot read(Path file) {
+        if (!Files.exists(file)) {
+            return null;
+        }
+
+        var checksum = new java.util.zip.CRC32C();
+        try (var in = new java.io.DataInputStream(new java.util.zip.CheckedInputStream(
+                new java.io.BufferedInputStream(Files.newInputStream(file), 1 << 16), checksum))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+            var position = new LedgerJournal.Position(in.readLong(), in.readLong());
+            int segmentBytes = in.readInt();
+
+            var accounts = new ArrayList<AccountState>();
+            while (in.readBoolean()) {
+                accounts.add(new AccountState(in.readUTF(), in.readUTF(), in.readUTF(),
+                        in.readLong(), in.readLong(), in.readLong(), in.readInt()));
+            }
+            long historyBytes = in.readLong();
+            var counterparties = new String[in.readInt()];
+            for (int i = 0; i < counterparties.length; i++) {
+                counterparties[i] = in.readUTF();
+            }
+            int count = in.readInt();
+            int expected = (int) checksum.getValue();
+            if (in.readInt() != expected || count != accounts.size()) {
+                return null;
+            }
+            return new BankSnapshot(position, historyBytes, segmentBytes, accounts, java.util.List.of(counterparties));
+        } catch (IOException e) {
+            return null; // torn or unreadable: fall back to replaying the whole journal
+        }
+    }
+}
+
+/**
+ * Represents a bank that manages accounts in the ATM system.
+ *
+ * A bank opened on a journal file survives restarts: every change is
+ * written to the journal before it is acknowledged, and the accounts are
+ * rebuilt from it on the next start. Its transaction history goes to
+ * memory-mapped segment files in a "history" directory next to the journal.
+ *
+ * Snapshots of all balances and PINs are taken while writers keep running.
+ * Startup loads the latest snapshot and only replays the journal records
+ * after it, so a restart doesn't have to read the whole journal.
+ */
+class Bank implements AutoCloseable {
+    static final Path DEFAULT_JOURNAL = Path.of("atm-data", "ledger.journal");
+
+    private final AccountRegistry accounts;
+    private final String name;
+    private final LedgerJournal journal; // null for an in-memory bank
+    private final TransactionStore history; // mapped when journaled, tiered heap segments otherwise
+    private final Path snapshotFile;
+
+    // Account openings hold the read side; a snapshot takes the write side
+    // just long enough to fix its journal position
+    private final java.util.concurrent.locks.ReentrantReadWriteLock openLock =
+            new java.util.concurrent.locks.ReentrantReadWriteLock();
+    private final ReentrantLock snapshotLock = new ReentrantLock();
+    private java.util.concurrent.ScheduledExecutorService snapshotScheduler;
+    private volatile TransactionIndex transactionIndex; // built on the first lookup by id
+
+    /**
+     * Constructs a new in-memory Bank with the given name.
+     */
+    public Bank(String name) {
+        this.name = name;
+        this.accounts = new AccountRegistry();
+        this.journal = null;
+        this.history = TransactionStore.tiered(TransactionStore.HEAP_SEGMENT_BYTES, TransactionStore.HEAP_HOT_SEGMENTS);
+        this.snapshotFile = null;
+
+        // For demonstration purposes, initialize the bank with some test accounts
+        initializeTestAccounts();
+    }
+
+    /**
+     * Constructs a Bank backed by the given journal file. An existing bank
+     * is restored from its latest snapshot plus the journal after it (or the
+     * whole journal if there is no usable snapshot); a new one starts out
+     * with the test accounts.
+     */
+    public Bank(String name, Path journalFile) throws IOException {
+        this(name, journalFile, TransactionStore.DEFAULT_SEGMENT_BYTES);
+    }
+
+    /**
+     * Constructs a journaled Bank whose history segments roll over at the given size.
+     */
+    public Bank(String name, Path journalFile, int historySegmentBytes) throws IOException {
+        this.name = name;
+        this.accounts = new AccountRegistry();
+        this.journal = new LedgerJournal(journalFile);
+        this.snapshotFile = journalFile.resolveSibling("snapshot.dat");
+        Path historyDirectory = journalFile.resolveSibling("history");
+
+        try {
+            BankSnapshot snapshot = journal.isEmpty() ? null : BankSnapshot.read(snapshotFile);
+            if (snapshot != null) {
+                this.history = TransactionStore.open(historyDirectory, snapshot.historySegmentBytes(),
+                        snapshot.historyBytes(), snapshot.counterparties());
+                for (AccountState state : snapshot.accounts()) {
+                    accounts.putIfAbsent(new Account(state, history));
+                }
+                journal.replay(snapshot.journalPosition(), this::replay);
+            } else {
+                // Without a snapshot the history is rebuilt from the journal, so start it from empty
+                this.history = TransactionStore.create(historyDirectory, historySegmentBytes);
+                journal.replay(new LedgerJournal.Position(0, 0), this::replay);
+            }
+            accounts.stream().forEach(account -> account.attachJournal(journal));
+
+            if (accounts.size() == 0) {
+                initializeTestAccounts();
+            }
+        } catch (IOException | RuntimeException e) {
+            journal.close();
+            throw e;
+        }
+    }
+
+    private void replay(long sequence, byte kind, long id, long timestamp, long amount,
+                        String accountNumber, String text, String extra) {
+        if (kind == LedgerJournal.OPEN) {
+            // The record holds the PIN as it was stored, so restore rather than construct
+            var account = new Account(new AccountState(accountNumber, text, extra, 0, 0, -1, 0), history);
+            if (accounts.putIfAbsent(account)) {
+                account.replay(sequence, kind, id, timestamp, amount, null);
+            }
+            return;
+        }
+
+        // Records the snapshot already reflects are skipped per account
+        Account account = accounts.get(accountNumber);
+        if (account != null && sequence > account.getJournaledThrough()) {
+            account.replay(sequence, kind, id, timestamp, amount, text);
+        }
+
+        // One record covers both legs of a transfer inside this bank; the incoming leg is id + 1
+        if (kind == LedgerJournal.TRANSFER) {
+            Account destination = accounts.get(text);
+            if (destination != null && sequence > destination.getJournaledThrough()) {
+                destination.replay(sequence, LedgerJournal.TRANSFER_IN, id == 0 ? 0 : id + 1, timestamp, amount,
+                        accountNumber);
+            }
+        }
+    }
+
+    /**
+     * Writes a snapshot of every account and makes it the one used on the
+     * next startup. Deposits, withdrawals and transfers keep running while
+     * it is taken: each account is captured between two of its changes,
+     * and records the journal sequence it reflects so replay can skip them.
+     * Returns the number of accounts written.
+     */
+    public int snapshot() throws IOException {
+        if (journal == null) {
+            throw new IllegalStateException("An in-memory bank has nothing to snapshot");
+        }
+
+        snapshotLock.lock();
+        try {
+            // Every account opened up to this position is in the registry
+            LedgerJournal.Position start;
+            openLock.writeLock().lock();
+            try {
+                start = journal.position();
+            } finally {
+                openLock.writeLock().unlock();
+            }
+
+            Path temporary = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+            int count = BankSnapshot.write(temporary, start, history, accounts.stream().iterator());
+
+            // Everything the snapshot covers has to be on disk before it replaces the old one
+            journal.awaitDurable(journal.getAppendedSequence());
+            history.force();
+            try (var channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+            Files.move(temporary, snapshotFile, java.nio.file.StandardCopyOption.REPLACE_EXISTING,
+                    java.nio.file.StandardCopyOption.ATOMIC_MOVE);
+            return count;
+        } finally {
+            snapshotLock.unlock();
+        }
+    }
+
+    /**
+     * Takes a snapshot in the background at the given interval.
+     */
+    public synchronized void startSnapshots(long period, java.util.concurrent.TimeUnit unit) {
+        if (journal == null || snapshotScheduler != null) {
+            return;
+        }
+        snapshotScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "bank-snapshots");
+            thread.setDaemon(true);
+            return thread;
+        });
+        snapshotScheduler.scheduleWithFixedDelay(() -> {
+            try {
+                snapshot();
+            } catch (IOException | RuntimeException e) {
+                System.out.println("Snapshot failed: " + e.getMessage());
+            }
+        }, period, period, unit);
+    }
+
+    /**
+     * Waits until the journal record with the given sequence is on disk.
+     * Lets servers acknowledge a whole round of requests with one wait.
+     */
+    void awaitDurable(long sequence) {
+        if (journal != null && sequence > 0) {
+            journal.awaitDurable(sequence);
+        }
+    }
+
+    /**
+     * Checks without waiting whether the journal record with the given
+     * sequence is on disk.
+     */
+    boolean isDurable(long sequence) {
+        return journal == null || sequence <= 0 || journal.isDurable(sequence);
+    }
+
+    /**
+     * Gets the journal behind this bank, or null if it is in-memory only.
+     */
+    LedgerJournal getJournal() {
+        return journal;
+    }
+
+    /**
+     * Stops background snapshots, then flushes and closes the journal, if there is one.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (snapshotScheduler != null) {
+                snapshotScheduler.shutdownNow();
+                snapshotScheduler = null;
+            }
+        }
+        if (journal != null) {
+            snapshotLock.lock(); // let a running snapshot finish
+            try {
+                history.force();
+                journal.close();
+            } finally {
+                snapshotLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Gets the name of the bank.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the account with the specified account number.
+     */
+    public Account getAccount(String accountNumber) {
+        return accounts.get(accountNumber);
+    }
+
+    /**
+     * Finds a transaction of any account by its id, or returns null.
+     *
+     * The first lookup indexes every account's history, which takes a
+     * while on a big bank; after that every transaction is indexed as it
+     * is recorded and a lookup is one hash probe.
+     */
+    public Transaction findTransaction(long id) {
+        TransactionIndex index = transactionIndex;
+        if (index == null) {
+            index = buildTransactionIndex();
+        }
+        return index.find(id);
+    }
+
+    private synchronized TransactionIndex buildTransactionIndex() {
+        if (transactionIndex == null) {
+            // Published first, so an account added meanwhile attaches itself or is seen here
+            var index = new TransactionIndex();
+            transactionIndex = index;
+            accounts.stream().forEach(account -> account.attachIndex(index));
+        }
+        return transactionIndex;
+    }
+
+    private void attachToIndex(Account account) {
+        TransactionIndex index = transactionIndex;
+        if (index != null) {
+            account.attachIndex(index);
+        }
+    }
+
+    /**
+     * Adds an account to the bank.
+     */
+    public boolean addAccount(Account account) {
+        return addAccounts(new Account[] {account}, 1) == 1;
+    }
+
+    /**
+     * Adds the first {@code count} accounts of the array and returns how many
+     * were new. A journaled bank waits for the journal once for the lot.
+     */
+    int addAccounts(Account[] batch, int count) {
+        int added = 0;
+        if (journal == null) {
+            for (int i = 0; i < count; i++) {
+                Account account = batch[i];
+                if (accounts.get(account.getAccountNumber()) != null) {
+                    continue;
+                }
+                account.moveHistoryTo(history);
+                // Single atomic insert-if-absent, so two callers can't both add the same number
+                if (accounts.putIfAbsent(account)) {
+                    attachToIndex(account);
+                    added++;
+                }
+            }
+            return added;
+        }
+
+        // Journal each opening before the account becomes visible, so no
+        // change to it can reach the journal ahead of its OPEN record
+        long sequence = 0;
+        openLock.readLock().lock();
+        try {
+            for (int i = 0; i < count; i++) {
+                Account account = batch[i];
+                if (accounts.get(account.getAccountNumber()) != null) {
+                    continue; // duplicates keep their own history and aren't journaled
+                }
+                account.moveHistoryTo(history);
+                long opened = journal.append(LedgerJournal.OPEN, account.getOpeningId(), account.getOpenedAt(),
+                        account.getBalance(), account.getAccountNumber(), account.getAccountHolder(), account.getPinHash());
+                account.attachJournal(journal);
+                if (accounts.putIfAbsent(account)) {
+                    attachToIndex(account);
+                    added++;
+                    sequence = opened;
+                } else {
+                    account.attachJournal(null); // lost a race with another opening; replay skips this OPEN
+                }
+            }
+        } finally {
+            openLock.readLock().unlock();
+        }
+        awaitDurable(sequence);
+        return added;
+    }
+
+    /**
+     * Creates an account whose history goes straight into this bank's
+     * transaction store. Used for accounts that are about to be added.
+     */
+    Account newAccount(String accountNumber, String pin, String accountHolder, long initialBalance) {
+        return new Account(accountNumber, pin, accountHolder, initialBalance, history);
+    }
+
+    /**
+     * Bulk-loads accounts from a CSV file ({@code accountNumber,pin,holder,balance}).
+     */
+    public AccountLoader.Result loadAccounts(Path file) throws IOException {
+        return new AccountLoader(this).load(file);
+    }
+
+    /**
+     * Applies a whole batch of commands and returns one outcome per command,
+     * in the same order as the input.
+     *
+     * Commands are grouped by the lock stripes of the accounts they touch,
+     * and each group is applied while holding its stripes once, sharing a
+     * single timestamp. Groups run in levels: a command that follows one on
+     * the same account with another stripe pair goes a level later, so every
+     * account sees its commands in input order (a deposit lands before the
+     * transfer that spends it). The journal is waited on once for the whole
+     * batch.
+     */
+    public LedgerStatus[] applyBatch(java.util.List<BankCommand> commands) {
+        var locks = Account.TRANSFER_LOCKS;
+        int count = commands.size();
+        var outcomes = new LedgerStatus[count];
+        var sources = new Account[count];
+        var destinations = new Account[count];
+
+        // A group is level * pairs + stripe pair, and fits in 32 bits; a batch
+        // that needs more levels than that is applied in several rounds
+        long pairs = (long) locks.size() * locks.size();
+        long maxLevel = (1L << 32) / pairs - 1;
+        var lastGroups = new java.util.IdentityHashMap<Account, long[]>(); // newest group per account this round
+        var keys = new long[count];
+
+        // Declines come back as outcome codes; one result is reused for the whole batch
+        var debit = new DebitResult();
+        int next = 0;
+        while (next < count) {
+            // Sort key: group in the high bits, input position in the low 31
+            lastGroups.clear();
+            int grouped = 0;
+            for (; next < count; next++) {
+                int i = next;
+                BankCommand command = commands.get(i);
+                sources[i] = accounts.get(command.sourceAccountNumber());
+                destinations[i] = command.type() == TransactionType.TRANSFER
+                        ? accounts.get(command.destinationAccountNumber())
+                        : sources[i];
+
+                if (sources[i] == null || destinations[i] == null) {
+                    outcomes[i] = LedgerStatus.UNKNOWN_ACCOUNT;
+                    continue;
+                }
+
+                int a = locks.stripeOf(sources[i].getAccountNumber());
+                int b = locks.stripeOf(destinations[i].getAccountNumber());
+                long pair = (long) Math.min(a, b) * locks.size() + Math.max(a, b);
+                long[] sourceGroup = lastGroups.get(sources[i]);
+                long[] destinationGroup = lastGroups.get(destinations[i]);
+                long level = Math.max(levelAfter(sourceGroup, pair, pairs), levelAfter(destinationGroup, pair, pairs));
+                if (level > maxLevel) {
+                    break; // starts the next round
+                }
+
+                long group = level * pairs + pair;
+                if (sourceGroup == null) {
+                    lastGroups.put(sources[i], sourceGroup = new long[1]);
+                }
+                sourceGroup[0] = group;
+                if (destinationGroup == null) {
+                    lastGroups.put(destinations[i], destinationGroup = new long[1]);
+                }
+                destinationGroup[0] = group;
+                keys[grouped++] = group << 31 | i;
+            }
+
+            // Level by level, and by stripe pair within a level
+            java.util.Arrays.sort(keys, 0, grouped);
+            int run = 0;
+            while (run < grouped) {
+                long group = keys[run] >>> 31;
+                int end = run;
+                while (end < grouped && keys[end] >>> 31 == group) {
+                    end++;
+                }
+
+                long pair = group % pairs;
+                int first = (int) (pair / locks.size());
+                int second = (int) (pair % locks.size());
+                var timestamp = new Date();
+
+                locks.lockStripes(first, second);
+                try {
+                    for (int k = run; k < end; k++) {
+                        int i = (int) (keys[k] & Integer.MAX_VALUE);
+                        outcomes[i] = applyCommand(commands.get(i), sources[i], destinations[i], timestamp, debit);
+                    }
+                } finally {
+                    locks.unlockStripes(first, second);
+                }
+                run = end;
+            }
+        }
+
+        // Everything this batch appended is at or before the journal's latest record
+        if (journal != null) {
+            journal.awaitDurable(journal.getAppendedSequence());
+        }
+        return outcomes;
+    }
+
+    /**
+     * Lowest level a command on the given stripe pair can take after an
+     * account's newest group (null if it has none yet).
+     */
+    private static long levelAfter(long[] group, long pair, long pairs) {
+        if (group == null) {
+            return 0;
+        }
+        long level = group[0] / pairs;
+        return group[0] % pairs == pair ? level : level + 1;
+    }
+
+    private static LedgerStatus applyCommand(BankCommand command, Account source, Account destination, Date timestamp,
+                                             DebitResult debit) {
+        try {
+            return switch (command.type()) {
+                case DEPOSIT -> {
+                    source.depositAt(command.amount(), timestamp);
+                    yield LedgerStatus.APPROVED;
+                }
+                case WITHDRAWAL -> source.tryWithdrawAt(command.amount(), timestamp, debit).getStatus();
+                case TRANSFER -> source == destination
+                        ? LedgerStatus.INVALID_AMOUNT
+                        : source.tryTransferHoldingLocks(destination, command.amount(), timestamp, debit).getStatus();
+            };
+        } catch (IllegalArgumentException | ArithmeticException e) {
+            return LedgerStatus.INVALID_AMOUNT;
+        }
+    }
+
+    /**
+     * Authenticates a user by account number and PIN.
+     */
+    public Account authenticateUser(String accountNumber, String pin) {
+        Account account = getAccount(accountNumber);
+
+        if (account != null && account.authenticate(pin)) {
+            return account;
+        }
+
+        return null;
+    }
+
+    /**
+     * Gets all accounts in the bank.
+     * Using Java 8+ approach for conversion
+     */
+    public java.util.List<Account> getAllAccounts() {
+        return accounts.stream().collect(Collectors.toList());
+    }
+
+    /**
+     * Search for accounts by a predicate
+     * Using Java 8+ Predicate for flexible filtering
+     */
+    public java.util.List<Account> findAccounts(Predicate<Account> criteria) {
+        return accounts.stream()
+                .filter(criteria)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Search for accounts containing the given text in the holder's name
+     * Using Java 8+ features for searching
+     */
+    public java.util.List<Account> searchByHolderName(String searchText) {
+        return findAccounts(account ->
+                account.getAccountHolder().toLowerCase().contains(searchText.toLowerCase()));
+    }
+
+    /**
+     * Find accounts with balance greater than the given amount
+     * Using Java 8+ features for filtering
+     */
+    public java.util.List<Account> findAccountsWithBalanceAbove(long minBalance) {
+        return findAccounts(account -> account.getBalance() > minBalance);
+    }
+
+    /**
+     * Initializes the bank with some test accounts, through the same loader
+     * used for account files.
+     */
+    private void initializeTestAccounts() {
+        // Initialize with some typical Indian names and reasonable balances
+        var csv = """
+                # accountNumber,pin,holder,balance
+                123456,1234,Rajesh Kumar,50000
+                234567,2345,Priya Sharma,35000
+                345678,3456,Amit Patel,72000
+                456789,4567,Sunita Verma,28000
+                """;
+        try {
+            new AccountLoader(this).load(java.nio.channels.Channels.newChannel(
+                    new java.io.ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8))));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
+
+/**
+ * Streams accounts into a bank from CSV lines of the form
+ * {@code accountNumber,pin,holder,balance}, with the balance in rupees.
+ * Blank lines and lines starting with '#' are skipped, and the holder may
+ * itself contain commas.
+ *
+ * The input is read in fixed-size chunks that are cut at the last line
+ * break; each chunk is split into slices on the fork-join pool, and every
+ * slice parses its lines straight from the bytes and adds the accounts in
+ * batches. Only a few chunks are in flight at once and their buffers are
+ * reused, so memory stays flat however large the file is.
+ */
+final class AccountLoader {
+    private static final int CHUNK_BYTES = 1 << 20;
+    private static final int SLICE_BYTES = 64 << 10;
+    private static final int BATCH_SIZE = 1_024;
+
+    /**
+     * What a load did: accounts added, numbers that already existed, and
+     * lines that couldn't be parsed.
+     */
+    record Result(long loaded, long duplicates, long rejected, long bytes) {
+    }
+
+    private final Bank bank;
+    private final ForkJoinPool pool;
+    private final java.util.concurrent.atomic.LongAdder loaded = new java.util.concurrent.atomic.LongAdder();
+    private final java.util.concurrent.atomic.LongAdder duplicates = new java.util.concurrent.atomic.LongAdder();
+    private final java.util.concurrent.atomic.LongAdder rejected = new java.util.concurrent.atomic.LongAdder();
+
+    AccountLoader(Bank bank) {
+        this(bank, ForkJoinPool.commonPool());
+    }
+
+    AccountLoader(Bank bank, ForkJoinPool pool) {
+        this.bank = bank;
+        this.pool = pool;
+    }
+
+    /**
+     * Loads every account from the given file.
+     */
+    Result load(Path file) throws IOException {
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return load(channel);
+        }
+    }
+
+    /**
+     * Loads every account from the channel, reading it to the end.
+     */
+    Result load(java.nio.channels.ReadableByteChannel input) throws IOException {
+        int maxInFlight = pool.getParallelism() + 1;
+        var freeBuffers = new ChunkBuffers(maxInFlight + 1);
+        var pending = new ArrayDeque<ForkJoinTask<?>>();
+        long bytes = 0;
+
+        ByteBuffer chunk = freeBuffers.take();
+        boolean endOfInput = false;
+        while (!endOfInput) {
+            int read = input.read(chunk);
+            if (read < 0) {
+                endOfInput = true;
+            } else {
+                bytes += read;
+                if (chunk.hasRemaining()) {
+                    continue; // keep filling until the chunk is full or the input ends
+                }
+            }
+
+            // Hand off everything up to the last line break; the rest starts the next chunk
+            int end = chunk.position();
+            if (!endOfInput) {
+                end = lastLineBreak(chunk.array(), end) + 1;
+                if (end == 0) {
+                    throw new IOException("Account line longer than " + CHUNK_BYTES + " bytes");
+                }
+            }
+            ByteBuffer next = freeBuffers.take();
+            next.put(chunk.array(), end, chunk.position() - end);
+
+            if (end > 0) {
+                final ByteBuffer full = chunk;
+                final int length = end;
+                pending.add(pool.submit(() -> {
+                    try {
+                        new ParseSlice(full.array(), 0, length).invoke();
+                    } finally {
+                        freeBuffers.give(full);
+                    }
+                }));
+            } else {
+                freeBuffers.give(chunk);
+            }
+            chunk = next;
+
+            // Keep only a few chunks in flight
+            while (pending.size() >= maxInFlight || (!pending.isEmpty() && pending.peekFirst().isDone())) {
+                pending.pollFirst().join();
+            }
+        }
+        while (!pending.isEmpty()) {
+            pending.pollFirst().join();
+        }
+
+        return new Result(loaded.sum(), duplicates.sum(), rejected.sum(), bytes);
+    }
+
+    /**
+     * A small pool of chunk buffers, allocated only as they are needed.
+     */
+    private static final class ChunkBuffers {
+        private final java.util.concurrent.LinkedBlockingQueue<ByteBuffer> free =
+                new java.util.concurrent.LinkedBlockingQueue<>();
+        private final int limit;
+        private int allocated; // only touched by the reading thread
+
+        ChunkBuffers(int limit) {
+            this.limit = limit;
+        }
+
+        ByteBuffer take() throws IOException {
+            ByteBuffer buffer = free.poll();
+            if (buffer != null) {
+                return buffer;
+            }
+            if (allocated < limit) {
+                allocated++;
+                return ByteBuffer.allocate(CHUNK_BYTES);
+            }
+            try {
+                return free.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new java.io.InterruptedIOException("Interrupted while loading accounts");
+            }
+        }
+
+        void give(ByteBuffer buffer) {
+            free.add(buffer.clear());
+        }
+    }
+
+    private static int lastLineBreak(byte[] bytes, int end) {
+        for (int i = end - 1; i >= 0; i--) {
+            if (bytes[i] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Parses a range of whole lines, splitting it in two (at a line break)
+     * while it is bigger than a slice.
+     */
+    private final class ParseSlice extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final byte[] bytes;
+        private final int from;
+        private final int to;
+
+        ParseSlice(byte[] bytes, int from, int to) {
+            this.bytes = bytes;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > SLICE_BYTES) {
+                int middle = lastLineBreak(bytes, from + (to - from) / 2) + 1;
+                if (middle > from) {
+                    invokeAll(new ParseSlice(bytes, from, middle), new ParseSlice(bytes, middle, to));
+                    return;
+                }
+            }
+            parseLines();
+        }
+
+        private void parseLines() {
+            var batch = new Account[BATCH_SIZE];
+            int count = 0;
+            int lineStart = from;
+            while (lineStart < to) {
+                int lineEnd = lineStart;
+                while (lineEnd < to && bytes[lineEnd] != '\n') {
+                    lineEnd++;
+                }
+
+                Account account = parseLine(lineStart, lineEnd);
+                if (account != null) {
+                    batch[count++] = account;
+                    if (count == batch.length) {
+                        addBatch(batch, count);
+                        count = 0;
+                    }
+                }
+                lineStart = lineEnd + 1;
+            }
+            addBatch(batch, count);
+        }
+
+        private void addBatch(Account[] batch, int count) {
+            if (count > 0) {
+                int added = bank.addAccounts(batch, count);
+                loaded.add(added);
+                duplicates.add(count - added);
+                java.util.Arrays.fill(batch, 0, count, null);
+            }
+        }
+
+        private Account parseLine(int start, int end) {
+            if (end > start && bytes[end - 1] == '\r') {
+                end--;
+            }
+            if (end == start || bytes[start] == '#') {
+                return null; // blank line or comment
+            }
+
+            int firstComma = indexOf(start, end, (byte) ',');
+            int secondComma = firstComma < 0 ? -1 : indexOf(firstComma + 1, end, (byte) ',');
+            int lastComma = end - 1;
+            while (lastComma > secondComma && bytes[lastComma] != ',') {
+                lastComma--;
+            }
+            if (secondComma < 0 || lastComma <= secondComma || firstComma == start || secondComma == firstComma + 1) {
+                rejected.increment();
+                return null;
+            }
+
+            long balance = parseRupees(lastComma + 1, end);
+            if (balance < 0) {
+                rejected.increment();
+                return null;
+            }
+            try {
+                return bank.newAccount(
+                        new String(bytes, start, firstComma - start, StandardCharsets.US_ASCII),
+                        new String(bytes, firstComma + 1, secondComma - firstComma - 1, StandardCharsets.US_ASCII),
+                        new String(bytes, secondComma + 1, lastComma - secondComma - 1, StandardCharsets.UTF_8).trim(),
+                        balance);
+            } catch (IllegalArgumentException e) {
+                rejected.increment(); // account number too long or not ASCII
+                return null;
+            }
+        }
+
+        private int indexOf(int start, int end, byte value) {
+            for (int i = start; i < end; i++) {
+                if (bytes[i] == value) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Parses "1500", "1500.5" or "1500.50" into paise without building a
+         * String; anything else goes through Money.parse. Returns -1 if the
+         * amount is invalid or negative.
+         */
+        private long parseRupees(int start, int end) {
+            long paise = 0;
+            int decimals = -1;
+            for (int i = start; i < end; i++) {
+                byte b = bytes[i];
+                if (b >= '0' && b <= '9' && decimals < 2 && paise < Long.MAX_VALUE / 1_000) {
+                    paise = paise * 10 + (b - '0');
+                    if (decimals >= 0) {
+                        decimals++;
+                    }
+                } else if (b == '.' && decimals < 0 && i > start) {
+                    decimals = 0;
+                } else {
+                    return parseSlowly(start, end);
+                }
+            }
+            if (end == start) {
+                return -1;
+            }
+            for (int d = Math.max(decimals, 0); d < 2; d++) {
+                paise *= 10;
+            }
+            return paise;
+        }
+
+        private long parseSlowly(int start, int end) {
+            try {
+                long paise = Money.parse(new String(bytes, start, end - start, StandardCharsets.US_ASCII).trim());
+                return paise >= 0 ? paise : -1;
+            } catch (NumberFormatException | ArithmeticException e) {
+                return -1;
+            }
+        }
+    }
+}
+
+/**
+ * Outcome of a command applied by the {@link LedgerEngine}.
+ */
+enum LedgerStatus {
+    APPROVED,
+    INSUFFICIENT_FUNDS,
+    INVALID_AMOUNT,
+    UNKNOWN_ACCOUNT,
+    FAILED // the ledger hit an unexpected error; the command may not have been applied
+}
+
+/**
+ * Completion handle for a ledger command.
+ *
+ * The ledger thread fills in the status once the command has been applied.
+ * A handle can be reused for the next command after {@link #reset()}, which
+ * lets a busy terminal submit commands without allocating anything.
+ */
+final class LedgerCompletion {
+    private static final int SPINS_BEFORE_YIELD = 100;
+    private static final int SPINS_BEFORE_PARK = 200;
+
+    private volatile LedgerStatus status;
+    private volatile Thread waiter;
+
+    /**
+     * Checks whether the ledger has applied the command yet.
+     */
+    public boolean isDone() {
+        return status != null;
+    }
+
+    /**
+     * Gets the outcome, or null if the command is still queued.
+     */
+    public LedgerStatus getStatus() {
+        return status;
+    }
+
+    /**
+     * Waits for the command to be applied and returns its outcome.
+     * Spins and yields briefly first since the ledger thread usually answers quickly.
+     */
+    public LedgerStatus await() {
+        LedgerStatus result;
+        int spins = 0;
+        while ((result = status) == null) {
+            if (spins < SPINS_BEFORE_YIELD) {
+                spins++;
+                Thread.onSpinWait();
+            } else if (spins < SPINS_BEFORE_PARK) {
+                spins++;
+                Thread.yield();
+            } else {
+                waiter = Thread.currentThread();
+                if (status == null) {
+                    LockSupport.park(this);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Clears the handle so it can be passed with another command.
+     */
+    public void reset() {
+        status = null;
+        waiter = null;
+    }
+
+    void complete(LedgerStatus result) {
+        status = result;
+        Thread parked = waiter;
+        if (parked != null) {
+            LockSupport.unpark(parked);
+        }
+    }
+}
+
+/**
+ * Single-writer ledger that applies deposit, withdraw and transfer commands
+ * in order on one dedicated thread.
+ *
+ * Callers publish commands into a preallocated ring of slots instead of
+ * mutating accounts themselves. Producers only contend on one atomic
+ * sequence counter; the ledger thread drains every published slot in one
+ * go and frees the whole batch with a single volatile write. Producers only
+ * wake the ledger thread when it has actually gone to sleep, so a steady
+ * stream of commands costs no unpark calls at all. For journaled accounts
+ * the outcomes of a batch are handed out after a single journal wait.
+ *
+ * A command that throws unexpectedly completes as FAILED. If a batch
+ * can't be finished at all (an Error, or the journal wait failing) the
+ * engine stops taking commands and completes everything already queued
+ * as FAILED, so no caller is left waiting.
+ */
+final class LedgerEngine implements AutoCloseable {
+    private static final byte DEPOSIT = 1;
+    private static final byte WITHDRAW = 2;
+    private static final byte TRANSFER = 3;
+    private static final byte TRANSFER_OUT = 4;
+    private static final byte TRANSFER_IN = 5;
+    private static final byte REVERSE_TRANSFER = 6;
+
+    private static final int SPINS_BEFORE_YIELD = 100;
+    private static final int SPINS_BEFORE_PARK = 1_000;
+    private static final VarHandle PUBLISHED = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final long CLOSED = Long.MIN_VALUE; // set in claimSequence once no more claims count
+
+    /**
+     * One reusable command slot in the ring. Fields are written by the
+     * producer that claimed the slot and read by the ledger thread after
+     * the slot's sequence has been published.
+     */
+    private static final class Slot {
+        byte operation;
+        Account source;
+        Account destination;
+        String counterparty;
+        long amount;
+        LedgerCompletion completion;
+        LedgerStatus status;
+    }
+
+    private final Slot[] slots;
+    private final long[] published;
+    private final int mask;
+    private final AtomicLong claimSequence = new AtomicLong();
+    private final Thread ledgerThread;
+
+    private volatile long consumedSequence = -1;
+    private volatile boolean ledgerParked;
+    private volatile boolean running = true;
+    private long claimLimit; // sequences claimed before closing; written before running is cleared
+
+    // Ledger thread only: the journal the current batch wrote to and how far,
+    // and the result every debit reports its outcome in
+    private LedgerJournal batchJournal;
+    private long batchJournalSequence;
+    private final DebitResult debit = new DebitResult();
+
+    private volatile Throwable failure; // why the engine gave up; set before it stops accepting
+
+    /**
+     * Creates the engine with a ring of the given size (rounded up to a
+     * power of two) and starts the ledger thread.
+     */
+    LedgerEngine(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.slots = new Slot[size];
+        this.published = new long[size];
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Slot();
+            published[i] = -1;
+        }
+
+        this.ledgerThread = new Thread(this::runLedger, "ledger-engine");
+        this.ledgerThread.setDaemon(true);
+        this.ledgerThread.start();
+    }
+
+    /**
+     * Queues a deposit and returns a fresh handle for its outcome.
+     */
+    public LedgerCompletion deposit(Account account, long amount) {
+        var completion = new LedgerCompletion();
+        publish(DEPOSIT, account, null, null, amount, completion);
+        return completion;
+    }
+
+    /**
+     * Queues a withdrawal and returns a fresh handle for its outcome.
+     */
+    public LedgerCompletion withdraw(Account account, long amount) {
+        var completion = new LedgerCompletion();
+        publish(WITHDRAW, account, null, null, amount, completion);
+        return completion;
+    }
+
+    /**
+     * Queues a transfer and returns a fresh handle for its outcome.
+     */
+    public LedgerCompletion transfer(Account source, Account destination, long amount) {
+        var completion = new LedgerCompletion();
+        publish(TRANSFER, source, destination, null, amount, completion);
+        return completion;
+    }
+
+    /**
+     * Queues a deposit reporting to the given handle, which may be null
+     * if the caller doesn't need the outcome.
+     */
+    public void deposit(Account account, long amount, LedgerCompletion completion) {
+        publish(DEPOSIT, account, null, null, amount, completion);
+    }
+
+    /**
+     * Queues a withdrawal reporting to the given handle (may be null).
+     */
+    public void withdraw(Account account, long amount, LedgerCompletion completion) {
+        publish(WITHDRAW, account, null, null, amount, completion);
+    }
+
+    /**
+     * Queues a transfer reporting to the given handle (may be null).
+     */
+    public void transfer(Account source, Account destination, long amount, LedgerCompletion completion) {
+        publish(TRANSFER, source, destination, null, amount, completion);
+    }
+
+    /**
+     * Queues the source leg of a cross-partition transfer (may be null completion).
+     */
+    void transferOut(Account source, String destinationAccountNumber, long amount, LedgerCompletion completion) {
+        publish(TRANSFER_OUT, source, null, destinationAccountNumber, amount, completion);
+    }
+
+    /**
+     * Queues the destination leg of a cross-partition transfer.
+     */
+    void transferIn(Account destination, String sourceAccountNumber, long amount, LedgerCompletion completion) {
+        publish(TRANSFER_IN, destination, null, sourceAccountNumber, amount, completion);
+    }
+
+    /**
+     * Queues the compensation for a transfer whose destination leg failed.
+     */
+    void reverseTransfer(Account source, String destinationAccountNumber, long amount, LedgerCompletion completion) {
+        publish(REVERSE_TRANSFER, source, null, destinationAccountNumber, amount, completion);
+    }
+
+    /**
+     * Stops accepting commands, lets the ledger thread drain what was
+     * already queued and waits for it to finish.
+     */
+    @Override
+    public void close() {
+        stopAccepting();
+        LockSupport.unpark(ledgerThread);
+        try {
+            ledgerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Marks the claim counter closed, so a producer racing with this can't
+     * claim a slot the ledger thread will never look at.
+     */
+    private void stopAccepting() {
+        long claimed = claimSequence.getAndUpdate(sequence -> sequence | CLOSED);
+        if (claimed >= 0) {
+            claimLimit = claimed;
+            running = false;
+        }
+    }
+
+    private void publish(byte operation, Account source, Account destination, String counterparty,
+                         long amount, LedgerCompletion completion) {
+        long sequence = claimSequence.getAndIncrement();
+        if (sequence < 0) {
+            Throwable cause = failure;
+            throw cause != null
+                    ? new IllegalStateException("Ledger engine has failed", cause)
+                    : new IllegalStateException("Ledger engine has been closed");
+        }
+
+        // Ring is full: wait for the ledger thread to free our slot
+        int spins = 0;
+        while (sequence - consumedSequence > mask) {
+            wakeLedger();
+            if (spins++ < 100) {
+                Thread.onSpinWait();
+            } else {
+                Thread.yield();
+            }
+        }
+
+        int index = (int) sequence & mask;
+        Slot slot = slots[index];
+        slot.operation = operation;
+        slot.source = source;
+        slot.destination = destination;
+        slot.counterparty = counterparty;
+        slot.amount = amount;
+        slot.completion = completion;
+
+        // Volatile store so the parked-flag check below can't be reordered before it
+        PUBLISHED.setVolatile(published, index, sequence);
+        wakeLedger();
+    }
+
+    private void wakeLedger() {
+        if (ledgerParked) {
+            LockSupport.unpark(ledgerThread);
+        }
+    }
+
+    private boolean isPublished(long sequence) {
+        return (long) PUBLISHED.getAcquire(published, (int) sequence & mask) == sequence;
+    }
+
+    private void runLedger() {
+        long next = 0;
+        int idle = 0;
+
+        while (true) {
+            long last = next - 1;
+            while (isPublished(last + 1)) {
+                last++;
+            }
+
+            if (last >= next) {
+                applyBatch(next, last);
+                for (long sequence = next; sequence <= last; sequence++) {
+                    complete(slots[(int) sequence & mask]);
+                }
+                // One volatile write hands the whole batch of slots back to producers
+                consumedSequence = last;
+                next = last + 1;
+                idle = 0;
+                continue;
+            }
+
+            if (!running && claimLimit == next) {
+                return; // everything that was claimed has been applied
+            }
+
+            if (idle < SPINS_BEFORE_YIELD) {
+                idle++;
+                Thread.onSpinWait();
+                continue;
+            }
+            if (idle < SPINS_BEFORE_PARK) {
+                idle++;
+                Thread.yield();
+                continue;
+            }
+
+            ledgerParked = true;
+            if (!isPublished(next) && running) {
+                LockSupport.parkNanos(this, 1_000_000L);
+            }
+            ledgerParked = false;
+        }
+    }
+
+    /**
+     * Applies the slots from first to last and waits for their journal
+     * records. Once the engine has failed every slot is just marked FAILED.
+     */
+    private void applyBatch(long first, long last) {
+        if (failure == null) {
+            try {
+                for (long sequence = first; sequence <= last; sequence++) {
+                    apply(slots[(int) sequence & mask]);
+                }
+                // Group commit: one journal wait covers the whole batch
+                syncJournal(null);
+                return;
+            } catch (Throwable e) {
+                // Outcomes of this batch may not be durable, so none of them are
+                // reported; the cause goes out with every later rejection
+                failure = e;
+                batchJournal = null;
+                batchJournalSequence = 0;
+                stopAccepting();
+            }
+        }
+        for (long sequence = first; sequence <= last; sequence++) {
+            slots[(int) sequence & mask].status = LedgerStatus.FAILED;
+        }
+    }
+
+    private void apply(Slot slot) {
+        LedgerStatus status = LedgerStatus.APPROVED;
+        long journalSequence = 0;
+        try {
+            var timestamp = new Date();
+            DebitResult result = switch (slot.operation) {
+                case DEPOSIT -> {
+                    journalSequence = slot.source.depositAt(slot.amount, timestamp);
+                    yield null;
+                }
+                case TRANSFER_IN -> {
+                    journalSequence = slot.source.creditFromTransfer(slot.counterparty, slot.amount);
+                    yield null;
+                }
+                case REVERSE_TRANSFER -> {
+                    journalSequence = slot.source.reverseTransfer(slot.counterparty, slot.amount);
+                    yield null;
+                }
+                case WITHDRAW -> slot.source.tryWithdrawAt(slot.amount, timestamp, debit);
+                case TRANSFER_OUT -> slot.source.tryDebitForTransfer(slot.counterparty, slot.amount, debit);
+                default -> slot.source.tryTransferAt(slot.destination, slot.amount, timestamp, debit);
+            };
+            if (result != null) {
+                status = result.getStatus();
+                journalSequence = result.getJournalSequence();
+            }
+        } catch (IllegalArgumentException | ArithmeticException e) {
+            status = LedgerStatus.INVALID_AMOUNT;
+        } catch (RuntimeException e) {
+            status = LedgerStatus.FAILED;
+        }
+
+        if (journalSequence > 0) {
+            LedgerJournal journal = slot.source.getJournal();
+            syncJournal(journal);
+            batchJournal = journal;
+            batchJournalSequence = Math.max(batchJournalSequence, journalSequence);
+        }
+        slot.status = status;
+    }
+
+    /**
+     * Waits for the journal records of the batch so far, unless the next
+     * record goes to the same journal (then one wait at the end covers both).
+     */
+    private void syncJournal(LedgerJournal next) {
+        if (batchJournal != null && batchJournal != next) {
+            batchJournal.awaitDurable(batchJournalSequence);
+            batchJournal = null;
+            batchJournalSequence = 0;
+        }
+    }
+
+    private void complete(Slot slot) {
+        LedgerCompletion completion = slot.completion;
+        LedgerStatus status = slot.status;
+        // Drop references so finished commands don't keep accounts reachable
+        slot.source = null;
+        slot.destination = null;
+        slot.counterparty = null;
+        slot.completion = null;
+        slot.status = null;
+
+        if (completion != null) {
+            completion.complete(status);
+        }
+    }
+}
+
+/**
+ * A bank split into partitions, each owning a slice of the accounts.
+ *
+ * Accounts are routed to a partition by a hash of their account number and
+ * are only ever changed by that partition's ledger thread, so partitions
+ * share no locks and throughput grows with the number of cores. A transfer
+ * between two partitions runs as two messages: a debit on the source
+ * partition and then a credit on the destination partition. If the credit
+ * can't be applied the debit is compensated on the source partition.
+ *
+ * Once added, an account belongs to its partition: its own public
+ * deposit, withdraw and transfer methods throw IllegalStateException.
+ */
+final class PartitionedBank implements AutoCloseable {
+    private static final int RING_CAPACITY = 16 * 1024;
+
+    private final String name;
+    private final AccountRegistry[] registries;
+    private final LedgerEngine[] engines;
+
+    /**
+     * Creates a bank with one partition per available core.
+     */
+    PartitionedBank(String name) {
+        this(name, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a bank with the given number of partitions and starts their ledger threads.
+     */
+    PartitionedBank(String name, int partitionCount) {
+        if (partitionCount <= 0) {
+            throw new IllegalArgumentException("Partition count must be positive");
+        }
+
+        this.name = name;
+        this.registries = new AccountRegistry[partitionCount];
+        this.engines = new LedgerEngine[partitionCount];
+        for (int i = 0; i < partitionCount; i++) {
+            registries[i] = new AccountRegistry(1);
+            engines[i] = new LedgerEngine(RING_CAPACITY);
+        }
+    }
+
+    /**
+     * Gets the name of the bank.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the number of partitions.
+     */
+    public int getPartitionCount() {
+        return engines.length;
+    }
+
+    /**
+     * Gets the partition that owns the given account number.
+     */
+    int partitionOf(String accountNumber) {
+        int h = accountNumber.hashCode();
+        return Math.floorMod(h ^ (h >>> 16), engines.length);
+    }
+
+    /**
+     * Adds an account to the partition that owns its number.
+     */
+    public boolean addAccount(Account account) {
+        if (!registries[partitionOf(account.getAccountNumber())].putIfAbsent(account)) {
+            return false;
+        }
+        account.assignToLedger();
+        return true;
+    }
+
+    /**
+     * Gets the account with the specified account number, or null.
+     */
+    public Account getAccount(String accountNumber) {
+        return registries[partitionOf(accountNumber)].get(accountNumber);
+    }
+
+    /**
+     * Authenticates a user by account number and PIN.
+     */
+    public Account authenticateUser(String accountNumber, String pin) {
+        Account account = getAccount(accountNumber);
+        return account != null && account.authenticate(pin) ? account : null;
+    }
+
+    /**
+     * Queues a deposit on the owning partition.
+     */
+    public LedgerCompletion deposit(String accountNumber, long amount) {
+        int partition = partitionOf(accountNumber);
+        Account account = registries[partition].get(accountNumber);
+        if (account == null) {
+            return unknownAccount();
+        }
+        return engines[partition].deposit(account, amount);
+    }
+
+    /**
+     * Queues a withdrawal on the owning partition.
+     */
+    public LedgerCompletion withdraw(String accountNumber, long amount) {
+        int partition = partitionOf(accountNumber);
+        Account account = registries[partition].get(accountNumber);
+        if (account == null) {
+            return unknownAccount();
+        }
+        return engines[partition].withdraw(account, amount);
+    }
+
+    /**
+     * Transfers between two accounts and waits for the outcome.
+     *
+     * When both accounts live on the same partition this is one ledger
+     * command. Otherwise the source partition debits first, the destination
+     * partition credits second, and a credit that certainly wasn't applied
+     * (declined, or its partition no longer taking commands) is undone with
+     * a reversal on the source partition. A destination partition that no
+     * longer takes commands gets its IllegalStateException rethrown once the
+     * money is back. If the credit FAILED it may have gone through, so
+     * nothing is reversed and FAILED is returned; the same goes for a
+     * reversal that doesn't go through.
+     */
+    public LedgerStatus transfer(String sourceAccountNumber, String destinationAccountNumber, long amount) {
+        int sourcePartition = partitionOf(sourceAccountNumber);
+        int destinationPartition = partitionOf(destinationAccountNumber);
+        Account source = registries[sourcePartition].get(sourceAccountNumber);
+        Account destination = registries[destinationPartition].get(destinationAccountNumber);
+
+        if (source == null || destination == null) {
+            return LedgerStatus.UNKNOWN_ACCOUNT;
+        }
+
+        var completion = new LedgerCompletion();
+        if (sourcePartition == destinationPartition) {
+            engines[sourcePartition].transfer(source, destination, amount, completion);
+            return completion.await();
+        }
+
+        // Step 1: debit on the source partition
+        engines[sourcePartition].transferOut(source, destinationAccountNumber, amount, completion);
+        LedgerStatus debit = completion.await();
+        if (debit != LedgerStatus.APPROVED) {
+            return debit;
+        }
+
+        // Step 2: credit on the destination partition
+        completion.reset();
+        LedgerStatus credit;
+        try {
+            engines[destinationPartition].transferIn(destination, sourceAccountNumber, amount, completion);
+            credit = completion.await();
+        } catch (IllegalStateException e) {
+            // The destination partition is closed or failed, so nothing was queued
+            if (!reverse(sourcePartition, source, destinationAccountNumber, amount, completion)) {
+                return LedgerStatus.FAILED;
+            }
+            throw e;
+        }
+        if (credit == LedgerStatus.APPROVED || credit == LedgerStatus.FAILED) {
+            return credit;
+        }
+
+        // Credit declined: give the money back to the source account
+        return reverse(sourcePartition, source, destinationAccountNumber, amount, completion) ? credit : LedgerStatus.FAILED;
+    }
+
+    /**
+     * Puts back the debit of a transfer whose credit wasn't applied, and
+     * says whether that went through.
+     */
+    private boolean reverse(int partition, Account source, String destinationAccountNumber, long amount,
+                            LedgerCompletion completion) {
+        completion.reset();
+        try {
+            engines[partition].reverseTransfer(source, destinationAccountNumber, amount, completion);
+        } catch (IllegalStateException e) {
+            return false;
+        }
+        return completion.await() == LedgerStatus.APPROVED;
+    }
+
+    /**
+     * Stops every partition after it has applied its queued commands.
+     */
+    @Override
+    public void close() {
+        for (var engine : engines) {
+            engine.close();
+        }
+    }
+
+    private static LedgerCompletion unknownAccount() {
+        var completion = new LedgerCompletion();
+        completion.complete(LedgerStatus.UNKNOWN_ACCOUNT);
+        return completion;
+    }
+}
+
+/**
+ * Represents an ATM that provides banking services through a console interface.
+ *
+ * The same menu flow also serves remote terminals in server mode; there
+ * the reader and writer are the terminal's socket and the bank is shared
+ * with every other connected session.
+ */
+class ATM {
+    private static final int HISTORY_PAGE_SIZE = 10;
+
+    private final Bank bank;
+    private Account currentAccount;
+    private final BufferedReader reader;
+    private final PrintStream out;
+    private boolean isRunning;
+
+    /**
+     * Constructs a new ATM.
+     */
+    public ATM() {
+        this(new Bank("State Bank of India"));
+    }
+
+    /**
+     * Constructs a console ATM against the given bank.
+     */
+    public ATM(Bank bank) {
+        this(bank, new BufferedReader(new InputStreamReader(System.in)), System.out);
+    }
+
+    /**
+     * Constructs an ATM session against the given bank, talking to a terminal
+     * through the given reader and writer.
+     */
+    public ATM(Bank bank, BufferedReader reader, PrintStream out) {
+        this.bank = bank;
+        this.reader = reader;
+        this.out = out;
+        this.isRunning = false;
+    }
+
+    /**
+     * Starts the ATM.
+     */
+    public void start() {
+        isRunning = true;
+        displayWelcomeScreen();
+
+        while (isRunning) {
+            if (currentAccount == null) {
+                authenticateUser();
+            } else {
+                showMainMenu();
+            }
+        }
+
+        out.println("Thank you for using " + bank.getName() + " ATM. Goodbye!");
+        out.flush();
+        try {
+            reader.close();
+        } catch (Exception e) {
+            out.println("Error closing resources: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Displays the welcome screen.
+     */
+    private void displayWelcomeScreen() {
+        out.println("""
+            ================================================
+                  Welcome to %s ATM
+            ================================================
+            """.formatted(bank.getName()));
+    }
+
+    /**
+     * Authenticates a user by prompting for account number and PIN.
+     */
+    private void authenticateUser() {
+        out.println("\nPlease login to your account:");
+
+        try {
+            out.print("Enter your account number: ");
+            String accountNumber = readLine();
+
+            out.print("Enter your PIN: ");
+            String pin = readLine();
+
+            Account account = bank.authenticateUser(accountNumber, pin);
+
+            if (account != null) {
+                currentAccount = account;
+                out.println("\nAuthentication successful!");
+                out.println("Welcome, " + currentAccount.getAccountHolder() + "!");
+            } else {
+                out.println("\nAuthentication failed. Invalid account number or PIN.");
+                out.println("Please try again.");
+            }
+        } catch (Exception e) {
+            out.println("Error reading input: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Shows the main menu and processes user selections.
+     */
+    private void showMainMenu() {
+        // Using text blocks for cleaner menu representation
+        out.println("""
+            
+            ================================================
+                               MAIN MENU
+            ================================================
+            1. Check Balance
+            2. Deposit Funds
+            3. Withdraw Funds
+            4. Transfer Funds
+            5. View Transaction History
+            6. Statement
+            7. Change PIN
+            8. Logout
+            9. Exit
+            ================================================
+            Enter your choice (1-9): """);
+
+        try {
+            int choice = Integer.parseInt(readLine());
+
+            // Using switch expressions
+            switch (choice) {
+                case 1 -> checkBalance();
+                case 2 -> depositFunds();
+                case 3 -> withdrawFunds();
+                case 4 -> transferFunds();
+                case 5 -> viewTransactionHistory();
+                case 6 -> viewStatement();
+                case 7 -> changePin();
+                case 8 -> logout();
+                case 9 -> isRunning = false;
+                default -> out.println("Invalid choice. Please enter a number between 1 and 9.");
+            }
+        } catch (NumberFormatException e) {
+            out.println("Invalid input. Please enter a valid number.");
+        } catch (Exception e) {
+            out.println("Error reading input: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Checks and displays the current account balance.
+     */
+    private void checkBalance() {
+        out.println("""
+            
+            ================================================
+                           ACCOUNT BALANCE
+            ================================================
+            Account Number: %s
+            Account Holder: %s
+            Current Balance: %s
+            ================================================
+            """.formatted(
+                currentAccount.getAccountNumber(),
+                currentAccount.getAccountHolder(),
+                Money.format(currentAccount.getBalance())
+        ));
+
+        pressEnterToContinue();
+    }
+
+    /**
+     * Processes a deposit transaction.
+     */
+    private void depositFunds() {
+        out.println("""
+            
+            ================================================
+                            DEPOSIT FUNDS
+            ================================================
+            Current Balance: %s
+            """.formatted(Money.format(currentAccount.getBalance())));
+
+        try {
+            out.print("Enter amount to deposit: ₹");
+            long amount = Money.parse(readLine());
+
+            if (amount <= 0) {
+                out.println("Invalid amount. Please enter a positive number.");
+                return;
+            }
+
+            boolean success = currentAccount.deposit(amount);
+
+            if (success) {
+                out.println("\nDeposit successful!");
+                out.println("New Balance: " + Money.format(currentAccount.getBalance()));
+            } else {
+                out.println("\nDeposit failed. Please try again.");
+            }
+        } catch (NumberFormatException e) {
+            out.println("Invalid input. Please enter a valid amount.");
+        } catch (IllegalArgumentException e) {
+            out.println("Error: " + e.getMessage());
+        } catch (Exception e) {
+            out.println("Error reading input: " + e.getMessage());
+        }
+
+        pressEnterToContinue();
+    }
+
+    /**
+     * Processes a withdrawal transaction.
+     */
+    private void withdrawFunds() {
+        out.println("""
+            
+            ================================================
+                           WITHDRAW FUNDS
+            ================================================
+            Current Balance: %s
+            """.formatted(Money.format(currentAccount.getBalance())));
+
+        try {
+            out.print("Enter amount to withdraw: ₹");
+            long amount = Money.parse(readLine());
+
+            if (amount <= 0) {
+                out.println("Invalid amount. Please enter a positive number.");
+                return;
+            }
+
+            boolean success = currentAccount.withdraw(amount);
+
+            if (success) {
+                out.println("\nWithdrawal successful!");
+                out.println("New Balance: " + Money.format(currentAccount.getBalance()));
+            } else {
+                out.println("\nWithdrawal failed. Please try again.");
+            }
+        } catch (NumberFormatException e) {
+            out.println("Invalid input. Please enter a valid amount.");
+        } catch (IllegalArgumentException e) {
+            out.println("Error: " + e.getMessage());
+        } catch (InsufficientFundsException e) {
+            out.println("Error: " + e.getMessage());
+        } catch (Exception e) {
+            out.println("Error reading input: " + e.getMessage());
+        }
+
+        pressEnterToContinue();
+    }
+
+    /**
+     * Processes a fund transfer transaction.
+     */
+    private void transferFunds() {
+        out.println("""
+            
+            ================================================
+                           TRANSFER FUNDS
+            ================================================
+            Current Balance: %s
+            """.formatted(Money.format(currentAccount.getBalance())));
+
+        try {
+            out.print("Enter destination account number: ");
+            String destinationAccountNumber = readLine();
+
+            if (destinationAccountNumber.equals(currentAccount.getAccountNumber())) {
+                out.println("Cannot transfer to same account.");
+                pressEnterToContinue();
+                return;
+            }
+
+            Account destinationAccount = bank.getAccount(destinationAccountNumber);
+
+            if (destinationAccount == null) {
+                out.println("Destination account not found.");
+                pressEnterToContinue();
+                return;
+            }
+
+            out.print("Enter amount to transfer: ₹");
+            long amount = Money.parse(readLine());
+
+            if (amount <= 0) {
+                out.println("Invalid amount. Please enter a positive number.");
+                pressEnterToContinue();
+                return;
+            }
+
+            out.println("""
+                
+                Transfer Details:
+                From: %s (%s)
+                To: %s (%s)
+                Amount: %s
+                """.formatted(
+                    currentAccount.getAccountNumber(),
+                    currentAccount.getAccountHolder(),
+                    destinationAccount.getAccountNumber(),
+                    destinationAccount.getAccountHolder(),
+                    Money.format(amount)
+            ));
+
+            out.print("Confirm transfer? (yes/no): ");
+            String confirm = readLine();
+
+            if (!confirm.equalsIgnoreCase("yes")) {
+                out.println("Transfer cancelled.");
+                pressEnterToContinue();
+                return;
+            }
+
+            boolean success = currentAccount.transfer(destinationAccount, amount);
+
+            if (success) {
+                out.println("\nTransfer successful!");
+                out.println("New Balance: " + Money.format(currentAccount.getBalance()));
+            } else {
+                out.println("\nTransfer failed. Please try again.");
+            }
+        } catch (NumberFormatException e) {
+            out.println("Invalid input. Please enter a valid amount.");
+        } catch (IllegalArgumentException e) {
+            out.println("Error: " + e.getMessage());
+        } catch (InsufficientFundsException e) {
+            out.println("Error: " + e.getMessage());
+        } catch (Exception e) {
+            out.println("Error reading input: " + e.getMessage());
+        }
+
+        pressEnterToContinue();
+    }
+
+    /**
+     * Displays the transaction history for the current account.
+     */
+    private void viewTransactionHistory() {
+        out.println("""
+            
+            ================================================
+                        TRANSACTION HISTORY
+            ================================================
+            """);
+
+        var page = currentAccount.getHistoryPage(HISTORY_PAGE_SIZE);
+
+        if (page.transactions().isEmpty()) {
+            out.println("No transactions found.");
+        } else {
+            out.printf("Transactions: %,d (newest first)%n%n", page.totalCount());
+            out.println("Date & Time            | Type       | Amount    | Description");
+            out.println("---------------------------------------------------------------------");
+
+            // Show a screenful at a time, reading the next page only if asked
+            while (true) {
+                page.transactions().forEach(transaction -> {
+                    String formattedDate = Timestamps.format(transaction.getTimestampMillis());
+                    String type = transaction.getType().toString();
+                    String amount = "₹" + Money.plain(transaction.getAmount());
+
+                    out.printf("%-22s | %-10s | %-9s | %s%n",
+                            formattedDate, type, amount, transaction.getDescription());
+                });
+                if (!page.hasMore()) {
+                    break;
+                }
+                out.print("-- Enter M for more, or just Enter to stop: ");
+                String answer;
+                try {
+                    answer = readLine();
+                } catch (IOException e) {
+                    break;
+                }
+                if (!answer.trim().equalsIgnoreCase("M")) {
+                    break;
+                }
+                page = currentAccount.getHistoryPage(page.nextToken(), HISTORY_PAGE_SIZE);
+            }
+
+            // Also show transaction statistics
+            out.println("\nTransaction Statistics:");
+            out.println("---------------------------------------------------------------------");
+
+            var depositTotal = currentAccount.getTotalForTransactionType(TransactionType.DEPOSIT);
+            var withdrawalTotal = currentAccount.getTotalForTransactionType(TransactionType.WITHDRAWAL);
+            var transferTotal = currentAccount.getTotalForTransactionType(TransactionType.TRANSFER);
+
+            out.printf("Total Deposits:    ₹%s (%d)%n", Money.plain(depositTotal),
+                    currentAccount.getTransactionCountForType(TransactionType.DEPOSIT));
+            out.printf("Total Withdrawals: ₹%s (%d)%n", Money.plain(withdrawalTotal),
+                    currentAccount.getTransactionCountForType(TransactionType.WITHDRAWAL));
+            out.printf("Total Transfers:   ₹%s (%d)%n", Money.plain(transferTotal),
+                    currentAccount.getTransactionCountForType(TransactionType.TRANSFER));
+            out.printf("Withdrawn Today:   ₹%s%n", Money.plain(
+                    currentAccount.getDailyTotal(TransactionType.WITHDRAWAL, LocalDate.now())));
+        }
+
+        pressEnterToContinue();
+    }
+
+    /**
+     * Shows the mini-statement, or every transaction between two dates.
+     */
+    private void viewStatement() {
+        out.println("""
+            
+            ================================================
+                              STATEMENT
+            ================================================
+            1. Mini Statement (last %d transactions)
+            2. Statement Between Dates
+            ================================================
+            Enter your choice (1-2): """.formatted(Account.MINI_STATEMENT_SIZE));
+
+        try {
+            java.util.List<Transaction> transactions;
+            switch (readLine().trim()) {
+                case "1" -> transactions = currentAccount.getMiniStatement();
+                case "2" -> {
+                    out.print("From date (yyyy-MM-dd): ");
+                    LocalDate from = LocalDate.parse(readLine().trim());
+                    out.print("To date (yyyy-MM-dd, inclusive): ");
+                    LocalDate to = LocalDate.parse(readLine().trim());
+                    // Up to the start of the day after, so the last day is included
+                    transactions = currentAccount.getTransactionsBetween(
+                            Date.from(from.atStartOfDay(TransactionTotals.ZONE).toInstant()),
+                            Date.from(to.plusDays(1).atStartOfDay(TransactionTotals.ZONE).toInstant()));
+                }
+                default -> {
+                    out.println("Invalid choice.");
+                    pressEnterToContinue();
+                    return;
+                }
+            }
+
+            if (transactions.isEmpty()) {
+                out.println("\nNo transactions found.");
+            } else {
+                out.println("\nDate & Time            | Type       | Amount    | Description");
+                out.println("---------------------------------------------------------------------");
+                for (Transaction transaction : transactions) {
+                    out.printf("%-22s | %-10s | %-9s | %s%n",
+                            Timestamps.format(transaction.getTimestampMillis()), transaction.getType(),
+                            "₹" + Money.plain(transaction.getAmount()), transaction.getDescription());
+                }
+            }
+            out.println("\nCurrent Balance: " + Money.format(currentAccount.getBalance()));
+        } catch (java.time.format.DateTimeParseException e) {
+            out.println("Invalid date. Please use the yyyy-MM-dd format.");
+        } catch (Exception e) {
+            out.println("Error reading input: " + e.getMessage());
+        }
+
+        pressEnterToContinue();
+    }
+
+    /**
+     * Changes the PIN for the current account.
+     */
+    private void changePin() {
+        out.println("""
+            
+            ================================================
+                            CHANGE PIN
+            ================================================
+            """);
+
+        try {
+            out.print("Enter your current PIN: ");
+            String currentPin = readLine();
+
+            out.print("Enter your new PIN: ");
+            String newPin = readLine();
+
+            out.print("Confirm your new PIN: ");
+            String confirmPin = readLine();
+
+            if (!newPin.equals(confirmPin)) {
+                out.println("PINs do not match. PIN change cancelled.");
+                pressEnterToContinue();
+                return;
+            }
+
+            boolean success = currentAccount.changePin(currentPin, newPin);
+
+            if (success) {
+                out.println("PIN changed successfully!");
+            } else {
+                out.println("PIN change failed. Incorrect current PIN.");
+            }
+        } catch (Exception e) {
+            out.println("Error reading input: " + e.getMessage());
+        }
+
+        pressEnterToContinue();
+    }
+
+    /**
+     * Logs out the current user.
+     */
+    private void logout() {
+        out.println("\nLogging out...");
+        currentAccount = null;
+    }
+
+    /**
+     * Reads the next line from the terminal. Flushes any pending prompt
+     * first, and ends the session if the terminal has gone away.
+     */
+    private String readLine() throws IOException {
+        out.flush();
+        String line = reader.readLine();
+        if (line == null) {
+            isRunning = false;
+            throw new EOFException("Terminal disconnected");
+        }
+        return line;
+    }
+
+    /**
+     * Prompts the user to press Enter to continue.
+     */
+    private void pressEnterToContinue() {
+        out.println("\nPress Enter to continue...");
+        try {
+            readLine();
+        } catch (Exception e) {
+            out.println("Error reading input: " + e.getMessage());
+        }
+    }
+}
+
+/**
+ * Hosts ATM terminals that connect over a local socket.
+ *
+ * Every connected terminal gets its own ATM session running on a virtual
+ * thread, and all sessions share one Bank. Virtual threads make a blocked
+ * terminal (one waiting for the customer to type) cost a few hundred bytes
+ * of heap instead of a platform thread stack, so tens of thousands of
+ * terminals can stay connected at once.
+ */
+final class ATMHostServer implements AutoCloseable {
+    static final int DEFAULT_PORT = 9090;
+
+    // Kept small on purpose: a terminal sends a line at a time
+    private static final int READ_BUFFER_CHARS = 256;
+    private static final int WRITE_BUFFER_BYTES = 1024;
+
+    private final Bank bank;
+    private final ServerSocket serverSocket;
+    private final ExecutorService sessions;
+
+    /**
+     * Binds the server to the given port on the loopback interface (0 picks a free port).
+     */
+    ATMHostServer(Bank bank, int port) throws IOException {
+        this.bank = bank;
+        this.serverSocket = new ServerSocket(port, 16 * 1024, InetAddress.getLoopbackAddress());
+        this.sessions = Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    /**
+     * Gets the port the server is listening on.
+     */
+    int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Accepts terminals until the server is closed, starting a session for each one.
+     */
+    void serve() throws IOException {
+        while (!serverSocket.isClosed()) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                if (serverSocket.isClosed()) {
+                    return; // closed while waiting for the next terminal
+                }
+                throw e;
+            }
+            sessions.submit(() -> runSession(socket));
+        }
+    }
+
+    /**
+     * Starts accepting terminals on a background virtual thread.
+     */
+    void start() {
+        Thread.ofVirtual().name("atm-host-acceptor").start(() -> {
+            try {
+                serve();
+            } catch (IOException e) {
+                System.out.println("Server error: " + e.getMessage());
+            }
+        });
+    }
+
+    private void runSession(Socket socket) {
+        try (socket) {
+            socket.setTcpNoDelay(true);
+            var reader = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8), READ_BUFFER_CHARS);
+            var out = new PrintStream(
+                    new BufferedOutputStream(socket.getOutputStream(), WRITE_BUFFER_BYTES), false, StandardCharsets.UTF_8);
+
+            new ATM(bank, reader, out).start();
+            out.flush();
+        } catch (IOException e) {
+            // Terminal dropped the connection; nothing left to clean up
+        }
+    }
+
+    /**
+     * Stops accepting terminals and ends the open sessions.
+     */
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        sessions.shutdownNow();
+    }
+}
+
+/**
+ * Wire format shared by the terminal host and its clients.
+ *
+ * Every frame starts with a 4-byte big-endian length that counts the bytes
+ * after it. A request is then an opcode followed by its fields; a response
+ * echoes the opcode and adds a status code and the account balance in
+ * paise. Amounts and timestamps are raw longs, so the host never has to
+ * turn digits into Strings to process a request. Account numbers and PINs
+ * are sent as one length byte plus ASCII.
+ *
+ * <pre>
+ * LOGIN       account, pin            BALANCE     -
+ * DEPOSIT     amount                  WITHDRAW    amount
+ * TRANSFER    account, amount         HISTORY     int maxEntries
+ * CHANGE_PIN  old pin, new pin        LOGOUT      -
+ * </pre>
+ *
+ * A HISTORY response carries an int count followed by that many records
+ * of (byte type, long amount, long epoch millis), oldest first.
+ */
+final class TerminalProtocol {
+    // Request opcodes
+    static final byte LOGIN = 1;
+    static final byte BALANCE = 2;
+    static final byte DEPOSIT = 3;
+    static final byte WITHDRAW = 4;
+    static final byte TRANSFER = 5;
+    static final byte HISTORY = 6;
+    static final byte CHANGE_PIN = 7;
+    static final byte LOGOUT = 8;
+
+    // Response status codes
+    static final byte OK = 0;
+    static final byte INSUFFICIENT_FUNDS = 1;
+    static final byte INVALID_AMOUNT = 2;
+    static final byte UNKNOWN_ACCOUNT = 3;
+    static final byte AUTH_FAILED = 4;
+    static final byte NOT_LOGGED_IN = 5;
+    static final byte BAD_REQUEST = 6;
+    static final byte SERVER_ERROR = 7; // the host closes the connection after sending it
+
+    static final int LENGTH_FIELD = 4;
+    static final int MAX_REQUEST = 512;
+    static final int RESPONSE_HEADER = 1 + 1 + 8;
+    static final int HISTORY_RECORD = 1 + 8 + 8;
+    static final int MAX_RESPONSE = 4096;
+    static final int MAX_HISTORY_RECORDS = (MAX_RESPONSE - RESPONSE_HEADER - 4) / HISTORY_RECORD;
+
+    private TerminalProtocol() {
+    }
+
+    /**
+     * Writes a request that has no fields.
+     */
+    static void writeRequest(ByteBuffer buffer, byte opcode) {
+        buffer.putInt(1).put(opcode);
+    }
+
+    /**
+     * Writes a DEPOSIT or WITHDRAW request.
+     */
+    static void writeAmountRequest(ByteBuffer buffer, byte opcode, long amount) {
+        buffer.putInt(1 + 8).put(opcode).putLong(amount);
+    }
+
+    /**
+     * Writes a HISTORY request.
+     */
+    static void writeHistoryRequest(ByteBuffer buffer, int maxEntries) {
+        buffer.putInt(1 + 4).put(HISTORY).putInt(maxEntries);
+    }
+
+    /**
+     * Writes a LOGIN request.
+     */
+    static void writeLogin(ByteBuffer buffer, String accountNumber, String pin) {
+        buffer.putInt(1 + 1 + accountNumber.length() + 1 + pin.length()).put(LOGIN);
+        putText(buffer, accountNumber);
+        putText(buffer, pin);
+    }
+
+    /**
+     * Writes a TRANSFER request.
+     */
+    static void writeTransfer(ByteBuffer buffer, String destinationAccountNumber, long amount) {
+        buffer.putInt(1 + 1 + destinationAccountNumber.length() + 8).put(TRANSFER);
+        putText(buffer, destinationAccountNumber);
+        buffer.putLong(amount);
+    }
+
+    /**
+     * Writes a CHANGE_PIN request.
+     */
+    static void writeChangePin(ByteBuffer buffer, String oldPin, String newPin) {
+        buffer.putInt(1 + 1 + oldPin.length() + 1 + newPin.length()).put(CHANGE_PIN);
+        putText(buffer, oldPin);
+        putText(buffer, newPin);
+    }
+
+    private static void putText(ByteBuffer buffer, String text) {
+        if (text.length() > 255) {
+            throw new IllegalArgumentException("Field too long: " + text.length());
+        }
+        buffer.put((byte) text.length());
+        for (int i = 0; i < text.length(); i++) {
+            buffer.put((byte) text.charAt(i));
+        }
+    }
+
+    /**
+     * Reads a length-prefixed ASCII field. Only used for logins and PIN
+     * changes, which happen once per session rather than once per request.
+     */
+    static String readText(ByteBuffer buffer) {
+        int length = buffer.get() & 0xFF;
+        var bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Compares an ASCII field in the buffer with a String without decoding it.
+     */
+    static boolean textEquals(ByteBuffer buffer, int offset, int length, String text) {
+        if (length != text.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (buffer.get(offset + i) != (byte) text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
+
+/**
+ * Serves the binary terminal protocol from a single NIO selector thread.
+ *
+ * Each connection borrows a pair of direct buffers from a pool when it
+ * connects and hands them back when it goes away. Requests are parsed in
+ * place from the input buffer and responses are written straight into the
+ * output buffer, so a steady stream of balance, deposit, withdraw and
+ * transfer requests creates no Strings or wrapper objects. A connection
+ * whose output isn't draining stops being read until it catches up.
+ *
+ * Responses are held back until the changes they acknowledge are durable.
+ * The selector never waits on the journal itself: at the end of each select
+ * pass a connection whose responses aren't on disk yet stops being read,
+ * and a helper thread waits for the journal once for the whole pass and
+ * then wakes the selector to send them.
+ *
+ * A request that fails unexpectedly is answered with SERVER_ERROR and
+ * that connection is closed once the answer is out; the rest carry on.
+ */
+final class TerminalHostServer implements AutoCloseable {
+    static final int DEFAULT_PORT = 9091;
+
+    private static final int BUFFER_SIZE = 2 * TerminalProtocol.MAX_RESPONSE;
+
+    /**
+     * Per-connection state, attached to the selection key.
+     */
+    private static final class Session {
+        final ByteBuffer in;
+        final ByteBuffer out;
+        Account account;
+        Account lastPayee; // reused while the terminal keeps paying the same account
+        boolean flushQueued;
+        boolean closing; // a request failed; close once the output drains
+        long awaiting; // journal sequence the buffered responses wait for
+
+        Session(ByteBuffer in, ByteBuffer out) {
+            this.in = in;
+            this.out = out;
+        }
+    }
+
+    private final Bank bank;
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private final ArrayDeque<ByteBuffer> bufferPool = new ArrayDeque<>();
+    private final ArrayList<SelectionKey> flushQueue = new ArrayList<>();
+    private final ArrayList<SelectionKey> awaitingQueue = new ArrayList<>(); // paused until durable
+    private final DebitResult debit = new DebitResult(); // reused by every withdrawal and transfer
+    private final Object durabilityLock = new Object();
+    private long durabilityTarget; // guarded by durabilityLock
+    private volatile boolean running = true;
+
+    /**
+     * Binds the host to the given port on the loopback interface (0 picks a free port).
+     */
+    TerminalHostServer(Bank bank, int port) throws IOException {
+        this.bank = bank;
+        this.selector = Selector.open();
+        this.serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 16 * 1024);
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    /**
+     * Gets the port the host is listening on.
+     */
+    int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * Starts the selector loop on a background thread.
+     */
+    void start() {
+        var thread = new Thread(() -> {
+            try {
+                serve();
+            } catch (IOException e) {
+                System.out.println("Server error: " + e.getMessage());
+            }
+        }, "terminal-host");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Runs the selector loop until the host is closed.
+     */
+    void serve() throws IOException {
+        var durability = new Thread(this::awaitDurability, "terminal-host-journal");
+        durability.setDaemon(true);
+        durability.start();
+        try {
+            while (running) {
+                selector.select(this::handle);
+                resumeDurable();
+                flushQueued();
+            }
+        } finally {
+            close();
+            for (var key : selector.keys()) {
+                key.channel().close();
+            }
+            selector.close();
+        }
+    }
+
+    /**
+     * Stops the selector loop; open connections are closed when it exits.
+     */
+    @Override
+    public void close() {
+        running = false;
+        synchronized (durabilityLock) {
+            durabilityLock.notifyAll();
+        }
+        selector.wakeup();
+    }
+
+    /**
+     * Runs on the helper thread: waits for the journal to reach each target
+     * the selector asks for, then wakes the selector to send the responses.
+     */
+    private void awaitDurability() {
+        long done = 0;
+        try {
+            while (true) {
+                long target;
+                synchronized (durabilityLock) {
+                    while (running && durabilityTarget <= done) {
+                        durabilityLock.wait();
+                    }
+                    if (!running) {
+                        return;
+                    }
+                    target = durabilityTarget;
+                }
+                bank.awaitDurable(target);
+                done = target;
+                selector.wakeup();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            System.out.println("Server error: " + e.getMessage());
+            close();
+        }
+    }
+
+    private void handle(SelectionKey key) {
+        try {
+            if (key.isAcceptable()) {
+                accept();
+                return;
+            }
+            if (key.isReadable()) {
+                read(key);
+            }
+            if (key.isValid() && key.isWritable()) {
+                // Output drained: catch up on requests that were waiting for room
+                flush(key);
+                if (key.isValid()) {
+                    processFrames((Session) key.attachment());
+                    queueFlush(key);
+                }
+            }
+        } catch (IOException | CancelledKeyException e) {
+            closeSession(key);
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            channel.register(selector, SelectionKey.OP_READ, new Session(takeBuffer(), takeBuffer()));
+        }
+    }
+
+    private void read(SelectionKey key) throws IOException {
+        var session = (Session) key.attachment();
+        if (((SocketChannel) key.channel()).read(session.in) < 0) {
+            closeSession(key);
+            return;
+        }
+        processFrames(session);
+        queueFlush(key);
+    }
+
+    private void queueFlush(SelectionKey key) {
+        var session = (Session) key.attachment();
+        if (!session.flushQueued) {
+            session.flushQueued = true;
+            flushQueue.add(key);
+        }
+    }
+
+    /**
+     * Sends the responses of this select pass whose changes are already
+     * durable. The other connections stop being read and are handed to the
+     * helper thread with one journal target for the whole pass.
+     */
+    private void flushQueued() {
+        long target = 0;
+        for (int i = 0; i < flushQueue.size(); i++) {
+            SelectionKey key = flushQueue.get(i);
+            if (!key.isValid()) {
+                continue; // closed during the pass
+            }
+            var session = (Session) key.attachment();
+            session.flushQueued = false;
+            if (!bank.isDurable(session.awaiting)) {
+                key.interestOps(0);
+                awaitingQueue.add(key);
+                target = Math.max(target, session.awaiting);
+                continue;
+            }
+            session.awaiting = 0;
+            try {
+                flush(key);
+            } catch (IOException | CancelledKeyException e) {
+                closeSession(key);
+            }
+        }
+        flushQueue.clear();
+
+        if (target > 0) {
+            synchronized (durabilityLock) {
+                durabilityTarget = Math.max(durabilityTarget, target);
+                durabilityLock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Sends the responses that have become durable since the last pass and
+     * goes back to reading those connections, starting with any requests
+     * already waiting in their input buffers.
+     */
+    private void resumeDurable() {
+        int waiting = 0;
+        for (int i = 0; i < awaitingQueue.size(); i++) {
+            SelectionKey key = awaitingQueue.get(i);
+            if (!key.isValid()) {
+                continue;
+            }
+            var session = (Session) key.attachment();
+            if (!bank.isDurable(session.awaiting)) {
+                awaitingQueue.set(waiting++, key);
+                continue;
+            }
+            session.awaiting = 0;
+            try {
+                flush(key);
+                if (key.isValid()) {
+                    processFrames(session);
+                    queueFlush(key);
+                }
+            } catch (IOException | CancelledKeyException e) {
+                closeSession(key);
+            }
+        }
+        awaitingQueue.subList(waiting, awaitingQueue.size()).clear();
+    }
+
+    private void flush(SelectionKey key) throws IOException {
+        var session = (Session) key.attachment();
+        var out = session.out;
+        out.flip();
+        ((SocketChannel) key.channel()).write(out);
+        out.compact();
+        if (session.closing && out.position() == 0) {
+            closeSession(key);
+            return;
+        }
+
+        // Stop reading while responses are backed up
+        key.interestOps(out.position() > 0 ? SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+    }
+
+    /**
+     * Handles every complete frame sitting in the input buffer, as long as
+     * there is room for the largest possible response.
+     */
+    private void processFrames(Session session) throws IOException {
+        var in = session.in;
+        in.flip();
+        try {
+            while (!session.closing && in.remaining() >= TerminalProtocol.LENGTH_FIELD) {
+                int length = in.getInt(in.position());
+                if (length <= 0 || length > TerminalProtocol.MAX_REQUEST) {
+                    throw new IOException("Bad frame length " + length);
+                }
+                if (in.remaining() < TerminalProtocol.LENGTH_FIELD + length
+                        || session.out.remaining() < TerminalProtocol.MAX_RESPONSE) {
+                    break;
+                }
+
+                int frameEnd = in.position() + TerminalProtocol.LENGTH_FIELD + length;
+                int limit = in.limit();
+                in.position(in.position() + TerminalProtocol.LENGTH_FIELD).limit(frameEnd);
+                handleRequest(session, in);
+                in.limit(limit).position(frameEnd);
+            }
+        } finally {
+            in.compact();
+        }
+    }
+
+    private void handleRequest(Session session, ByteBuffer in) {
+        var out = session.out;
+        int start = out.position();
+        byte opcode = in.get();
+
+        byte status;
+        try {
+            out.position(start + TerminalProtocol.LENGTH_FIELD + TerminalProtocol.RESPONSE_HEADER);
+            status = execute(session, opcode, in, out);
+        } catch (BufferUnderflowException e) {
+            out.position(start + TerminalProtocol.LENGTH_FIELD + TerminalProtocol.RESPONSE_HEADER);
+            status = TerminalProtocol.BAD_REQUEST;
+        } catch (RuntimeException e) {
+            System.out.println("Terminal request failed: " + e.getMessage());
+            out.position(start + TerminalProtocol.LENGTH_FIELD + TerminalProtocol.RESPONSE_HEADER);
+            status = TerminalProtocol.SERVER_ERROR;
+            session.closing = true;
+        }
+
+        Account account = session.account;
+        out.putInt(start, out.position() - start - TerminalProtocol.LENGTH_FIELD)
+                .put(start + 4, opcode)
+                .put(start + 5, status)
+                .putLong(start + 6, account != null ? account.getBalance() : 0);
+    }
+
+    private byte execute(Session session, byte opcode, ByteBuffer in, ByteBuffer out) {
+        if (opcode == TerminalProtocol.LOGIN) {
+            String accountNumber = TerminalProtocol.readText(in);
+            String pin = TerminalProtocol.readText(in);
+            session.account = bank.authenticateUser(accountNumber, pin);
+            session.lastPayee = null;
+            return session.account != null ? TerminalProtocol.OK : TerminalProtocol.AUTH_FAILED;
+        }
+
+        Account account = session.account;
+        if (account == null) {
+            return TerminalProtocol.NOT_LOGGED_IN;
+        }
+
+        try {
+            switch (opcode) {
+                case TerminalProtocol.BALANCE -> {
+                    return TerminalProtocol.OK;
+                }
+                case TerminalProtocol.DEPOSIT -> {
+                    journaled(session, account.depositAt(in.getLong(), new Date()));
+                    return TerminalProtocol.OK;
+                }
+                case TerminalProtocol.WITHDRAW -> {
+                    return debited(session, account.tryWithdrawAt(in.getLong(), new Date(), debit));
+                }
+                case TerminalProtocol.TRANSFER -> {
+                    Account payee = resolvePayee(session, in);
+                    long amount = in.getLong();
+                    if (payee == null) {
+                        return TerminalProtocol.UNKNOWN_ACCOUNT;
+                    }
+                    if (payee == account) {
+                        return TerminalProtocol.BAD_REQUEST;
+                    }
+                    return debited(session, account.tryTransferAt(payee, amount, new Date(), debit));
+                }
+                case TerminalProtocol.HISTORY -> {
+                    writeHistory(account, Math.min(in.getInt(), TerminalProtocol.MAX_HISTORY_RECORDS), out);
+                    return TerminalProtocol.OK;
+                }
+                case TerminalProtocol.CHANGE_PIN -> {
+                    String oldPin = TerminalProtocol.readText(in);
+                    String newPin = TerminalProtocol.readText(in);
+                    long sequence = account.changePinAt(oldPin, newPin);
+                    if (sequence < 0) {
+                        return TerminalProtocol.AUTH_FAILED;
+                    }
+                    journaled(session, sequence);
+                    return TerminalProtocol.OK;
+                }
+                case TerminalProtocol.LOGOUT -> {
+                    session.account = null;
+                    session.lastPayee = null;
+                    return TerminalProtocol.OK;
+                }
+                default -> {
+                    return TerminalProtocol.BAD_REQUEST;
+                }
+            }
+        } catch (IllegalArgumentException | ArithmeticException e) {
+            return TerminalProtocol.INVALID_AMOUNT;
+        }
+    }
+
+    private static void journaled(Session session, long sequence) {
+        session.awaiting = Math.max(session.awaiting, sequence);
+    }
+
+    private static byte debited(Session session, DebitResult result) {
+        return switch (result.getStatus()) {
+            case APPROVED -> {
+                journaled(session, result.getJournalSequence());
+                yield TerminalProtocol.OK;
+            }
+            case INSUFFICIENT_FUNDS -> TerminalProtocol.INSUFFICIENT_FUNDS;
+            default -> TerminalProtocol.INVALID_AMOUNT;
+        };
+    }
+
+    /**
+     * Finds the destination of a transfer. The account number is compared
+     * in place against the last payee, so repeat transfers skip decoding it.
+     * A length running past the frame is a BAD_REQUEST like any short read.
+     */
+    private Account resolvePayee(Session session, ByteBuffer in) {
+        int length = in.get() & 0xFF;
+        if (length > in.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        int offset = in.position();
+        in.position(offset + length);
+
+        Account payee = session.lastPayee;
+        if (payee != null && TerminalProtocol.textEquals(in, offset, length, payee.getAccountNumber())) {
+            return payee;
+        }
+
+        var digits = new byte[length];
+        in.get(offset, digits);
+        payee = bank.getAccount(new String(digits, StandardCharsets.US_ASCII));
+        session.lastPayee = payee;
+        return payee;
+    }
+
+    private void writeHistory(Account account, int maxEntries, ByteBuffer out) {
+        var history = account.getRecentTransactions(Math.max(0, maxEntries));
+
+        out.putInt(history.size());
+        for (Transaction t : history) {
+            out.put((byte) t.getType().ordinal())
+                    .putLong(t.getAmount())
+                    .putLong(t.getTimestampMillis());
+        }
+    }
+
+    private ByteBuffer takeBuffer() {
+        ByteBuffer buffer = bufferPool.pollFirst();
+        return buffer != null ? buffer : ByteBuffer.allocateDirect(BUFFER_SIZE);
+    }
+
+    private void closeSession(SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException ignored) {
+            // Already gone
+        }
+        if (key.attachment() instanceof Session session) {
+            key.attach(null);
+            bufferPool.addFirst(session.in.clear());
+            bufferPool.addFirst(session.out.clear());
+        }
+    }
+}
+
+/**
+ * Blocking client for the binary terminal protocol.
+ *
+ * Used by the benchmark driver to simulate terminals; each call sends one
+ * request and waits for its response.
+ */
+final class TerminalClient implements AutoCloseable {
+    private final SocketChannel channel;
+    private final ByteBuffer out = ByteBuffer.allocateDirect(TerminalProtocol.MAX_REQUEST);
+    private final ByteBuffer in = ByteBuffer.allocateDirect(2 * TerminalProtocol.MAX_RESPONSE);
+    private long lastBalance;
+
+    /**
+     * Connects to a terminal host on the loopback interface.
+     */
+    TerminalClient(int port) throws IOException {
+        this.channel = SocketChannel.open(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+    }
+
+    /**
+     * Gets the balance reported by the last response, in paise.
+     */
+    long getLastBalance() {
+        return lastBalance;
+    }
+
+    byte login(String accountNumber, String pin) throws IOException {
+        TerminalProtocol.writeLogin(out, accountNumber, pin);
+        return call();
+    }
+
+    byte balance() throws IOException {
+        TerminalProtocol.writeRequest(out, TerminalProtocol.BALANCE);
+        return call();
+    }
+
+    byte deposit(long amount) throws IOException {
+        TerminalProtocol.writeAmountRequest(out, TerminalProtocol.DEPOSIT, amount);
+        return call();
+    }
+
+    byte withdraw(long amount) throws IOException {
+        TerminalProtocol.writeAmountRequest(out, TerminalProtocol.WITHDRAW, amount);
+        return call();
+    }
+
+    byte transfer(String destinationAccountNumber, long amount) throws IOException {
+        TerminalProtocol.writeTransfer(out, destinationAccountNumber, amount);
+        return call();
+    }
+
+    byte history(int maxEntries) throws IOException {
+        TerminalProtocol.writeHistoryRequest(out, maxEntries);
+        return call();
+    }
+
+    byte changePin(String oldPin, String newPin) throws IOException {
+        TerminalProtocol.writeChangePin(out, oldPin, newPin);
+        return call();
+    }
+
+    byte logout() throws IOException {
+        TerminalProtocol.writeRequest(out, TerminalProtocol.LOGOUT);
+        return call();
+    }
+
+    private byte call() throws IOException {
+        out.flip();
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+        out.clear();
+
+        fill(TerminalProtocol.LENGTH_FIELD);
+        int length = in.getInt(0);
+        fill(TerminalProtocol.LENGTH_FIELD + length);
+
+        byte status = in.get(5);
+        lastBalance = in.getLong(6);
+        in.clear();
+        return status;
+    }
+
+    private void fill(int bytes) throws IOException {
+        while (in.position() < bytes) {
+            if (channel.read(in) < 0) {
+                throw new EOFException("Host closed the connection");
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
+
+/**
+ * A demonstration class that shows how to use the ATM system with sample inputs.
+ * This class provides an alternative to the interactive ATM that doesn't require user input.
+ *
+ * Created this for quick demos and testing during development.
+ * It's a simple way to showcase features without having to go through
+ * the full GUI or console interface each time.
+ *
+ * @author Rahul Verma
+ * @version 1.3
+ * @since 15-Apr-2025
+ */
+class DemoATM {
+    public static void main(String[] args) {
+        System.out.println("""
+            SBI ATM Simulation System - Demo Mode
+            ===================================
+            """);
+
+        // Create bank and account objects
+        var bank = new Bank("State Bank of India");
+
+        // Get one of the test accounts
+        var account = bank.getAccount("123456");
+
+        if (account != null) {
+            System.out.println("""
+                
+                Account Information:
+                Account Number: %s
+                Account Holder: %s
+                Initial Balance: %s
+                
+                Performing transactions...
+                """.formatted(
+                    account.getAccountNumber(),
+                    account.getAccountHolder(),
+                    Money.format(account.getBalance())
+            ));
+
+            try {
+                // Perform a deposit
+                long depositAmount = Money.ofRupees(500);
+                account.deposit(depositAmount);
+                System.out.println("Deposited: " + Money.format(depositAmount));
+                System.out.println("New Balance: " + Money.format(account.getBalance()));
+
+                // Perform a withdrawal
+                long withdrawalAmount = Money.ofRupees(200);
+                account.withdraw(withdrawalAmount);
+                System.out.println("\nWithdrawn: " + Money.format(withdrawalAmount));
+                System.out.println("New Balance: " + Money.format(account.getBalance()));
+
+                // Perform a transfer
+                Account destinationAccount = bank.getAccount("234567");
+                long transferAmount = Money.ofRupees(300);
+
+                if (destinationAccount != null) {
+                    long initialDestBalance = destinationAccount.getBalance();
+
+                    account.transfer(destinationAccount, transferAmount);
+
+                    System.out.println("""
+                        
+                        Transferred: %s
+                        From Account: %s (%s)
+                        To Account: %s (%s)
+                        New Source Balance: %s
+                        New Destination Balance: %s
+                        """.formatted(
+                            Money.format(transferAmount),
+                            account.getAccountNumber(),
+                            account.getAccountHolder(),
+                            destinationAccount.getAccountNumber(),
+                            destinationAccount.getAccountHolder(),
+                            Money.format(account.getBalance()),
+                            Money.format(destinationAccount.getBalance())
+                    ));
+                }
+
+                // Show transaction history
+                System.out.println("""
+                    
+                    Transaction History:
+                    ====================
+                    """);
+
+                // Using stream and lambdas to print the newest page of history
+                account.getHistoryPage(10).transactions()
+                        .forEach(transaction ->
+                                System.out.println(Timestamps.format(transaction.getTimestampMillis()) + " | " +
+                                        transaction.getType() + " | " +
+                                        Money.format(transaction.getAmount()) + " | " +
+                                        transaction.getDescription())
+                        );
+
+                // Show transaction statistics using the new methods
+                System.out.println("""
+                    
+                    Transaction Statistics:
+                    ====================
+                    """);
+
+                System.out.println("Total deposits: " +
+                        Money.format(account.getTotalForTransactionType(TransactionType.DEPOSIT)));
+                System.out.println("Total withdrawals: " +
+                        Money.format(account.getTotalForTransactionType(TransactionType.WITHDRAWAL)));
+                System.out.println("Total transfers: " +
+                        Money.format(account.getTotalForTransactionType(TransactionType.TRANSFER)));
+
+            } catch (InsufficientFundsException e) {
+                System.out.println("Error: " + e.getMessage());
+            } catch (Exception e) {
+                System.out.println("An error occurred: " + e.getMessage());
+            }
+        } else {
+            System.out.println("Test account not found!");
+        }
+
+        System.out.println("""
+            
+            Demo completed. Run 'java ModernATMSystem' for the full interactive SBI ATM experience.
+            """);
+    }
+}
+
+/**
+ * A Swing-based GUI for the ATM Simulation System
+ *
+ * This was challenging to implement on Replit since JavaFX wasn't
+ * working well, but Swing still does the job nicely. I've tried to
+ * make it look as modern as possible despite Swing's limitations.
+ *
+ * @author Rahul Verma
+ * @version 2.1
+ */
+class ATMSwingApp extends JFrame {
+    private static final int HISTORY_PAGE_SIZE = 50;
+
+    // Model components
+    private final Bank bank;
+    private Account currentAccount;
+
+    // UI Components
+    private JPanel loginPanel;
+    private JPanel mainMenuPanel;
+    private JPanel balancePanel;
+    private JPanel depositPanel;
+    private JPanel withdrawPanel;
+    private JPanel transferPanel;
+    private JPanel historyPanel;
+    private JPanel statementPanel;
+    private JPanel changePinPanel;
+
+    // Login components
+    private JTextField accountField;
+    private JPasswordField pinField;
+    private JLabel statusLabel;
+
+    // Counter for login attempts (using Atomic classes for thread safety)
+    private final AtomicInteger loginAttempts = new AtomicInteger(0);
+    private static final int MAX_LOGIN_ATTEMPTS = 3;
+
+    /**
+     * Constructor initializes the ATM application
+     */
+    public ATMSwingApp() {
+        this(new Bank("State Bank of India"));
+    }
+
+    /**
+     * Constructs the GUI against the given bank.
+     */
+    public ATMSwingApp(Bank bank) {
+        this.bank = bank;
+
+        // Set up the JFrame
+        setTitle("SBI ATM Simulation System");
+        setSize(500, 600);
+        setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        setLocationRelativeTo(null);
+
+        // Initialize panels
+        createLoginPanel();
+
+        // Display the login panel
+        getContentPane().add(loginPanel);
+    }
+
+    /**
+     * Creates the login panel
+     */
+    private void createLoginPanel() {
+        loginPanel = new JPanel();
+        loginPanel.setLayout(new BoxLayout(loginPanel, BoxLayout.Y_AXIS));
+        loginPanel.setBorder(BorderFactory.createEmptyBorder(20, 20, 20, 20));
+
+        // Header
+        JLabel headerLabel = new JLabel("Welcome to " + bank.getName());
+        headerLabel.setFont(new Font("Arial", Font.BOLD, 24));
+        headerLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
+
+        // Account field
+        JPanel accountPanel = new JPanel();
+        accountPanel.setLayout(new FlowLayout(FlowLayout.CENTER));
+        JLabel accountLabel = new JLabel("Account Number: ");
+        accountField = new JTextField(10);
+        accountPanel.add(accountLabel);
+        accountPanel.add(accountField);
+
+        // PIN field
+        JPanel pinPanel = new JPanel();
+        pinPanel.setLayout(new FlowLayout(FlowLayout.CENTER));
+        JLabel pinLabel = new JLabel("PIN: ");
+        pinField = new JPasswordField(10);
+        pinPanel.add(pinLabel);
+        pinPanel.add(pinField);
+
+        // Login button
+        JButton loginButton = new JButton("Login");
+        loginButton.setAlignmentX(Component.CENTER_ALIGNMENT);
+
+        // Status label for error messages
+        statusLabel = new JLabel(" ");
+        statusLabel.setForeground(Color.RED);
+        statusLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
+
+        // Test accounts info
+        JTextArea testAccountsText = new JTextArea("""
+            Test Accounts:
+            Account: 123456, PIN: 1234
+            Account: 234567, PIN: 2345
+            Account: 345678, PIN: 3456
+            Account: 456789, PIN: 4567
+            """);
+        testAccountsText.setEditable(false);
+        testAccountsText.setBackground(null);
+        testAccountsText.setFont(new Font("Arial", Font.PLAIN, 12));
+        testAccountsText.setAlignmentX(Component.CENTER_ALIGNMENT);
+
+        // Add components to the panel
+        loginPanel.add(Box.createVerticalStrut(30));
+        loginPanel.add(headerLabel);
+        loginPanel.add(Box.createVerticalStrut(40));
+        loginPanel.add(accountPanel);
+        loginPanel.add(Box.createVerticalStrut(10));
+        loginPanel.add(pinPanel);
+        loginPanel.add(Box.createVerticalStrut(20));
+        loginPanel.add(loginButton);
+        loginPanel.add(Box.createVerticalStrut(10));
+        loginPanel.add(statusLabel);
+        loginPanel.add(Box.createVerticalStrut(40));
+        loginPanel.add(testAccountsText);
+
+        // Login button action
+        loginButton.addActionListener(e -> {
+            String accountNumber = accountField.getText();
+            String pin = new String(pinField.getPassword());
+
+            // Check if max attempts reached
+            if (loginAttempts.get() >= MAX_LOGIN_ATTEMPTS) {
+                statusLabel.setText("Too many failed attempts. Please try again later.");
+                loginButton.setEnabled(false);
+
+                // Re-enable after a delay (in a real app, we might use more sophisticated logic)
+                Timer timer = new Timer(10000, event -> {
+                    loginButton.setEnabled(true);
+                    loginAttempts.set(0);
+                    statusLabel.setText("You can try again now.");
+                });
+                timer.setRepeats(false);
+                timer.start();
+                return;
+            }
+
+            currentAccount = bank.authenticateUser(accountNumber, pin);
+
+            if (currentAccount != null) {
+                createMainMenuPanel();
+                getContentPane().removeAll();
+                getContentPane().add(mainMenuPanel);
+                revalidate();
+                repaint();
+                statusLabel.setText(" ");
+                // Reset login attempts on successful login
+                loginAttempts.set(0);
+            } else {
+                loginAttempts.incrementAndGet();
+                int remainingAttempts = MAX_LOGIN_ATTEMPTS - loginAttempts.get();
+                statusLabel.setText("Invalid account number or PIN. " +
+                        (remainingAttempts > 0 ? remainingAttempts + " attempts remaining." : ""));
+            }
+        });
+    }
+
+    /**
+     * Creates the main menu panel
+     */
+    private void createMainMenuPanel() {
+        mainMenuPanel = new JPanel();
+        mainMenuPanel.setLayout(new BoxLayout(mainMenuPanel, BoxLayout.Y_AXIS));
+        mainMenuPanel.setBorder(BorderFactory.createEmptyBorder(20, 20, 20, 20));
+
+        // Header
+        JLabel headerLabel = new JLabel("Main Menu");
+        headerLabel.setFont(new Font("Arial", Font.BOLD, 24));
+        headerLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
+
+        // Welcome message
+        JLabel welcomeLabel = new JLabel("Welcome, " + currentAccount.getAccountHolder() + "!");
+        welcomeLabel.setFont(new Font("Arial", Font.PLAIN, 16));
+        welcomeLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
+
+        // Account balance overview
+        JLabel balanceLabel = new JLabel("Current Balance: " +
+                Money.format(currentAccount.getBalance()));
+        balanceLabel.setFont(new Font("Arial", Font.BOLD, 14));
+        balanceLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
+
+        // Buttons
+        Dimension buttonSize = new Dimension(200, 30);
+
+        JButton checkBalanceButton = new JButton("Check Balance");
+        checkBalanceButton.setMaximumSize(buttonSize);
+        checkBalanceButton.setAlignmentX(Component.CENTER_ALIGNMENT);
+
+        JButton depositButton = new JButton("Deposit Funds");
+        depositButton.setMaximumSize(buttonSize);
+        depositButton.setAlignmentX(Component.CENTER_ALIGNMENT);
+
+        JButton withdrawButton = new JButton("Withdraw Funds");
+        withdrawButton.setMaximumSize(buttonSize);
+        withdrawButton.setAlignmentX(Component.CENTER_ALIGNMENT);
+
+        JButton transferButton = new JButton("Transfer Funds");
+        transferButton.setMaximumSize(buttonSize);
+        transferButton.setAlignmentX(Component.CENTER_ALIGNMENT);
+
+        JButton historyButton = new JButton("Transaction History");
+        historyButton.setMaximumSize(buttonSize);
+        historyButton.setAlignmentX(Component.CENTER_ALIGNMENT);
+
+        JButton statementButton = new JButton("Statement");
+        statementButton.setMaximumSize(buttonSize);
+        statementButton.setAlignmentX(Component.CENTER_ALIGNMENT);
+
+        JButton changePinButton = new JButton("Change PIN");
+        changePinButton.setMaximumSize(buttonSize);
+        changePinButton.setAlignmentX(Component.CENTER_ALIGNMENT);
+
+        JButton logoutButton = new JButton("Logout");
+        logoutButton.setMaximumSize(buttonSize);
+        logoutButton.setAlignmentX(Component.CENTER_ALIGNMENT);
+
+        // Add components to the panel
+        mainMenuPanel.add(Box.createVerticalStrut(20));
+        mainMenuPanel.add(headerLabel);
+        mainMenuPanel.add(Box.createVerticalStrut(10));
+        mainMenuPanel.add(welcomeLabel);
+        mainMenuPanel.add(Box.createVerticalStrut(10));
+        mainMenuPanel.add(balanceLabel);
+        mainMenuPanel.add(Box.createVerticalStrut(30));
+        mainMenuPanel.add(checkBalanceButton);
+        mainMenuPanel.add(Box.createVerticalStrut(10));
+        mainMenuPanel.add(depositButton);
+        mainMenuPanel.add(Box.createVerticalStrut(10));
+        mainMenuPanel.add(withdrawButton);
+        mainMenuPanel.add(Box.createVerticalStrut(10));
+        mainMenuPanel.add(transferButton);
+        mainMenuPanel.add(Box.createVerticalStrut(10));
+        mainMenuPanel.add(historyButton);
+        mainMenuPanel.add(Box.createVerticalStrut(10));
+        mainMenuPanel.add(statementButton);
+        mainMenuPanel.add(Box.createVerticalStrut(10));
+        mainMenuPanel.add(changePinButton);
+        mainMenuPanel.add(Box.createVerticalStrut(30));
+        mainMenuPanel.add(logoutButton);
+
+        // Button actions
+        checkBalanceButton.addActionListener(e -> {
+            createBalancePanel();
+            showPanel(balancePanel);
+        });
+
+        depositButton.addActionListener(e -> {
+            createDepositPanel();
+            showPanel(depositPanel);
+        });
+
+        withdrawButton.addActionListener(e -> {
+            createWithdrawPanel();
+            showPanel(withdrawPanel);
+        });
+
+        transferButton.addActionListener(e -> {
+            createTransferPanel();
+            showPanel(transferPanel);
+        });
+
+        historyButton.addActionListener(e -> {
+            createHistoryPanel();
+            showPanel(historyPanel);
+        });
+
+        statementButton.addActionListener(e -> {
+            createStatementPanel();
+            showPanel(statementPanel);
+        });
+
+        changePinButton.addActionListener(e -> {
+            createChangePinPanel();
+            showPanel(changePinPanel);
+        });
+
+        logoutButton.addActionListener(e -> {
+            currentAccount = null;
+            accountField.setText("");
+            pinField.setText("");
+            showPanel(loginPanel);
+        });
+    }
+
+    /**
+     * Creates the balance panel
+     */
+    private void createBalancePanel() {
+        balancePanel = new JPanel();
+        balancePanel.setLayout(new BoxLayout(balancePanel, BoxLayout.Y_AXIS));
+        balancePanel.setBorder(BorderFactory.createEmptyBorder(20, 20, 20, 20));
+
+        // Header
+        JLabel headerLabel = new JLabel("Account Balance");
+        headerLabel.setFont(new Font("Arial", Font.BOLD, 24));
+        headerLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
+
+        // Account info
+        JPanel infoPanel = new JPanel();
+        infoPanel.setLayout(new GridLayout(3, 1, 0, 10));
+        infoPanel.setBorder(BorderFactory.createEmptyBorder(20, 20, 20, 20));
+
+        JLabel accountNumberLabel = new JLabel("Account Number: " + currentAccount.getAccountNumber());
+        JLabel accountHolderLabel = new JLabel("Account Holder: " + currentAccount.getAccountHolder());
+        JLabel balanceLabel = new JLabel("Current Balance: " +
+                Money.format(currentAccount.getBalance()));
+        balanceLabel.setFont(new Font("Arial", Font.BOLD, 16));
+
+        infoPanel.add(accountNumberLabel);
+        infoPanel.add(accountHolderLabel);
+        infoPanel.add(balanceLabel);
+
+        // Back button
+        JButton backButton = new JButton("Back to Main Menu");
+        backButton.setAlignmentX(Component.CENTER_ALIGNMENT);
+
+        // Add components to the panel
+        balancePanel.add(headerLabel);
+        balancePanel.add(Box.createVerticalStrut(20));
+        balancePanel.add(infoPanel);
+        balancePanel.add(Box.createVerticalStrut(40));
+        balancePanel.add(backButton);
+
+        // Back button action
+        backButton.addActionListener(e -> showPanel(mainMenuPanel));
+    }
+
+    /**
+     * Creates the deposit panel
+     */
+    private void createDepositPanel() {
+        depositPanel = new JPanel();
+        depositPanel.setLayout(new BoxLayout(depositPanel, BoxLayout.Y_AXIS));
+        depositPanel.setBorder(BorderFactory.createEmptyBorder(20, 20, 20, 20));
+
+        // Header
+        JLabel headerLabel = new JLabel("Deposit Funds");
+        headerLabel.setFont(new Font("Arial", Font.BOLD, 24));
+        headerLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
+
+        // Current balance
+        JLabel balanceLabel = new JLabel("Current Balance: " +
+                Money.format(currentAccount.getBalance()));
+        balanceLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
+
+        // Amount input
+        JPanel amountPanel = new JPanel();
+        amountPanel.setLayout(new FlowLayout(FlowLayout.CENTER));
+        JLabel amountLabel = new JLabel("Enter amount to deposit: ₹");
+        JTextField amountField = new JTextField(10);
+        amountPanel.add(amountLabel);
+        amountPanel.add(amountField);
+
+        // Deposit button
+        JButton depositButton = new JButton("Deposit");
+        depositButton.setAlignmentX(Component.CENTER_ALIGNMENT);
+
+        // Status label
+        JLabel statusLabel = new JLabel(" ");
+        statusLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
+
+        // Back button
+        JButton backButton = new JButton("Back to Main Menu");
+        backButton.setAlignmentX(Component.CENTER_ALIGNMENT);
+
+        // Add components to the panel
+        depositPanel.add(headerLabel);
+        depositPanel.add(Box.createVerticalStrut(20));
+        depositPanel.add(balanceLabel);
+        depositPanel.add(Box.createVerticalStrut(30));
+        depositPanel.add(amountPanel);
+        depositPanel.add(Box.createVerticalStrut(20));
+        depositPanel.add(depositButton);
+        depositPanel.add(Box.createVerticalStrut(10));
+        depositPanel.add(statusLabel);
+        depositPanel.add(Box.createVerticalStrut(30));
+        depositPanel.add(backButton);
+
+        // Deposit button action
+        depositButton.addActionListener(e -> {
+            try {
+                long amount = Money.parse(amountField.getText());
+
+                if (amount <= 0) {
+                    statusLabel.setForeground(Color.RED);
+                    statusLabel.setText("Invalid amount. Please enter a positive number.");
+                    return;
+                }
+
+                boolean success = currentAccount.deposit(amount);
+
+                if (success) {
+                    statusLabel.setForeground(Color.GREEN.darker());
+                    statusLabel.setText("Deposit successful! New balance: " +
+                            Money.format(currentAccount.getBalance()));
+                    balanceLabel.setText("Current Balance: " +
+                            Money.format(currentAccount.getBalance()));
+                    amountField.setText("");
+                } else {
+                    statusLabel.setForeground(Color.RED);
+                    statusLabel.setText("Deposit failed. Please try again.");
+                }
+            } catch (NumberFormatException ex) {
+                statusLabel.setForeground(Color.RED);
+                statusLabel.setText("Invalid input. Please enter a valid amount.");
+            } catch (Exception ex) {
+                statusLabel.setForeground(Color.RED);
+                statusLabel.setText("Error: " + ex.getMessage());
+            }
+        });
+
+        // Back button action
+        backButton.addActionListener(e -> showPanel(mainMenuPanel));
+    }
+
+    /**
+     * Creates the withdraw panel
+     */
+    private void createWithdrawPanel() {
+        withdrawPanel = new JPanel();
+        withdrawPanel.setLayout(new BoxLayout(withdrawPanel, BoxLayout.Y_AXIS));
+        withdrawPanel.setBorder(BorderFactory.createEmptyBorder(20, 20, 20, 20));
+
+        // Header
+        JLabel headerLabel = new JLabel("Withdraw Funds");
+        headerLabel.setFont(new Font("Arial", Font.BOLD, 24));
+        headerLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
+
+        // Current balance
+        JLabel balanceLabel = new JLabel("Current Balance: " +
+                Money.format(currentAccount.getBalance()));
+        balanceLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
+
+        // Amount input
+        JPanel amountPanel = new JPanel();
+        amountPanel.setLayout(new FlowLayout(FlowLayout.CENTER));
+        JLabel amountLabel = new JLabel("Enter amount to withdraw: ₹");
+        JTextField amountField = new JTextField(10);
+        amountPanel.add(amountLabel);
+        amountPanel.add(amountField);
+
+        // Quick withdrawal buttons
+        JPanel quickWithdrawPanel = new JPanel();
+        quickWithdrawPanel.setLayout(new FlowLayout(FlowLayout.CENTER));
+        JButton btn20 = new JButton("₹20");
+        JButton btn50 = new JButton("₹50");
+        JButton btn100 = new JButton("₹100");
+        JButton btn200 = new JButton("₹200");
+
+        quickWithdrawPanel.add(btn20);
+        quickWithdrawPanel.add(btn50);
+        quickWithdrawPanel.add(btn100);
+        quickWithdrawPanel.add(btn200);
+
+        // Withdraw button
+        JButton withdrawButton = new JButton("Withdraw");
+        withdrawButton.setAlignmentX(Component.CENTER_ALIGNMENT);
+
+        // Status label
+        JLabel statusLabel = new JLabel(" ");
+        statusLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
+
+        // Back button
+        JButton backButton = new JButton("Back to Main Menu");
+        backButton.setAlignmentX(Component.CENTER_ALIGNMENT);
+
+        // Add components to the panel
+        withdrawPanel.add(headerLabel);
+        withdrawPanel.add(Box.createVerticalStrut(20));
+        withdrawPanel.add(balanceLabel);
+        withdrawPanel.add(Box.createVerticalStrut(20));
+        withdrawPanel.add(amountPanel);
+        withdrawPanel.add(Box.createVerticalStrut(10));
+        withdrawPanel.add(new JLabel("Quick Withdraw:"));
+        withdrawPanel.add(quickWithdrawPanel);
+        withdrawPanel.add(Box.createVerticalStrut(20));
+        withdrawPanel.add(withdrawButton);
+        withdrawPanel.add(Box.createVerticalStrut(10));
+        withdrawPanel.add(statusLabel);
+        withdrawPanel.add(Box.createVerticalStrut(30));
+        withdrawPanel.add(backButton);
+
+        // Quick withdraw button actions
+        btn20.addActionListener(e -> amountField.setText("20"));
+        btn50.addActionListener(e -> amountField.setText("50"));
+        btn100.addActionListener(e -> amountField.setText("100"));
+        btn200.addActionListener(e -> amountField.setText("200"));
+
+        // Withdraw button action
+        withdrawButton.addActionListener(e -> {
+            try {
+                long amount = Money.parse(amountField.getText());
+
+                if (amount <= 0) {
+                    statusLabel.setForeground(Color.RED);
+                    statusLabel.setText("Invalid amount. Please enter a positive number.");
+                    return;
+                }
+
+                boolean success = currentAccount.withdraw(amount);
+
+                if (success) {
+                    statusLabel.setForeground(Color.GREEN.darker());
+                    statusLabel.setText("Withdrawal successful! New balance: " +
+                            Money.format(currentAccount.getBalance()));
+                    balanceLabel.setText("Current Balance: " +
+                            Money.format(currentAccount.getBalance()));
+                    amountField.setText("");
+                } else {
+                    statusLabel.setForeground(Color.RED);
+                    statusLabel.setText("Withdrawal failed. Please try again.");
+                }
+            } catch (NumberFormatException ex) {
+                statusLabel.setForeground(Color.RED);
+                statusLabel.setText("Invalid input. Please enter a valid amount.");
+            } catch (InsufficientFundsException ex) {
+                statusLabel.setForeground(Color.RED);
+                statusLabel.setText("Error: " + ex.getMessage());
+            } catch (Exception ex) {
+                statusLabel.setForeground(Color.RED);
+                statusLabel.setText("Error: " + ex.getMessage());
+            }
+        });
+
+        // Back button action
+        backButton.addActionListener(e -> showPanel(mainMenuPanel));
+    }
+
+    /**
+     * Creates the transfer panel
+     */
+    private void createTransferPanel() {
+        transferPanel = new JPanel();
+        transferPanel.setLayout(new BoxLayout(transferPanel, BoxLayout.Y_AXIS));
+        transferPanel.setBorder(BorderFactory.createEmptyBorder(20, 20, 20, 20));
+
+        // Header
+        JLabel headerLabel = new JLabel("Transfer Funds");
+        headerLabel.setFont(new Font("Arial", Font.BOLD, 24));
+        headerLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
+
+        // Current balance
+        JLabel balanceLabel = new JLabel("Current Balance: " +
+                Money.format(currentAccount.getBalance()));
+        balanceLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
+
+        // Destination account input
+        JPanel destAccountPanel = new JPanel();
+        destAccountPanel.setLayout(new FlowLayout(FlowLayout.CENTER));
+        JLabel destAccountLabel = new JLabel("Destination Account: ");
+        JTextField destAccountField = new JTextField(10);
+        JButton verifyButton = new JButton("Verify");
+        destAccountPanel.add(destAccountLabel);
+        destAccountPanel.add(destAccountField);
+        destAccountPanel.add(verifyButton);
+
+        // Verification result
+        JLabel verificationLabel = new JLabel(" ");
+        verificationLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
+
+        // Amount input
+        JPanel amountPanel = new JPanel();
+        amountPanel.setLayout(new FlowLayout(FlowLayout.CENTER));
+        JLabel amountLabel = new JLabel("Amount to Transfer: ₹");
+        JTextField amountField = new JTextField(10);
+        amountPanel.add(amountLabel);
+        amountPanel.add(amountField);
+
+        // Transfer button
+        JButton transferButton = new JButton("Transfer");
+        transferButton.setAlignmentX(Component.CENTER_ALIGNMENT);
+        transferButton.setEnabled(false); // Disabled until account is verified
+
+        // Status label
+        JLabel statusLabel = new JLabel(" ");
+        statusLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
+
+        // Back button
+        JButton backButton = new JButton("Back to Main Menu");
+        backButton.setAlignmentX(Component.CENTER_ALIGNMENT);
+
+        // Add components to the panel
+        transferPanel.add(headerLabel);
+        transferPanel.add(Box.createVerticalStrut(20));
+        transferPanel.add(balanceLabel);
+        transferPanel.add(Box.createVerticalStrut(20));
+        transferPanel.add(destAccountPanel);
+        transferPanel.add(Box.createVerticalStrut(5));
+        transferPanel.add(verificationLabel);
+        transferPanel.add(Box.createVerticalStrut(10));
+        transferPanel.add(amountPanel);
+        transferPanel.add(Box.createVerticalStrut(20));
+        transferPanel.add(transferButton);
+        transferPanel.add(Box.createVerticalStrut(10));
+        transferPanel.add(statusLabel);
+        transferPanel.add(Box.createVerticalStrut(30));
+        transferPanel.add(backButton);
+
+        // Verify button action
+        verifyButton.addActionListener(e -> {
+            String destinationAccountNumber = destAccountField.getText();
+
+            if (destinationAccountNumber.equals(currentAccount.getAccountNumber())) {
+                verificationLabel.setForeground(Color.RED);
+                verificationLabel.setText("Cannot transfer to the same account");
+                transferButton.setEnabled(false);
+                return;
+            }
+
+            Account destinationAccount = bank.getAccount(destinationAccountNumber);
+
+            if (destinationAccount != null) {
+                verificationLabel.setForeground(Color.GREEN.darker());
+                verificationLabel.setText("Account verified: " + destinationAccount.getAccountHolder());
+                transferButton.setEnabled(true);
+            } else {
+                verificationLabel.setForeground(Color.RED);
+                verificationLabel.setText("Account not found");
+                transferButton.setEnabled(false);
+            }
+        });
+
+        // Transfer button action
+        transferButton.addActionListener(e -> {
+            try {
+                String destinationAccountNumber = destAccountField.getText();
+                Account destinationAccount = bank.getAccount(destinationAccountNumber);
+
+                if (destinationAccount == null) {
+                    statusLabel.setForeground(Color.RED);
+                    statusLabel.setText("Destination account not found");
+                    return;
+                }
+
+                long amount = Money.parse(amountField.getText());
+
+                if (amount <= 0) {
+                    statusLabel.setForeground(Color.RED);
+                    statusLabel.setText("Invalid amount. Please enter a positive number.");
+                    return;
+                }
+
+                boolean success = currentAccount.transfer(destinationAccount, amount);
+
+                if (success) {
+                    statusLabel.setForeground(Color.GREEN.darker());
+                    statusLabel.setText("Transfer successful! New balance: " +
+                            Money.format(currentAccount.getBalance()));
+                    balanceLabel.setText("Current Balance: " +
+                            Money.format(currentAccount.getBalance()));
+                    amountField.setText("");
+                    transferButton.setEnabled(false);
+                    verificationLabel.setText(" ");
+                    destAccountField.setText("");
+                } else {
+                    statusLabel.setForeground(Color.RED);
+                    statusLabel.setText("Transfer failed. Please try again.");
+                }
+            } catch (NumberFormatException ex) {
+                statusLabel.setForeground(Color.RED);
+                statusLabel.setText("Invalid input. Please enter a valid amount.");
+            } catch (InsufficientFundsException ex) {
+                statusLabel.setForeground(Color.RED);
+                statusLabel.setText("Error: " + ex.getMessage());
+            } catch (Exception ex) {
+                statusLabel.setForeground(Color.RED);
+                statusLabel.setText("Error: " + ex.getMessage());
+            }
+        });
+
+        // Back button action
+        backButton.addActionListener(e -> showPanel(mainMenuPanel));
+    }
+
+    /**
+     * Creates the statement panel: the mini-statement, or every
+     * transaction between two dates
+     */
+    private void createStatementPanel() {
+        statementPanel = new JPanel();
+        statementPanel.setLayout(new BorderLayout(10, 10));
+        statementPanel.setBorder(BorderFactory.createEmptyBorder(20, 20, 20, 20));
+
+        // Header
+        JLabel headerLabel = new JLabel("Statement", JLabel.CENTER);
+        headerLabel.setFont(new Font("Arial", Font.BOLD, 24));
+
+        // Date range controls
+        String today = LocalDate.now().toString();
+        JTextField fromField = new JTextField(today, 8);
+        JTextField toField = new JTextField(today, 8);
+        JButton miniButton = new JButton("Mini Statement");
+        JButton rangeButton = new JButton("Show Range");
+        JPanel controlsPanel = new JPanel(new FlowLayout(FlowLayout.CENTER, 5, 0));
+        controlsPanel.add(miniButton);
+        controlsPanel.add(new JLabel("From:"));
+        controlsPanel.add(fromField);
+        controlsPanel.add(new JLabel("To:"));
+        controlsPanel.add(toField);
+        controlsPanel.add(rangeButton);
+
+        JPanel northPanel = new JPanel(new BorderLayout(5, 10));
+        northPanel.add(headerLabel, BorderLayout.NORTH);
+        northPanel.add(controlsPanel, BorderLayout.SOUTH);
+
+        // Statement table, oldest first like a printed statement
+        String[] columnNames = {"Date & Time", "Type", "Amount", "Description"};
+        var model = new DefaultTableModel(columnNames, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        JTable table = new JTable(model);
+        table.setPreferredScrollableViewportSize(new Dimension(450, 300));
+        table.setFillsViewportHeight(true);
+        table.getColumnModel().getColumn(0).setPreferredWidth(150);
+        table.getColumnModel().getColumn(3).setPreferredWidth(200);
+
+        JLabel statusLabel = new JLabel(" ", JLabel.CENTER);
+        JPanel contentPanel = new JPanel(new BorderLayout());
+        contentPanel.add(new JScrollPane(table), BorderLayout.CENTER);
+        contentPanel.add(statusLabel, BorderLayout.SOUTH);
+
+        java.util.function.Consumer<java.util.List<Transaction>> show = transactions -> {
+            model.setRowCount(0);
+            addHistoryRows(model, transactions);
+            statusLabel.setForeground(Color.BLACK);
+            statusLabel.setText(transactions.size() + " transactions");
+        };
+        show.accept(currentAccount.getMiniStatement());
+
+        miniButton.addActionListener(e -> show.accept(currentAccount.getMiniStatement()));
+        rangeButton.addActionListener(e -> {
+            try {
+                LocalDate from = LocalDate.parse(fromField.getText().trim());
+                LocalDate to = LocalDate.parse(toField.getText().trim());
+                // Up to the start of the day after, so the last day is included
+                show.accept(currentAccount.getTransactionsBetween(
+                        Date.from(from.atStartOfDay(TransactionTotals.ZONE).toInstant()),
+                        Date.from(to.plusDays(1).atStartOfDay(TransactionTotals.ZONE).toInstant())));
+            } catch (java.time.format.DateTimeParseException ex) {
+                statusLabel.setForeground(Color.RED);
+                statusLabel.setText("Please enter dates as yyyy-MM-dd");
+            }
+        });
+
+        // Back button
+        JButton backButton = new JButton("Back to Main Menu");
+        JPanel buttonPanel = new JPanel();
+        buttonPanel.add(backButton);
+
+        // Add components to the panel
+        statementPanel.add(northPanel, BorderLayout.NORTH);
+        statementPanel.add(contentPanel, BorderLayout.CENTER);
+        statementPanel.add(buttonPanel, BorderLayout.SOUTH);
+
+        // Back button action
+        backButton.addActionListener(e -> showPanel(mainMenuPanel));
+    }
+
+    /**
+     * Appends transactions to a history table.
+     */
+    private static void addHistoryRows(DefaultTableModel model, java.util.List<Transaction> transactions) {
+        for (Transaction t : transactions) {
+            model.addRow(new Object[] {
+                    Timestamps.format(t.getTimestampMillis()),
+                    t.getType().toString(),
+                    "₹" + Money.plain(t.getAmount()),
+                    t.getDescription()
+            });
+        }
+    }
+
+    /**
+     * Creates the transaction history panel
+     */
+    private void createHistoryPanel() {
+        historyPanel = new JPanel();
+        historyPanel.setLayout(new BorderLayout(10, 10));
+        historyPanel.setBorder(BorderFactory.createEmptyBorder(20, 20, 20, 20));
+
+        // Header
+        JLabel headerLabel = new JLabel("Transaction History", JLabel.CENTER);
+        headerLabel.setFont(new Font("Arial", Font.BOLD, 24));
+
+        // Transaction table, newest first, filled a page at a time
+        String[] columnNames = {"Date & Time", "Type", "Amount", "Description"};
+        var model = new DefaultTableModel(columnNames, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        var firstPage = currentAccount.getHistoryPage(HISTORY_PAGE_SIZE);
+        addHistoryRows(model, firstPage.transactions());
+        long[] nextToken = {firstPage.nextToken()};
+
+        JButton moreButton = new JButton("Load Older Transactions");
+        moreButton.setEnabled(firstPage.hasMore());
+        moreButton.addActionListener(e -> {
+            var page = currentAccount.getHistoryPage(nextToken[0], HISTORY_PAGE_SIZE);
+            addHistoryRows(model, page.transactions());
+            nextToken[0] = page.nextToken();
+            moreButton.setEnabled(page.hasMore());
+        });
+
+        JTable table = new JTable(model);
+        table.setPreferredScrollableViewportSize(new Dimension(450, 300));
+        table.setFillsViewportHeight(true);
+        table.getColumnModel().getColumn(0).setPreferredWidth(150);
+        table.getColumnModel().getColumn(1).setPreferredWidth(80);
+        table.getColumnModel().getColumn(2).setPreferredWidth(80);
+        table.getColumnModel().getColumn(3).setPreferredWidth(200);
+
+        // Add sorting capability
+        table.setAutoCreateRowSorter(true);
+
+        JScrollPane scrollPane = new JScrollPane(table);
+
+        // Statistics panel
+        JPanel statsPanel = new JPanel();
+        statsPanel.setLayout(new GridLayout(4, 1));
+        statsPanel.setBorder(BorderFactory.createTitledBorder("Transaction Statistics"));
+
+        // Calculate totals
+        long depositTotal = currentAccount.getTotalForTransactionType(TransactionType.DEPOSIT);
+        long withdrawalTotal = currentAccount.getTotalForTransactionType(TransactionType.WITHDRAWAL);
+        long transferTotal = currentAccount.getTotalForTransactionType(TransactionType.TRANSFER);
+
+        JLabel depositsLabel = new JLabel("Total Deposits: " + Money.format(depositTotal));
+        JLabel withdrawalsLabel = new JLabel("Total Withdrawals: " + Money.format(withdrawalTotal));
+        JLabel transfersLabel = new JLabel("Total Transfers: " + Money.format(transferTotal));
+        JLabel todayLabel = new JLabel("Withdrawn Today: " + Money.format(
+                currentAccount.getDailyTotal(TransactionType.WITHDRAWAL, LocalDate.now())));
+
+        statsPanel.add(depositsLabel);
+        statsPanel.add(withdrawalsLabel);
+        statsPanel.add(transfersLabel);
+        statsPanel.add(todayLabel);
+
+        // No transactions message
+        JPanel contentPanel = new JPanel(new BorderLayout());
+        if (firstPage.transactions().isEmpty()) {
+            contentPanel.add(new JLabel("No transactions found."), BorderLayout.CENTER);
+        } else {
+            contentPanel.add(scrollPane, BorderLayout.CENTER);
+            contentPanel.add(statsPanel, BorderLayout.SOUTH);
+        }
+
+        // Back button
+        JButton backButton = new JButton("Back to Main Menu");
+        JPanel buttonPanel = new JPanel();
+        buttonPanel.add(moreButton);
+        buttonPanel.add(backButton);
+
+        // Add components to the panel
+        historyPanel.add(headerLabel, BorderLayout.NORTH);
+        historyPanel.add(contentPanel, BorderLayout.CENTER);
+        historyPanel.add(buttonPanel, BorderLayout.SOUTH);
+
+        // Back button action
+        backButton.addActionListener(e -> showPanel(mainMenuPanel));
+    }
+
+    /**
+     * Creates the change PIN panel
+     */
+    private void createChangePinPanel() {
+        changePinPanel = new JPanel();
+        changePinPanel.setLayout(new BoxLayout(changePinPanel, BoxLayout.Y_AXIS));
+        changePinPanel.setBorder(BorderFactory.createEmptyBorder(20, 20, 20, 20));
+
+        // Header
+        JLabel headerLabel = new JLabel("Change PIN");
+        headerLabel.setFont(new Font("Arial", Font.BOLD, 24));
+        headerLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
+
+        // Current PIN input
+        JPanel currentPinPanel = new JPanel();
+        currentPinPanel.setLayout(new FlowLayout(FlowLayout.CENTER));
+        JLabel currentPinLabel = new JLabel("Current PIN: ");
+        JPasswordField currentPinField = new JPasswordField(10);
+        currentPinPanel.add(currentPinLabel);
+        currentPinPanel.add(currentPinField);
+
+        // New PIN input
+        JPanel newPinPanel = new JPanel();
+        newPinPanel.setLayout(new FlowLayout(FlowLayout.CENTER));
+        JLabel newPinLabel = new JLabel("New PIN: ");
+        JPasswordField newPinField = new JPasswordField(10);
+        newPinPanel.add(newPinLabel);
+        newPinPanel.add(newPinField);
+
+        // Confirm PIN input
+        JPanel confirmPinPanel = new JPanel();
+        confirmPinPanel.setLayout(new FlowLayout(FlowLayout.CENTER));
+        JLabel confirmPinLabel = new JLabel("Confirm New PIN: ");
+        JPasswordField confirmPinField = new JPasswordField(10);
+        confirmPinPanel.add(confirmPinLabel);
+        confirmPinPanel.add(confirmPinField);
+
+        // PIN strength indicator
+        JProgressBar strengthBar = new JProgressBar(0, 4);
+        strengthBar.setValue(0);
+        strengthBar.setStringPainted(true);
+        strengthBar.setString("PIN Strength");
+        strengthBar.setMaximumSize(new Dimension(200, 20));
+        strengthBar.setAlignmentX(Component.CENTER_ALIGNMENT);
+
+        // PIN requirements info
+        JLabel requirementsLabel = new JLabel("PIN should be at least 4 digits");
+        requirementsLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
+        requirementsLabel.setForeground(Color.GRAY);
+
+        // Add document listener to new PIN field to calculate strength
+        newPinField.getDocument().addDocumentListener(new javax.swing.event.DocumentListener() {
+            @Override
+            public void insertUpdate(javax.swing.event.DocumentEvent e) { updateStrength(); }
+            @Override
+            public void removeUpdate(javax.swing.event.DocumentEvent e) { updateStrength(); }
+            @Override
+            public void changedUpdate(javax.swing.event.DocumentEvent e) { updateStrength(); }
+
+            private void updateStrength() {
+                String pin = new String(newPinField.getPassword());
+
+                // Calculate strength (simple example)
+                int strength = 0;
+                if (pin.length() >= 4) strength++;
+                if (pin.length() >= 6) strength++;
+                if (!pin.matches("\\d+")) strength++; // Contains non-digits
+                if (pin.matches(".*[!@#$%^&*()].*")) strength++; // Contains special chars
+
+                strengthBar.setValue(strength);
+
+                // Update color based on strength
+                if (strength < 2) {
+                    strengthBar.setForeground(Color.RED);
+                    strengthBar.setString("Weak");
+                } else if (strength < 3) {
+                    strengthBar.setForeground(Color.YELLOW);
+                    strengthBar.setString("Medium");
+                } else {
+                    strengthBar.setForeground(Color.GREEN);
+                    strengthBar.setString("Strong");
+                }
+            }
+        });
+
+        // Change PIN button
+        JButton changePinButton = new JButton("Change PIN");
+        changePinButton.setAlignmentX(Component.CENTER_ALIGNMENT);
+
+        // Status label
+        JLabel statusLabel = new JLabel(" ");
+        statusLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
+
+        // Back button
+        JButton backButton = new JButton("Back to Main Menu");
+        backButton.setAlignmentX(Component.CENTER_ALIGNMENT);
+
+        // Add components to the panel
+        changePinPanel.add(headerLabel);
+        changePinPanel.add(Box.createVerticalStrut(30));
+        changePinPanel.add(currentPinPanel);
+        changePinPanel.add(Box.createVerticalStrut(10));
+        changePinPanel.add(newPinPanel);
+        changePinPanel.add(Box.createVerticalStrut(5));
+        changePinPanel.add(strengthBar);
+        changePinPanel.add(Box.createVerticalStrut(5));
+        changePinPanel.add(requirementsLabel);
+        changePinPanel.add(Box.createVerticalStrut(10));
+        changePinPanel.add(confirmPinPanel);
+        changePinPanel.add(Box.createVerticalStrut(20));
+        changePinPanel.add(changePinButton);
+        changePinPanel.add(Box.createVerticalStrut(10));
+        changePinPanel.add(statusLabel);
+        changePinPanel.add(Box.createVerticalStrut(30));
+        changePinPanel.add(backButton);
+
+        // Change PIN button action
+        changePinButton.addActionListener(e -> {
+            String currentPin = new String(currentPinField.getPassword());
+            String newPin = new String(newPinField.getPassword());
+            String confirmPin = new String(confirmPinField.getPassword());
+
+            if (newPin.length() < 4) {
+                statusLabel.setForeground(Color.RED);
+                statusLabel.setText("PIN must be at least 4 characters");
+                return;
+            }
+
+            if (!newPin.equals(confirmPin)) {
+                statusLabel.setForeground(Color.RED);
+                statusLabel.setText("PINs do not match. Please try again.");
+                return;
+            }
+
+            boolean success = currentAccount.changePin(currentPin, newPin);
+
+            if (success) {
+                statusLabel.setForeground(Color.GREEN.darker());
+                statusLabel.setText("PIN changed successfully!");
+                currentPinField.setText("");
+                newPinField.setText("");
+                confirmPinField.setText("");
+                strengthBar.setValue(0);
+                strengthBar.setString("PIN Strength");
+            } else {
+                statusLabel.setForeground(Color.RED);
+                statusLabel.setText("PIN change failed. Incorrect current PIN.");
+            }
+        });
+
+        // Back button action
+        backButton.addActionListener(e -> showPanel(mainMenuPanel));
+    }
+
+    /**
+     * Shows the specified panel and hides all others
+     *
+     * Note: Had to implement this helper method after struggling with CardLayout,
+     * which was not working well for this use case. This approach is cleaner anyway.
+     *
+     * - Rahul (22-Mar-2025)
+     */
+    private void showPanel(JPanel panel) {
+        getContentPane().removeAll();
+        getContentPane().add(panel);
+        revalidate();
+        repaint();
     }
 }
 
 /**
- * A Swing-based GUI for the ATM Simulation System
+ * Simple throughput benchmarks for the ledger code paths.
  *
- * This was challenging to implement on Replit since JavaFX wasn't
- * working well, but Swing still does the job nicely. I've tried to
- * make it look as modern as possible despite Swing's limitations.
+ * These aren't JMH-grade measurements, but they are good enough to see how
+ * a change behaves under contention without setting up a build. Each
+ * benchmark warms up once before the measured rounds.
  *
- * @author Rahul Verma
- * @version 2.1
+ * Run with: java ModernATMSystem bench [name]
  */
-class ATMSwingApp extends JFrame {
-    // Model components
-    private final Bank bank;
-    private Account currentAccount;
-
-    // UI Components
-    private JPanel loginPanel;
-    private JPanel mainMenuPanel;
-    private JPanel balancePanel;
-    private JPanel depositPanel;
-    private JPanel withdrawPanel;
-    private JPanel transferPanel;
-    private JPanel historyPanel;
-    private JPanel changePinPanel;
+class ATMBenchmark {
+    private static final int[] THREAD_COUNTS = {1, 2, 4, 8, 16, 32, 64};
 
-    // Login components
-    private JTextField accountField;
-    private JPasswordField pinField;
-    private JLabel statusLabel;
+    private static volatile long sink;
 
-    // Counter for login attempts (using Atomic classes for thread safety)
-    private final AtomicInteger loginAttempts = new AtomicInteger(0);
-    private static final int MAX_LOGIN_ATTEMPTS = 3;
+    public static void main(String[] args) {
+        var name = args != null && args.length > 0 ? args[0].toLowerCase() : "all";
+
+        switch (name) {
+            case "contention" -> hotAccountContention();
+            case "transfer" -> concurrentTransfers();
+            case "registry" -> registryScaling();
+            case "ledger" -> ledgerEngine();
+            case "partitioned" -> partitionedBank();
+            case "terminals" -> concurrentTerminals();
+            case "protocol" -> binaryProtocol();
+            case "batch" -> batchCommands();
+            case "inquiry" -> readHeavyInquiries();
+            case "journal" -> journalCommits();
+            case "startup" -> snapshotStartup(
+                    args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000,
+                    args.length > 2 ? Long.parseLong(args[2]) : 10_000_000L);
+            case "loader" -> bulkLoad(args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000);
+            case "history" -> historyStorage(args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000);
+            case "pages" -> historyPages();
+            case "stats" -> historyStatistics();
+            case "range" -> historyRanges(args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000);
+            case "tiers" -> historyTiers();
+            case "descriptions" -> transactionDescriptions();
+            case "ids" -> transactionIds();
+            case "money" -> rupeeFormatting();
+            case "timestamps" -> timestampRendering();
+            case "details" -> detailsExport();
+            case "declines" -> declinedWithdrawals();
+            case "all" -> {
+                hotAccountContention();
+                concurrentTransfers();
+                registryScaling();
+                ledgerEngine();
+                partitionedBank();
+                concurrentTerminals();
+                binaryProtocol();
+                batchCommands();
+                readHeavyInquiries();
+                journalCommits();
+                snapshotStartup(1_000_000, 10_000_000L);
+                bulkLoad(1_000_000);
+                historyStorage(1_000_000);
+                historyPages();
+                historyStatistics();
+                historyRanges(1_000_000);
+                historyTiers();
+                transactionDescriptions();
+                transactionIds();
+                rupeeFormatting();
+                timestampRendering();
+                detailsExport();
+                declinedWithdrawals();
+            }
+            default -> System.out.println("Unknown benchmark: " + name);
+        }
+    }
 
     /**
-     * Constructor initializes the ATM application
+     * Hammers a single account with deposit/withdraw pairs from 1 to 64 threads,
+     * then checks that concurrent withdrawals never overdraw it.
      */
-    public ATMSwingApp() {
-        this.bank = new Bank("State Bank of India");
+    static void hotAccountContention() {
+        final int opsPerRound = 400_000;
 
-        // Set up the JFrame
-        setTitle("SBI ATM Simulation System");
-        setSize(500, 600);
-        setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-        setLocationRelativeTo(null);
+        System.out.println("""
+            Hot account contention (deposit + withdraw on one account)
+            Threads | Ops/sec      | Final balance check
+            ------------------------------------------------""");
 
-        // Initialize panels
-        createLoginPanel();
+        runContentionRound(4, opsPerRound); // warm-up
 
-        // Display the login panel
-        getContentPane().add(loginPanel);
+        for (int threads : THREAD_COUNTS) {
+            var account = new Account("900001", "0000", "Benchmark", Money.ofRupees(1_000));
+            int pairsPerThread = opsPerRound / 2 / threads;
+
+            long nanos = timeThreads(threads, worker -> {
+                for (int i = 0; i < pairsPerThread; i++) {
+                    account.deposit(Money.ofRupees(10));
+                    try {
+                        account.withdraw(Money.ofRupees(10));
+                    } catch (InsufficientFundsException e) {
+                        throw new IllegalStateException("Balance went missing under contention", e);
+                    }
+                }
+            });
+
+            long ops = 2L * pairsPerThread * threads;
+            System.out.printf("%7d | %12.0f | %s%n", threads, ops * 1e9 / nanos,
+                    account.getBalance() == Money.ofRupees(1_000) ? "OK" : "MISMATCH " + account.getBalance());
+        }
+
+        // Race 64 threads for a balance that only covers 1,000 withdrawals
+        var account = new Account("900002", "0000", "Benchmark", Money.ofRupees(1_000));
+        var approved = new AtomicInteger();
+        timeThreads(64, worker -> {
+            for (int i = 0; i < 100; i++) {
+                try {
+                    account.withdraw(Money.ofRupees(1));
+                    approved.incrementAndGet();
+                } catch (InsufficientFundsException e) {
+                    // Expected once the account runs dry
+                }
+            }
+        });
+        System.out.printf("%nOverdraw check: %d of 6400 withdrawals approved, final balance %s%n",
+                approved.get(), Money.plain(account.getBalance()));
     }
 
     /**
-     * Creates the login panel
+     * Runs opposing A-to-B / B-to-A transfers to show the lock ordering holds
+     * up, then measures transfers between disjoint account pairs from 1 to 64
+     * threads.
      */
-    private void createLoginPanel() {
-        loginPanel = new JPanel();
-        loginPanel.setLayout(new BoxLayout(loginPanel, BoxLayout.Y_AXIS));
-        loginPanel.setBorder(BorderFactory.createEmptyBorder(20, 20, 20, 20));
-
-        // Header
-        JLabel headerLabel = new JLabel("Welcome to " + bank.getName());
-        headerLabel.setFont(new Font("Arial", Font.BOLD, 24));
-        headerLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
+    static void concurrentTransfers() {
+        var a = new Account("910001", "0000", "Benchmark A", Money.ofRupees(100_000));
+        var b = new Account("910002", "0000", "Benchmark B", Money.ofRupees(100_000));
+
+        long opposing = timeThreads(2, worker -> {
+            var from = worker == 0 ? a : b;
+            var to = worker == 0 ? b : a;
+            for (int i = 0; i < 50_000; i++) {
+                try {
+                    from.transfer(to, Money.ofRupees(1));
+                } catch (InsufficientFundsException e) {
+                    throw new IllegalStateException("Opposing transfers lost money", e);
+                }
+            }
+        });
+        System.out.printf("""
 
-        // Account field
-        JPanel accountPanel = new JPanel();
-        accountPanel.setLayout(new FlowLayout(FlowLayout.CENTER));
-        JLabel accountLabel = new JLabel("Account Number: ");
-        accountField = new JTextField(10);
-        accountPanel.add(accountLabel);
-        accountPanel.add(accountField);
+            Opposing transfers: 100000 in %.1f ms, combined balance %s (expected 200000.00)
 
-        // PIN field
-        JPanel pinPanel = new JPanel();
-        pinPanel.setLayout(new FlowLayout(FlowLayout.CENTER));
-        JLabel pinLabel = new JLabel("PIN: ");
-        pinField = new JPasswordField(10);
-        pinPanel.add(pinLabel);
-        pinPanel.add(pinField);
+            Disjoint transfers (each thread owns its own pair of accounts)
+            Threads | Transfers/sec
+            ------------------------------------------------
+            """, opposing / 1e6, Money.plain(a.getBalance() + b.getBalance()));
 
-        // Login button
-        JButton loginButton = new JButton("Login");
-        loginButton.setAlignmentX(Component.CENTER_ALIGNMENT);
+        final int transfersPerRound = 200_000;
+        for (int threads : THREAD_COUNTS) {
+            var pairs = new Account[threads * 2];
+            for (int i = 0; i < pairs.length; i++) {
+                pairs[i] = new Account(String.valueOf(920_000 + i), "0000", "Benchmark", Money.ofRupees(1_000_000));
+            }
+            int perThread = transfersPerRound / threads;
 
-        // Status label for error messages
-        statusLabel = new JLabel(" ");
-        statusLabel.setForeground(Color.RED);
-        statusLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
+            long nanos = timeThreads(threads, worker -> {
+                var from = pairs[worker * 2];
+                var to = pairs[worker * 2 + 1];
+                for (int i = 0; i < perThread; i++) {
+                    try {
+                        from.transfer(to, Money.ofRupees(1));
+                    } catch (InsufficientFundsException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            });
 
-        // Test accounts info
-        JTextArea testAccountsText = new JTextArea("""
-            Test Accounts:
-            Account: 123456, PIN: 1234
-            Account: 234567, PIN: 2345
-            Account: 345678, PIN: 3456
-            Account: 456789, PIN: 4567
-            """);
-        testAccountsText.setEditable(false);
-        testAccountsText.setBackground(null);
-        testAccountsText.setFont(new Font("Arial", Font.PLAIN, 12));
-        testAccountsText.setAlignmentX(Component.CENTER_ALIGNMENT);
+            System.out.printf("%7d | %13.0f%n", threads, (long) perThread * threads * 1e9 / nanos);
+        }
+    }
 
-        // Add components to the panel
-        loginPanel.add(Box.createVerticalStrut(30));
-        loginPanel.add(headerLabel);
-        loginPanel.add(Box.createVerticalStrut(40));
-        loginPanel.add(accountPanel);
-        loginPanel.add(Box.createVerticalStrut(10));
-        loginPanel.add(pinPanel);
-        loginPanel.add(Box.createVerticalStrut(20));
-        loginPanel.add(loginButton);
-        loginPanel.add(Box.createVerticalStrut(10));
-        loginPanel.add(statusLabel);
-        loginPanel.add(Box.createVerticalStrut(40));
-        loginPanel.add(testAccountsText);
+    /**
+     * Loads a million accounts into a fresh registry from 1 to 64 threads and
+     * then looks every one of them up again.
+     */
+    static void registryScaling() {
+        final int accountCount = 1_000_000;
 
-        // Login button action
-        loginButton.addActionListener(e -> {
-            String accountNumber = accountField.getText();
-            String pin = new String(pinField.getPassword());
+        System.out.println("""
 
-            // Check if max attempts reached
-            if (loginAttempts.get() >= MAX_LOGIN_ATTEMPTS) {
-                statusLabel.setText("Too many failed attempts. Please try again later.");
-                loginButton.setEnabled(false);
+            Sharded account registry (1,000,000 accounts)
+            Threads | Inserts/sec  | Lookups/sec
+            ------------------------------------------------""");
 
-                // Re-enable after a delay (in a real app, we might use more sophisticated logic)
-                Timer timer = new Timer(10000, event -> {
-                    loginButton.setEnabled(true);
-                    loginAttempts.set(0);
-                    statusLabel.setText("You can try again now.");
-                });
-                timer.setRepeats(false);
-                timer.start();
-                return;
+        for (int threads : THREAD_COUNTS) {
+            var registry = new AccountRegistry();
+            var accounts = new Account[accountCount];
+            for (int i = 0; i < accountCount; i++) {
+                accounts[i] = new Account(String.valueOf(10_000_000 + i), "0000", "Benchmark", 0);
             }
+            int perThread = accountCount / threads;
 
-            currentAccount = bank.authenticateUser(accountNumber, pin);
+            long insertNanos = timeThreads(threads, worker -> {
+                int end = worker == threads - 1 ? accountCount : (worker + 1) * perThread;
+                for (int i = worker * perThread; i < end; i++) {
+                    registry.putIfAbsent(accounts[i]);
+                }
+            });
 
-            if (currentAccount != null) {
-                createMainMenuPanel();
-                getContentPane().removeAll();
-                getContentPane().add(mainMenuPanel);
-                revalidate();
-                repaint();
-                statusLabel.setText(" ");
-                // Reset login attempts on successful login
-                loginAttempts.set(0);
-            } else {
-                loginAttempts.incrementAndGet();
-                int remainingAttempts = MAX_LOGIN_ATTEMPTS - loginAttempts.get();
-                statusLabel.setText("Invalid account number or PIN. " +
-                        (remainingAttempts > 0 ? remainingAttempts + " attempts remaining." : ""));
-            }
-        });
+            long lookupNanos = timeThreads(threads, worker -> {
+                int end = worker == threads - 1 ? accountCount : (worker + 1) * perThread;
+                for (int i = worker * perThread; i < end; i++) {
+                    if (registry.get(accounts[i].getAccountNumber()) != accounts[i]) {
+                        throw new IllegalStateException("Lost account " + accounts[i].getAccountNumber());
+                    }
+                }
+            });
+
+            System.out.printf("%7d | %12.0f | %12.0f%n", threads,
+                    accountCount * 1e9 / insertNanos, accountCount * 1e9 / lookupNanos);
+        }
     }
 
     /**
-     * Creates the main menu panel
+     * Compares applying a deposit/withdraw/transfer mix by calling Account
+     * directly against publishing the same mix through the LedgerEngine.
      */
-    private void createMainMenuPanel() {
-        mainMenuPanel = new JPanel();
-        mainMenuPanel.setLayout(new BoxLayout(mainMenuPanel, BoxLayout.Y_AXIS));
-        mainMenuPanel.setBorder(BorderFactory.createEmptyBorder(20, 20, 20, 20));
+    static void ledgerEngine() {
+        final int ops = 1_000_000;
 
-        // Header
-        JLabel headerLabel = new JLabel("Main Menu");
-        headerLabel.setFont(new Font("Arial", Font.BOLD, 24));
-        headerLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
+        System.out.println("""
 
-        // Welcome message
-        JLabel welcomeLabel = new JLabel("Welcome, " + currentAccount.getAccountHolder() + "!");
-        welcomeLabel.setFont(new Font("Arial", Font.PLAIN, 16));
-        welcomeLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
+            Ledger engine vs direct Account calls (1,000,000 ops, deposit/withdraw/transfer mix)
+            Mode                               | Ops/sec
+            ------------------------------------------------""");
+
+        for (int round = 0; round < 2; round++) {
+            boolean report = round == 1; // first round is warm-up
+
+            var a = new Account("930001", "0000", "Benchmark A", Money.ofRupees(1_000_000));
+            var b = new Account("930002", "0000", "Benchmark B", Money.ofRupees(1_000_000));
+            long direct = timeThreads(1, worker -> {
+                try {
+                    for (int i = 0; i < ops; i += 3) {
+                        a.deposit(100);
+                        a.withdraw(100);
+                        a.transfer(b, 100);
+                    }
+                } catch (InsufficientFundsException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
 
-        // Account balance overview
-        // Using Indian Rupee format
-        var formatter = NumberFormat.getCurrencyInstance(new Locale("en", "IN"));
-        JLabel balanceLabel = new JLabel("Current Balance: " +
-                formatter.format(currentAccount.getBalance()));
-        balanceLabel.setFont(new Font("Arial", Font.BOLD, 14));
-        balanceLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
+            for (int producers : new int[] {1, 4}) {
+                var c = new Account("930003", "0000", "Benchmark C", Money.ofRupees(1_000_000));
+                var d = new Account("930004", "0000", "Benchmark D", Money.ofRupees(1_000_000));
+                long nanos;
+                try (var engine = new LedgerEngine(64 * 1024)) {
+                    nanos = timeThreads(producers, worker -> {
+                        var last = new LedgerCompletion();
+                        for (int i = 0; i < ops / producers; i += 3) {
+                            engine.deposit(c, 100, null);
+                            engine.withdraw(c, 100, null);
+                            engine.transfer(c, d, 100, null);
+                        }
+                        // Commands are applied in order, so this one finishing means all of ours have
+                        engine.deposit(c, 1, last);
+                        last.await();
+                    });
+                }
+                if (report) {
+                    System.out.printf("%-35s| %12.0f%n", "Ledger engine, " + producers + " producer(s)", ops * 1e9 / nanos);
+                }
+            }
 
-        // Buttons
-        Dimension buttonSize = new Dimension(200, 30);
+            if (report) {
+                System.out.printf("%-35s| %12.0f%n", "Direct Account calls, 1 thread", ops * 1e9 / direct);
+            }
+        }
 
-        JButton checkBalanceButton = new JButton("Check Balance");
-        checkBalanceButton.setMaximumSize(buttonSize);
-        checkBalanceButton.setAlignmentX(Component.CENTER_ALIGNMENT);
+        // Round trip: submit one command and wait for its answer each time
+        var e = new Account("930005", "0000", "Benchmark E", 0);
+        try (var engine = new LedgerEngine(1024)) {
+            var completion = new LedgerCompletion();
+            long nanos = timeThreads(1, worker -> {
+                for (int i = 0; i < 100_000; i++) {
+                    completion.reset();
+                    engine.deposit(e, 100, completion);
+                    completion.await();
+                }
+            });
+            System.out.printf("%-35s| %12.0f%n", "Synchronous round trip, 1 terminal", 100_000 * 1e9 / nanos);
+        }
+    }
 
-        JButton depositButton = new JButton("Deposit Funds");
-        depositButton.setMaximumSize(buttonSize);
-        depositButton.setAlignmentX(Component.CENTER_ALIGNMENT);
+    /**
+     * Measures deposits and cross-partition transfers on a PartitionedBank
+     * with one terminal thread per partition, for 1 to 8 partitions.
+     */
+    static void partitionedBank() {
+        final int accountsPerPartition = 1_000;
+        final int depositsPerRound = 400_000;
+        final int transfersPerRound = 20_000;
 
-        JButton withdrawButton = new JButton("Withdraw Funds");
-        withdrawButton.setMaximumSize(buttonSize);
-        withdrawButton.setAlignmentX(Component.CENTER_ALIGNMENT);
+        System.out.println("""
 
-        JButton transferButton = new JButton("Transfer Funds");
-        transferButton.setMaximumSize(buttonSize);
-        transferButton.setAlignmentX(Component.CENTER_ALIGNMENT);
+            Partitioned bank (one terminal thread per partition)
+            Partitions | Deposits/sec | Transfers/sec | Balance check
+            ------------------------------------------------""");
+
+        for (int partitions : new int[] {1, 2, 4, 8}) {
+            try (var bank = new PartitionedBank("Benchmark", partitions)) {
+                int accountCount = accountsPerPartition * partitions;
+                var numbers = new String[accountCount];
+                for (int i = 0; i < accountCount; i++) {
+                    numbers[i] = String.valueOf(940_000 + i);
+                    bank.addAccount(new Account(numbers[i], "0000", "Benchmark", Money.ofRupees(1_000)));
+                }
 
-        JButton historyButton = new JButton("Transaction History");
-        historyButton.setMaximumSize(buttonSize);
-        historyButton.setAlignmentX(Component.CENTER_ALIGNMENT);
+                long depositNanos = timeThreads(partitions, worker -> {
+                    var last = bank.deposit(numbers[worker], 1);
+                    for (int i = 0; i < depositsPerRound / partitions; i++) {
+                        last = bank.deposit(numbers[(worker + i * partitions) % accountCount], 100);
+                    }
+                    last.await();
+                });
 
-        JButton changePinButton = new JButton("Change PIN");
-        changePinButton.setMaximumSize(buttonSize);
-        changePinButton.setAlignmentX(Component.CENTER_ALIGNMENT);
+                long transferNanos = timeThreads(partitions, worker -> {
+                    for (int i = 0; i < transfersPerRound / partitions; i++) {
+                        int from = (worker + i * partitions) % accountCount;
+                        bank.transfer(numbers[from], numbers[(from + 1) % accountCount], 100);
+                    }
+                });
 
-        JButton logoutButton = new JButton("Logout");
-        logoutButton.setMaximumSize(buttonSize);
-        logoutButton.setAlignmentX(Component.CENTER_ALIGNMENT);
+                // Deposits are the only thing that adds money; transfers must net out to zero
+                long total = 0;
+                for (String number : numbers) {
+                    total += bank.getAccount(number).getBalance();
+                }
+                long expected = Money.ofRupees(1_000) * accountCount
+                        + 100L * (depositsPerRound / partitions) * partitions + partitions;
 
-        // Add components to the panel
-        mainMenuPanel.add(Box.createVerticalStrut(20));
-        mainMenuPanel.add(headerLabel);
-        mainMenuPanel.add(Box.createVerticalStrut(10));
-        mainMenuPanel.add(welcomeLabel);
-        mainMenuPanel.add(Box.createVerticalStrut(10));
-        mainMenuPanel.add(balanceLabel);
-        mainMenuPanel.add(Box.createVerticalStrut(30));
-        mainMenuPanel.add(checkBalanceButton);
-        mainMenuPanel.add(Box.createVerticalStrut(10));
-        mainMenuPanel.add(depositButton);
-        mainMenuPanel.add(Box.createVerticalStrut(10));
-        mainMenuPanel.add(withdrawButton);
-        mainMenuPanel.add(Box.createVerticalStrut(10));
-        mainMenuPanel.add(transferButton);
-        mainMenuPanel.add(Box.createVerticalStrut(10));
-        mainMenuPanel.add(historyButton);
-        mainMenuPanel.add(Box.createVerticalStrut(10));
-        mainMenuPanel.add(changePinButton);
-        mainMenuPanel.add(Box.createVerticalStrut(30));
-        mainMenuPanel.add(logoutButton);
+                System.out.printf("%10d | %12.0f | %13.0f | %s%n", partitions,
+                        depositsPerRound * 1e9 / depositNanos,
+                        transfersPerRound * 1e9 / transferNanos,
+                        total == expected ? "OK" : "MISMATCH");
+            }
+        }
+    }
+
+    /**
+     * Connects thousands of simulated terminals to an in-process ATMHostServer,
+     * holds them all logged in at the same time, then has each one check its
+     * balance and exit. Reports session throughput and heap per session.
+     */
+    static void concurrentTerminals() {
+        // Each terminal needs two sockets here (client and server side)
+        int terminals = 10_000;
+        if (java.lang.management.ManagementFactory.getOperatingSystemMXBean()
+                instanceof com.sun.management.UnixOperatingSystemMXBean os) {
+            terminals = (int) Math.min(terminals, (os.getMaxFileDescriptorCount() - 500) / 2);
+        }
+        final int terminalCount = terminals;
+        final String[][] logins = {{"123456", "1234"}, {"234567", "2345"}, {"345678", "3456"}, {"456789", "4567"}};
+
+        System.out.printf("""
+
+            Virtual-thread ATM host (%d concurrent terminals)
+            ------------------------------------------------
+            """, terminalCount);
+
+        var runtime = Runtime.getRuntime();
+        try (var server = new ATMHostServer(new Bank("State Bank of India"), 0)) {
+            server.start();
+            System.gc();
+            long heapBefore = runtime.totalMemory() - runtime.freeMemory();
+
+            var connected = new CountDownLatch(terminalCount);
+            var proceed = new CountDownLatch(1);
+            var finished = new CountDownLatch(terminalCount);
+            var failures = new AtomicInteger();
+
+            long begin = System.nanoTime();
+            for (int t = 0; t < terminalCount; t++) {
+                var login = logins[t % logins.length];
+                Thread.ofVirtual().start(() -> {
+                    try (var socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+                        var in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                        var out = new PrintStream(socket.getOutputStream(), true, StandardCharsets.UTF_8);
+
+                        out.println(login[0]);
+                        out.println(login[1]);
+                        readUntil(in, "Enter your choice");
+                        connected.countDown();
+
+                        proceed.await();
+                        out.println("1"); // check balance
+                        readUntil(in, "Press Enter");
+                        out.println();
+                        readUntil(in, "Enter your choice");
+                        out.println("9"); // exit
+                        readUntil(in, "Goodbye");
+                    } catch (Exception e) {
+                        failures.incrementAndGet();
+                        connected.countDown();
+                    } finally {
+                        finished.countDown();
+                    }
+                });
+            }
 
-        // Button actions
-        checkBalanceButton.addActionListener(e -> {
-            createBalancePanel();
-            showPanel(balancePanel);
-        });
+            connected.await();
+            long connectNanos = System.nanoTime() - begin;
+            System.gc();
+            long heapConnected = runtime.totalMemory() - runtime.freeMemory();
+
+            long sessionsBegin = System.nanoTime();
+            proceed.countDown();
+            finished.await();
+            long sessionNanos = System.nanoTime() - sessionsBegin;
+
+            System.out.printf("Logged in all terminals in %.0f ms (%.0f logins/sec)%n",
+                    connectNanos / 1e6, terminalCount * 1e9 / connectNanos);
+            System.out.printf("Balance check + exit on every terminal in %.0f ms (%.0f sessions/sec)%n",
+                    sessionNanos / 1e6, terminalCount * 1e9 / sessionNanos);
+            System.out.printf("Heap per connected terminal (server + simulated client): %.1f KB%n",
+                    (heapConnected - heapBefore) / 1024.0 / terminalCount);
+            System.out.printf("Failed sessions: %d%n", failures.get());
+        } catch (IOException e) {
+            System.out.println("Server error: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
 
-        depositButton.addActionListener(e -> {
-            createDepositPanel();
-            showPanel(depositPanel);
-        });
+    private static void readUntil(BufferedReader in, String marker) throws IOException {
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (line.contains(marker)) {
+                return;
+            }
+        }
+        throw new EOFException("Server closed the session before \"" + marker + "\"");
+    }
 
-        withdrawButton.addActionListener(e -> {
-            createWithdrawPanel();
-            showPanel(withdrawPanel);
-        });
+    /**
+     * Drives the binary terminal host with local clients: per-request latency
+     * for a single terminal, then throughput with several terminals at once.
+     */
+    static void binaryProtocol() {
+        final int requests = 200_000;
 
-        transferButton.addActionListener(e -> {
-            createTransferPanel();
-            showPanel(transferPanel);
-        });
+        System.out.println("""
 
-        historyButton.addActionListener(e -> {
-            createHistoryPanel();
-            showPanel(historyPanel);
-        });
+            Binary terminal protocol (NIO host, balance/deposit/withdraw/transfer mix)
+            Terminals | Requests/sec | p50 us | p99 us
+            ------------------------------------------------""");
 
-        changePinButton.addActionListener(e -> {
-            createChangePinPanel();
-            showPanel(changePinPanel);
-        });
+        var bank = new Bank("State Bank of India");
+        for (int i = 0; i < 64; i++) {
+            bank.addAccount(new Account(String.valueOf(950_000 + i), "0000", "Benchmark", Money.ofRupees(1_000_000)));
+        }
 
-        logoutButton.addActionListener(e -> {
-            currentAccount = null;
-            accountField.setText("");
-            pinField.setText("");
-            showPanel(loginPanel);
-        });
+        try (var host = new TerminalHostServer(bank, 0)) {
+            host.start();
+
+            int[] terminalCounts = {1, 1, 4, 16, 64};
+            for (int round = 0; round < terminalCounts.length; round++) {
+                int terminals = terminalCounts[round];
+                int perTerminal = requests / terminals;
+                var latencies = new long[perTerminal * terminals];
+                var failures = new AtomicInteger();
+
+                long nanos = timeThreads(terminals, worker -> {
+                    try (var client = new TerminalClient(host.getPort())) {
+                        client.login(String.valueOf(950_000 + worker), "0000");
+                        String payee = String.valueOf(950_000 + (worker + 1) % 64);
+                        for (int i = 0; i < perTerminal; i++) {
+                            long begin = System.nanoTime();
+                            byte status = switch (i & 3) {
+                                case 0 -> client.balance();
+                                case 1 -> client.deposit(100);
+                                case 2 -> client.withdraw(100);
+                                default -> client.transfer(payee, 100);
+                            };
+                            latencies[worker * perTerminal + i] = System.nanoTime() - begin;
+                            if (status != TerminalProtocol.OK) {
+                                failures.incrementAndGet();
+                            }
+                        }
+                    } catch (IOException e) {
+                        failures.incrementAndGet();
+                    }
+                });
+
+                if (round == 0) {
+                    continue; // warm-up
+                }
+                java.util.Arrays.sort(latencies);
+                System.out.printf("%9d | %12.0f | %6.1f | %6.1f%s%n", terminals,
+                        (long) perTerminal * terminals * 1e9 / nanos,
+                        latencies[latencies.length / 2] / 1e3,
+                        latencies[(int) (latencies.length * 0.99)] / 1e3,
+                        failures.get() > 0 ? "  (" + failures.get() + " failed)" : "");
+            }
+        } catch (IOException e) {
+            System.out.println("Server error: " + e.getMessage());
+        }
     }
 
     /**
-     * Creates the balance panel
+     * Compares crediting a salary file one Account.deposit call at a time
+     * with handing the whole file to Bank.applyBatch.
      */
-    private void createBalancePanel() {
-        balancePanel = new JPanel();
-        balancePanel.setLayout(new BoxLayout(balancePanel, BoxLayout.Y_AXIS));
-        balancePanel.setBorder(BorderFactory.createEmptyBorder(20, 20, 20, 20));
+    static void batchCommands() {
+        final int accountCount = 10_000;
+        final int rows = 500_000;
 
-        // Formatter for currency
-        // Using Indian Rupee format
-        var formatter = NumberFormat.getCurrencyInstance(new Locale("en", "IN"));
-
-        // Header
-        JLabel headerLabel = new JLabel("Account Balance");
-        headerLabel.setFont(new Font("Arial", Font.BOLD, 24));
-        headerLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
+        System.out.println("""
 
-        // Account info
-        JPanel infoPanel = new JPanel();
-        infoPanel.setLayout(new GridLayout(3, 1, 0, 10));
-        infoPanel.setBorder(BorderFactory.createEmptyBorder(20, 20, 20, 20));
+            Batch commands (500,000 rows over 10,000 accounts, 90% credits / 5% debits / 5% transfers)
+            Mode                               | Rows/sec
+            ------------------------------------------------""");
+
+        checkBatchOrder();
+
+        var commands = new ArrayList<BankCommand>(rows);
+        var random = new java.util.Random(42);
+        for (int i = 0; i < rows; i++) {
+            String account = String.valueOf(960_000 + random.nextInt(accountCount));
+            int kind = random.nextInt(20);
+            if (kind == 0) {
+                commands.add(BankCommand.withdrawal(account, 5_000));
+            } else if (kind == 1) {
+                commands.add(BankCommand.transfer(account, String.valueOf(960_000 + random.nextInt(accountCount)), 5_000));
+            } else {
+                commands.add(BankCommand.deposit(account, 250_000));
+            }
+        }
 
-        JLabel accountNumberLabel = new JLabel("Account Number: " + currentAccount.getAccountNumber());
-        JLabel accountHolderLabel = new JLabel("Account Holder: " + currentAccount.getAccountHolder());
-        JLabel balanceLabel = new JLabel("Current Balance: " +
-                formatter.format(currentAccount.getBalance()));
-        balanceLabel.setFont(new Font("Arial", Font.BOLD, 16));
+        for (int round = 0; round < 2; round++) {
+            var oneByOne = newBatchBank(accountCount);
+            long singleNanos = timeThreads(1, worker -> {
+                for (BankCommand command : commands) {
+                    Account source = oneByOne.getAccount(command.sourceAccountNumber());
+                    try {
+                        switch (command.type()) {
+                            case DEPOSIT -> source.deposit(command.amount());
+                            case WITHDRAWAL -> source.withdraw(command.amount());
+                            case TRANSFER -> {
+                                Account destination = oneByOne.getAccount(command.destinationAccountNumber());
+                                if (destination != source) {
+                                    source.transfer(destination, command.amount());
+                                }
+                            }
+                        }
+                    } catch (InsufficientFundsException ignored) {
+                    }
+                }
+            });
 
-        infoPanel.add(accountNumberLabel);
-        infoPanel.add(accountHolderLabel);
-        infoPanel.add(balanceLabel);
+            var batched = newBatchBank(accountCount);
+            var approved = new AtomicInteger();
+            long batchNanos = timeThreads(1, worker -> {
+                for (LedgerStatus status : batched.applyBatch(commands)) {
+                    if (status == LedgerStatus.APPROVED) {
+                        approved.incrementAndGet();
+                    }
+                }
+            });
 
-        // Back button
-        JButton backButton = new JButton("Back to Main Menu");
-        backButton.setAlignmentX(Component.CENTER_ALIGNMENT);
+            if (round == 1) {
+                System.out.printf("%-35s| %12.0f%n", "Account calls one at a time", rows * 1e9 / singleNanos);
+                System.out.printf("%-35s| %12.0f  (%d approved)%n", "Bank.applyBatch", rows * 1e9 / batchNanos, approved.get());
+            }
+        }
+    }
 
-        // Add components to the panel
-        balancePanel.add(headerLabel);
-        balancePanel.add(Box.createVerticalStrut(20));
-        balancePanel.add(infoPanel);
-        balancePanel.add(Box.createVerticalStrut(40));
-        balancePanel.add(backButton);
+    /**
+     * A transfer that spends money deposited earlier in the same batch has
+     * to see that deposit, whichever lock stripes the two accounts are on.
+     */
+    private static void checkBatchOrder() {
+        var bank = new Bank("Benchmark");
+        for (int i = 0; i < 64; i++) {
+            bank.addAccount(new Account(String.valueOf(970_000 + i), "0000", "Benchmark", 0));
+        }
+        for (int i = 0; i < 64; i++) {
+            String x = String.valueOf(970_000 + i);
+            String y = String.valueOf(970_000 + (i + 1) % 64);
+            var outcomes = bank.applyBatch(java.util.List.of(
+                    BankCommand.deposit(x, 10_000),
+                    BankCommand.transfer(x, y, 10_000),
+                    BankCommand.withdrawal(y, 10_000)));
+            for (LedgerStatus status : outcomes) {
+                if (status != LedgerStatus.APPROVED) {
+                    throw new IllegalStateException("applyBatch reordered " + x + " -> " + y + ": "
+                            + java.util.Arrays.toString(outcomes));
+                }
+            }
+        }
+    }
 
-        // Back button action
-        backButton.addActionListener(e -> showPanel(mainMenuPanel));
+    private static Bank newBatchBank(int accountCount) {
+        var bank = new Bank("Benchmark");
+        for (int i = 0; i < accountCount; i++) {
+            bank.addAccount(new Account(String.valueOf(960_000 + i), "0000", "Benchmark", Money.ofRupees(100)));
+        }
+        return bank;
     }
 
     /**
-     * Creates the deposit panel
+     * Read-heavy mix on one account: 95% balance inquiries (balance plus the
+     * last five transactions, like an ATM receipt) and 5% deposits, from 1 to
+     * 64 threads.
      */
-    private void createDepositPanel() {
-        depositPanel = new JPanel();
-        depositPanel.setLayout(new BoxLayout(depositPanel, BoxLayout.Y_AXIS));
-        depositPanel.setBorder(BorderFactory.createEmptyBorder(20, 20, 20, 20));
+    static void readHeavyInquiries() {
+        final int opsPerRound = 2_000_000;
 
-        // Formatter for currency
-        // Using Indian Rupee format
-        var formatter = NumberFormat.getCurrencyInstance(new Locale("en", "IN"));
+        System.out.println("""
 
-        // Header
-        JLabel headerLabel = new JLabel("Deposit Funds");
-        headerLabel.setFont(new Font("Arial", Font.BOLD, 24));
-        headerLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
+            Read-heavy account traffic (95% inquiries / 5% deposits on one account)
+            Threads | Inquiries/sec | Deposits/sec
+            ------------------------------------------------""");
+
+        for (int round = -1; round < THREAD_COUNTS.length; round++) {
+            int threads = round < 0 ? 4 : THREAD_COUNTS[round];
+            var account = new Account("970001", "0000", "Benchmark", Money.ofRupees(1_000));
+            int perThread = opsPerRound / threads;
+            var inquiries = new java.util.concurrent.atomic.LongAdder();
+            var deposits = new java.util.concurrent.atomic.LongAdder();
+
+            long nanos = timeThreads(threads, worker -> {
+                long seen = 0;
+                int reads = 0;
+                for (int i = 0; i < perThread; i++) {
+                    if (i % 20 == 0) {
+                        account.deposit(100);
+                    } else {
+                        seen += account.getBalance() + account.getRecentTransactions(5).size();
+                        reads++;
+                    }
+                }
+                inquiries.add(reads);
+                deposits.add(perThread - reads);
+                sink = seen; // keep the reads from being optimised away
+            });
 
-        // Current balance
-        JLabel balanceLabel = new JLabel("Current Balance: " +
-                formatter.format(currentAccount.getBalance()));
-        balanceLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
+            if (round >= 0) {
+                System.out.printf("%7d | %13.0f | %12.0f%n", threads,
+                        inquiries.sum() * 1e9 / nanos, deposits.sum() * 1e9 / nanos);
+            }
+        }
+    }
 
-        // Amount input
-        JPanel amountPanel = new JPanel();
-        amountPanel.setLayout(new FlowLayout(FlowLayout.CENTER));
-        JLabel amountLabel = new JLabel("Enter amount to deposit: ₹");
-        JTextField amountField = new JTextField(10);
-        amountPanel.add(amountLabel);
-        amountPanel.add(amountField);
+    /**
+     * Durable commits through the write-ahead journal: deposits from 1 to 64
+     * threads (each waits for its own commit), then Bank.applyBatch at
+     * growing batch sizes to show commit latency against batch size.
+     */
+    static void journalCommits() {
+        final int commitsPerRound = 20_000;
 
-        // Deposit button
-        JButton depositButton = new JButton("Deposit");
-        depositButton.setAlignmentX(Component.CENTER_ALIGNMENT);
+        System.out.println("""
 
-        // Status label
-        JLabel statusLabel = new JLabel(" ");
-        statusLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
+            Journaled deposits with group commit (each deposit waits for fsync)
+            Threads | Commits/sec  | Avg latency (us) | Records per fsync
+            ----------------------------------------------------------------""");
 
-        // Back button
-        JButton backButton = new JButton("Back to Main Menu");
-        backButton.setAlignmentX(Component.CENTER_ALIGNMENT);
+        try {
+            Path directory = Files.createTempDirectory("atm-journal");
+            int run = 0;
+
+            for (int round = -1; round < THREAD_COUNTS.length; round++) {
+                int threads = round < 0 ? 4 : THREAD_COUNTS[round];
+                Path file = directory.resolve("deposits-" + run++ + ".journal");
+                try (var bank = new Bank("Benchmark", file)) {
+                    var accounts = new Account[threads];
+                    for (int i = 0; i < threads; i++) {
+                        accounts[i] = new Account(String.valueOf(980_000 + i), "0000", "Benchmark", 0);
+                        bank.addAccount(accounts[i]);
+                    }
+                    int perThread = commitsPerRound / threads;
+                    LedgerJournal journal = bank.getJournal();
+                    long flushesBefore = journal.getFlushCount();
+                    long recordsBefore = journal.getFlushedRecords();
+
+                    long nanos = timeThreads(threads, worker -> {
+                        for (int i = 0; i < perThread; i++) {
+                            accounts[worker].deposit(100);
+                        }
+                    });
+
+                    long commits = (long) perThread * threads;
+                    long flushes = journal.getFlushCount() - flushesBefore;
+                    if (round >= 0) {
+                        System.out.printf("%7d | %12.0f | %16.1f | %17.1f%n", threads,
+                                commits * 1e9 / nanos,
+                                nanos / 1e3 * threads / commits,
+                                (double) (journal.getFlushedRecords() - recordsBefore) / Math.max(1, flushes));
+                    }
+                }
+                Files.delete(file);
+            }
 
-        // Add components to the panel
-        depositPanel.add(headerLabel);
-        depositPanel.add(Box.createVerticalStrut(20));
-        depositPanel.add(balanceLabel);
-        depositPanel.add(Box.createVerticalStrut(30));
-        depositPanel.add(amountPanel);
-        depositPanel.add(Box.createVerticalStrut(20));
-        depositPanel.add(depositButton);
-        depositPanel.add(Box.createVerticalStrut(10));
-        depositPanel.add(statusLabel);
-        depositPanel.add(Box.createVerticalStrut(30));
-        depositPanel.add(backButton);
+            System.out.println("""
 
-        // Deposit button action
-        depositButton.addActionListener(e -> {
-            try {
-                double amount = Double.parseDouble(amountField.getText());
+                Journaled Bank.applyBatch (one fsync wait per batch)
+                Batch size | Commit latency (us) | Rows/sec
+                ------------------------------------------------""");
+
+            int[] batchSizes = {1, 10, 100, 1_000, 10_000};
+            for (int round = -1; round < batchSizes.length; round++) {
+                int batchSize = round < 0 ? 100 : batchSizes[round];
+                Path file = directory.resolve("batch-" + run++ + ".journal");
+                try (var bank = new Bank("Benchmark", file)) {
+                    for (int i = 0; i < 1_000; i++) {
+                        bank.addAccount(new Account(String.valueOf(985_000 + i), "0000", "Benchmark", 0));
+                    }
+                    var batch = new ArrayList<BankCommand>(batchSize);
+                    for (int i = 0; i < batchSize; i++) {
+                        batch.add(BankCommand.deposit(String.valueOf(985_000 + i % 1_000), 100));
+                    }
+                    int batches = Math.max(20, commitsPerRound / batchSize);
 
-                if (amount <= 0) {
-                    statusLabel.setForeground(Color.RED);
-                    statusLabel.setText("Invalid amount. Please enter a positive number.");
-                    return;
+                    long nanos = timeThreads(1, worker -> {
+                        for (int i = 0; i < batches; i++) {
+                            bank.applyBatch(batch);
+                        }
+                    });
+
+                    if (round >= 0) {
+                        System.out.printf("%10d | %19.1f | %12.0f%n", batchSize,
+                                nanos / 1e3 / batches, (double) batches * batchSize * 1e9 / nanos);
+                    }
                 }
+                Files.delete(file);
+            }
+            Files.delete(directory);
+        } catch (IOException e) {
+            System.out.println("Journal benchmark failed: " + e.getMessage());
+        }
+    }
 
-                boolean success = currentAccount.deposit(amount);
+    /**
+     * Builds a journaled bank with the given number of accounts and
+     * transactions, snapshots it, adds a short tail of transactions after the
+     * snapshot and then measures startup from snapshot plus tail against
+     * replaying the whole journal.
+     */
+    static void snapshotStartup(int accountCount, long transactionCount) {
+        final int batchSize = 10_000;
+        long tailCount = Math.max(batchSize, transactionCount / 100);
 
-                if (success) {
-                    statusLabel.setForeground(Color.GREEN.darker());
-                    statusLabel.setText("Deposit successful! New balance: " +
-                            formatter.format(currentAccount.getBalance()));
-                    balanceLabel.setText("Current Balance: " +
-                            formatter.format(currentAccount.getBalance()));
-                    amountField.setText("");
+        System.out.printf("""
+
+            Startup from snapshot vs full journal replay (%,d accounts, %,d transactions + %,d after the snapshot)
+            Step                               | Seconds      | Detail
+            ----------------------------------------------------------------%n""",
+                accountCount, transactionCount, tailCount);
+
+        try {
+            Path directory = Files.createTempDirectory("atm-startup");
+            Path journalFile = directory.resolve("ledger.journal");
+            long expectedTotal;
+
+            try (var bank = new Bank("Benchmark", journalFile)) {
+                long nanos = timeThreads(64, worker -> {
+                    for (int i = worker; i < accountCount; i += 64) {
+                        bank.addAccount(new Account(String.valueOf(10_000_000 + i), "0000", "Benchmark", Money.ofRupees(1_000)));
+                    }
+                });
+                System.out.printf("%-35s| %12.1f | %,.0f accounts/sec%n", "Open accounts", nanos / 1e9, accountCount * 1e9 / nanos);
+
+                nanos = timeThreads(1, worker -> applyRandomBatches(bank, accountCount, transactionCount, batchSize, 7));
+                System.out.printf("%-35s| %12.1f | %,.0f transactions/sec%n", "Apply transactions", nanos / 1e9,
+                        transactionCount * 1e9 / nanos);
+
+                long start = System.nanoTime();
+                int written = bank.snapshot();
+                nanos = System.nanoTime() - start;
+                System.out.printf("%-35s| %12.1f | %,d accounts%n", "Take snapshot", nanos / 1e9, written);
+
+                applyRandomBatches(bank, accountCount, tailCount, batchSize, 11);
+                expectedTotal = totalBalance(bank);
+            }
+            System.out.printf("%-35s| %12s | journal %,d MB, history %,d MB%n", "On disk", "",
+                    Files.size(journalFile) >> 20, directorySize(directory.resolve("history")) >> 20);
+
+            long start = System.nanoTime();
+            try (var bank = new Bank("Benchmark", journalFile)) {
+                long nanos = System.nanoTime() - start;
+                System.out.printf("%-35s| %12.1f | %s%n", "Startup: snapshot + journal tail", nanos / 1e9,
+                        totalBalance(bank) == expectedTotal ? "balances OK" : "BALANCE MISMATCH");
+            }
+
+            Files.delete(directory.resolve("snapshot.dat"));
+            start = System.nanoTime();
+            try (var bank = new Bank("Benchmark", journalFile)) {
+                long nanos = System.nanoTime() - start;
+                System.out.printf("%-35s| %12.1f | %s%n", "Startup: full journal replay", nanos / 1e9,
+                        totalBalance(bank) == expectedTotal ? "balances OK" : "BALANCE MISMATCH");
+            }
+
+            try (var files = Files.walk(directory)) {
+                files.sorted(java.util.Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        } catch (IOException e) {
+            System.out.println("Startup benchmark failed: " + e.getMessage());
+        }
+    }
+
+    private static void applyRandomBatches(Bank bank, int accountCount, long rows, int batchSize, long seed) {
+        var random = new java.util.Random(seed);
+        var batch = new ArrayList<BankCommand>(batchSize);
+        for (long done = 0; done < rows; done += batch.size()) {
+            batch.clear();
+            for (int i = 0; i < batchSize && done + i < rows; i++) {
+                String account = String.valueOf(10_000_000 + random.nextInt(accountCount));
+                int kind = random.nextInt(10);
+                if (kind == 0) {
+                    batch.add(BankCommand.withdrawal(account, 5_000));
+                } else if (kind == 1) {
+                    batch.add(BankCommand.transfer(account, String.valueOf(10_000_000 + random.nextInt(accountCount)), 2_500));
                 } else {
-                    statusLabel.setForeground(Color.RED);
-                    statusLabel.setText("Deposit failed. Please try again.");
+                    batch.add(BankCommand.deposit(account, 10_000));
                 }
-            } catch (NumberFormatException ex) {
-                statusLabel.setForeground(Color.RED);
-                statusLabel.setText("Invalid input. Please enter a valid amount.");
-            } catch (Exception ex) {
-                statusLabel.setForeground(Color.RED);
-                statusLabel.setText("Error: " + ex.getMessage());
             }
-        });
+            bank.applyBatch(batch);
+        }
+    }
 
-        // Back button action
-        backButton.addActionListener(e -> showPanel(mainMenuPanel));
+    private static long totalBalance(Bank bank) {
+        return bank.findAccounts(account -> true).stream().mapToLong(Account::getBalance).sum();
+    }
+
+    private static long directorySize(Path directory) throws IOException {
+        try (var files = Files.list(directory)) {
+            return files.mapToLong(path -> path.toFile().length()).sum();
+        }
     }
 
     /**
-     * Creates the withdraw panel
+     * Writes a CSV of the given number of accounts and loads it with the
+     * streaming parallel loader, into an in-memory and a journaled bank,
+     * against adding the same accounts one at a time.
      */
-    private void createWithdrawPanel() {
-        withdrawPanel = new JPanel();
-        withdrawPanel.setLayout(new BoxLayout(withdrawPanel, BoxLayout.Y_AXIS));
-        withdrawPanel.setBorder(BorderFactory.createEmptyBorder(20, 20, 20, 20));
-
-        // Formatter for currency
-        // Using Indian Rupee format
-        var formatter = NumberFormat.getCurrencyInstance(new Locale("en", "IN"));
+    static void bulkLoad(int rows) {
+        System.out.printf("""
 
-        // Header
-        JLabel headerLabel = new JLabel("Withdraw Funds");
-        headerLabel.setFont(new Font("Arial", Font.BOLD, 24));
-        headerLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
-
-        // Current balance
-        JLabel balanceLabel = new JLabel("Current Balance: " +
-                formatter.format(currentAccount.getBalance()));
-        balanceLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
+            Bulk account loading (%,d rows)
+            Method                             | Seconds      | Rows/sec     | MB/sec       | Peak heap MB
+            ------------------------------------------------------------------------------------------------%n""",
+                rows);
 
-        // Amount input
-        JPanel amountPanel = new JPanel();
-        amountPanel.setLayout(new FlowLayout(FlowLayout.CENTER));
-        JLabel amountLabel = new JLabel("Enter amount to withdraw: ₹");
-        JTextField amountField = new JTextField(10);
-        amountPanel.add(amountLabel);
-        amountPanel.add(amountField);
+        try {
+            Path directory = Files.createTempDirectory("atm-loader");
+            Path csv = directory.resolve("accounts.csv");
+            try (var out = Files.newBufferedWriter(csv)) {
+                out.write("# accountNumber,pin,holder,balance\n");
+                for (int i = 0; i < rows; i++) {
+                    out.write(String.valueOf(10_000_000 + i));
+                    out.write(i % 10 == 0 ? ",0000,Sharma, Priya," : ",0000,Benchmark Customer,");
+                    out.write(String.valueOf(1_000 + i % 5_000));
+                    out.write(i % 4 == 0 ? ".50\n" : "\n");
+                }
+            }
+            double megabytes = Files.size(csv) / (double) (1 << 20);
+
+            resetHeapPeaks();
+            long start = System.nanoTime();
+            try (var reader = Files.newBufferedReader(csv)) {
+                var bank = new Bank("Benchmark");
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isEmpty() || line.charAt(0) == '#') {
+                        continue;
+                    }
+                    int first = line.indexOf(',');
+                    int second = line.indexOf(',', first + 1);
+                    int last = line.lastIndexOf(',');
+                    sink += bank.addAccount(bank.newAccount(line.substring(0, first), line.substring(first + 1, second),
+                            line.substring(second + 1, last).trim(), Money.parse(line.substring(last + 1)))) ? 1 : 0;
+                }
+            }
+            printLoad("One at a time (readLine + split)", rows, megabytes, System.nanoTime() - start);
+
+            System.gc();
+            resetHeapPeaks();
+            start = System.nanoTime();
+            var bank = new Bank("Benchmark");
+            var result = bank.loadAccounts(csv);
+            printLoad("Streaming parallel loader", result.loaded(), megabytes, System.nanoTime() - start);
+            sink += totalBalance(bank);
+            bank = null;
+
+            System.gc();
+            resetHeapPeaks();
+            start = System.nanoTime();
+            try (var journaled = new Bank("Benchmark", directory.resolve("ledger.journal"))) {
+                result = journaled.loadAccounts(csv);
+                printLoad("Streaming loader, journaled bank", result.loaded(), megabytes, System.nanoTime() - start);
+            }
 
-        // Quick withdrawal buttons
-        JPanel quickWithdrawPanel = new JPanel();
-        quickWithdrawPanel.setLayout(new FlowLayout(FlowLayout.CENTER));
-        JButton btn20 = new JButton("₹20");
-        JButton btn50 = new JButton("₹50");
-        JButton btn100 = new JButton("₹100");
-        JButton btn200 = new JButton("₹200");
+            try (var files = Files.walk(directory)) {
+                files.sorted(java.util.Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        } catch (IOException e) {
+            System.out.println("Loader benchmark failed: " + e.getMessage());
+        }
+    }
 
-        quickWithdrawPanel.add(btn20);
-        quickWithdrawPanel.add(btn50);
-        quickWithdrawPanel.add(btn100);
-        quickWithdrawPanel.add(btn200);
+    private static void printLoad(String label, long rows, double megabytes, long nanos) {
+        System.out.printf("%-35s| %12.1f | %12.0f | %12.1f | %12d%n", label, nanos / 1e9,
+                rows * 1e9 / nanos, megabytes * 1e9 / nanos, peakHeapBytes() >> 20);
+    }
 
-        // Withdraw button
-        JButton withdrawButton = new JButton("Withdraw");
-        withdrawButton.setAlignmentX(Component.CENTER_ALIGNMENT);
+    private static void resetHeapPeaks() {
+        for (var pool : java.lang.management.ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == java.lang.management.MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
 
-        // Status label
-        JLabel statusLabel = new JLabel(" ");
-        statusLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
+    private static long peakHeapBytes() {
+        long peak = 0;
+        for (var pool : java.lang.management.ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == java.lang.management.MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
 
-        // Back button
-        JButton backButton = new JButton("Back to Main Menu");
-        backButton.setAlignmentX(Component.CENTER_ALIGNMENT);
+    /**
+     * Puts the same transactions on one account as a list of Transaction
+     * objects and in the columnar store, then compares heap used per
+     * transaction and how long a total by type takes.
+     */
+    static void historyStorage(int transactions) {
+        final int scans = 20;
+        System.out.printf("""
+
+            Transaction history storage (%,d transactions on one account, %d scans)
+            Layout                             | Bytes/txn    | Scan ms      | ns/txn
+            ----------------------------------------------------------------------------%n""",
+                transactions, scans);
+
+        var types = new TransactionType[transactions];
+        var amounts = new long[transactions];
+        for (int i = 0; i < transactions; i++) {
+            types[i] = i % 5 == 0 ? TransactionType.TRANSFER : i % 2 == 0 ? TransactionType.DEPOSIT : TransactionType.WITHDRAWAL;
+            amounts[i] = 100 + i % 10_000;
+        }
+        String owner = "10000000";
+        var counterparties = new String[1_000];
+        for (int i = 0; i < counterparties.length; i++) {
+            counterparties[i] = String.valueOf(20_000_000 + i);
+        }
+        long now = System.currentTimeMillis();
 
-        // Add components to the panel
-        withdrawPanel.add(headerLabel);
-        withdrawPanel.add(Box.createVerticalStrut(20));
-        withdrawPanel.add(balanceLabel);
-        withdrawPanel.add(Box.createVerticalStrut(20));
-        withdrawPanel.add(amountPanel);
-        withdrawPanel.add(Box.createVerticalStrut(10));
-        withdrawPanel.add(new JLabel("Quick Withdraw:"));
-        withdrawPanel.add(quickWithdrawPanel);
-        withdrawPanel.add(Box.createVerticalStrut(20));
-        withdrawPanel.add(withdrawButton);
-        withdrawPanel.add(Box.createVerticalStrut(10));
-        withdrawPanel.add(statusLabel);
-        withdrawPanel.add(Box.createVerticalStrut(30));
-        withdrawPanel.add(backButton);
+        listHistory(types, amounts, owner, counterparties, now, scans);
+        columnarHistory(types, amounts, owner, counterparties, now, scans);
+    }
 
-        // Quick withdraw button actions
-        btn20.addActionListener(e -> amountField.setText("20"));
-        btn50.addActionListener(e -> amountField.setText("50"));
-        btn100.addActionListener(e -> amountField.setText("100"));
-        btn200.addActionListener(e -> amountField.setText("200"));
+    // The list the account used to keep: one object graph per transaction
+    private static void listHistory(TransactionType[] types, long[] amounts, String owner, String[] counterparties,
+                                    long now, int scans) {
+        int transactions = types.length;
+        long before = usedHeapAfterGc();
+        var list = new ArrayList<Transaction>();
+        for (int i = 0; i < transactions; i++) {
+            String other = counterparties[i % counterparties.length];
+            list.add(switch (types[i]) {
+                case DEPOSIT -> new Transaction(types[i], amounts[i], "Deposit to account", new Date(now + i), owner, owner);
+                case WITHDRAWAL -> new Transaction(types[i], amounts[i], "Withdrawal from account", new Date(now + i), owner, owner);
+                case TRANSFER -> new Transaction(types[i], amounts[i], "Transfer to account " + other, new Date(now + i), owner, other);
+            });
+        }
+        double bytes = (double) (usedHeapAfterGc() - before) / transactions;
+        for (int s = 0; s < scans; s++) { // warm up
+            sink += list.stream().filter(t -> t.getType() == TransactionType.DEPOSIT).mapToLong(Transaction::getAmount).sum();
+        }
+        long start = System.nanoTime();
+        for (int s = 0; s < scans; s++) {
+            sink += list.stream().filter(t -> t.getType() == TransactionType.DEPOSIT).mapToLong(Transaction::getAmount).sum();
+        }
+        printHistoryRow("ArrayList<Transaction>", bytes, System.nanoTime() - start, scans, transactions);
+    }
 
-        // Withdraw button action
-        withdrawButton.addActionListener(e -> {
-            try {
-                double amount = Double.parseDouble(amountField.getText());
+    private static void columnarHistory(TransactionType[] types, long[] amounts, String owner, String[] counterparties,
+                                        long now, int scans) {
+        int transactions = types.length;
+        long before = usedHeapAfterGc();
+        var store = TransactionStore.inMemory(1 << 20);
+        var log = new TransactionLog(owner, store);
+        for (int i = 0; i < transactions; i++) {
+            switch (types[i]) {
+                case DEPOSIT -> log.append(types[i], TransactionStore.DEPOSIT, amounts[i], now + i, null, i + 1);
+                case WITHDRAWAL -> log.append(types[i], TransactionStore.WITHDRAWAL, amounts[i], now + i, null, i + 1);
+                case TRANSFER -> log.append(types[i], TransactionStore.TRANSFER_OUT, amounts[i], now + i,
+                        counterparties[i % counterparties.length], i + 1);
+            }
+        }
+        double bytes = (double) (usedHeapAfterGc() - before) / transactions;
+        for (int s = 0; s < scans; s++) {
+            sink += log.scanTotal(TransactionType.DEPOSIT);
+        }
+        long start = System.nanoTime();
+        for (int s = 0; s < scans; s++) {
+            sink += log.scanTotal(TransactionType.DEPOSIT);
+        }
+        printHistoryRow("Columnar chunks", bytes, System.nanoTime() - start, scans, transactions);
+    }
 
-                if (amount <= 0) {
-                    statusLabel.setForeground(Color.RED);
-                    statusLabel.setText("Invalid amount. Please enter a positive number.");
-                    return;
-                }
+    /**
+     * Opens the history of accounts of growing size: a full copy against
+     * the first page, and paging through all of it with tokens.
+     */
+    static void historyPages() {
+        final int pageSize = 20;
+        System.out.printf("""
+
+            History paging (page size %d)
+            Transactions | Full copy µs  | First page µs | All pages ms
+            ---------------------------------------------------------------%n""", pageSize);
+
+        for (int transactions : new int[] {1_000, 10_000, 100_000, 1_000_000}) {
+            var account = new Account("10000000", "0000", "Benchmark", 0, TransactionStore.inMemory(1 << 20));
+            var date = new Date();
+            for (int i = 0; i < transactions; i++) {
+                account.depositAt(100 + i % 1_000, date);
+            }
 
-                boolean success = currentAccount.withdraw(amount);
+            int rounds = Math.max(3, 1_000_000 / transactions);
+            for (int i = 0; i < rounds; i++) { // warm up
+                sink += account.getTransactionHistory().size();
+            }
+            long start = System.nanoTime();
+            for (int i = 0; i < rounds; i++) {
+                sink += account.getTransactionHistory().size();
+            }
+            double copyMicros = (System.nanoTime() - start) / 1e3 / rounds;
 
-                if (success) {
-                    statusLabel.setForeground(Color.GREEN.darker());
-                    statusLabel.setText("Withdrawal successful! New balance: " +
-                            formatter.format(currentAccount.getBalance()));
-                    balanceLabel.setText("Current Balance: " +
-                            formatter.format(currentAccount.getBalance()));
-                    amountField.setText("");
-                } else {
-                    statusLabel.setForeground(Color.RED);
-                    statusLabel.setText("Withdrawal failed. Please try again.");
-                }
-            } catch (NumberFormatException ex) {
-                statusLabel.setForeground(Color.RED);
-                statusLabel.setText("Invalid input. Please enter a valid amount.");
-            } catch (InsufficientFundsException ex) {
-                statusLabel.setForeground(Color.RED);
-                statusLabel.setText("Error: " + ex.getMessage());
-            } catch (Exception ex) {
-                statusLabel.setForeground(Color.RED);
-                statusLabel.setText("Error: " + ex.getMessage());
+            final int pageRounds = 100_000;
+            for (int i = 0; i < pageRounds; i++) { // warm up
+                sink += account.getHistoryPage(pageSize).transactions().size();
             }
-        });
+            start = System.nanoTime();
+            for (int i = 0; i < pageRounds; i++) {
+                sink += account.getHistoryPage(pageSize).transactions().size();
+            }
+            double pageMicros = (System.nanoTime() - start) / 1e3 / pageRounds;
+
+            start = System.nanoTime();
+            var page = account.getHistoryPage(pageSize);
+            long seen = page.transactions().size();
+            while (page.hasMore()) {
+                page = account.getHistoryPage(page.nextToken(), pageSize);
+                seen += page.transactions().size();
+            }
+            double allMillis = (System.nanoTime() - start) / 1e6;
+            sink += seen;
 
-        // Back button action
-        backButton.addActionListener(e -> showPanel(mainMenuPanel));
+            System.out.printf("%12d | %13.1f | %13.2f | %12.1f%s%n", transactions, copyMicros, pageMicros, allMillis,
+                    seen == transactions ? "" : "  (saw " + seen + ")");
+        }
     }
 
     /**
-     * Creates the transfer panel
+     * Times the three per-type totals a history screen shows, read from the
+     * running totals against summing the history, for accounts of growing size.
      */
-    private void createTransferPanel() {
-        transferPanel = new JPanel();
-        transferPanel.setLayout(new BoxLayout(transferPanel, BoxLayout.Y_AXIS));
-        transferPanel.setBorder(BorderFactory.createEmptyBorder(20, 20, 20, 20));
+    static void historyStatistics() {
+        System.out.print("""
 
-        // Formatter for currency
-        // Using Indian Rupee format
-        var formatter = NumberFormat.getCurrencyInstance(new Locale("en", "IN"));
-
-        // Header
-        JLabel headerLabel = new JLabel("Transfer Funds");
-        headerLabel.setFont(new Font("Arial", Font.BOLD, 24));
-        headerLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
+            History statistics (deposit, withdrawal and transfer totals)
+            Transactions | History µs    | Running µs    | Today µs
+            ---------------------------------------------------------------
+            """);
 
-        // Current balance
-        JLabel balanceLabel = new JLabel("Current Balance: " +
-                formatter.format(currentAccount.getBalance()));
-        balanceLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
+        var types = TransactionType.values();
+        for (int transactions : new int[] {1_000, 10_000, 100_000, 1_000_000}) {
+            var account = new Account("10000000", "0000", "Benchmark", 0, TransactionStore.inMemory(1 << 20));
+            var other = new Account("20000000", "0000", "Benchmark", 0);
+            var date = new Date();
+            try {
+                for (int i = 0; i < transactions; i++) {
+                    switch (i % 3) {
+                        case 0 -> account.depositAt(1_000, date);
+                        case 1 -> account.withdrawAt(500, date);
+                        default -> account.transferAt(other, 100, date);
+                    }
+                }
+            } catch (InsufficientFundsException e) {
+                throw new IllegalStateException(e); // every withdrawal follows a larger deposit
+            }
 
-        // Destination account input
-        JPanel destAccountPanel = new JPanel();
-        destAccountPanel.setLayout(new FlowLayout(FlowLayout.CENTER));
-        JLabel destAccountLabel = new JLabel("Destination Account: ");
-        JTextField destAccountField = new JTextField(10);
-        JButton verifyButton = new JButton("Verify");
-        destAccountPanel.add(destAccountLabel);
-        destAccountPanel.add(destAccountField);
-        destAccountPanel.add(verifyButton);
+            int scanRounds = Math.max(3, 1_000_000 / transactions);
+            int rounds = 1_000_000;
+            var today = LocalDate.now();
+            for (int i = 0; i < rounds; i++) { // warm up
+                sink += account.getTotalForTransactionType(types[i % 3])
+                        + account.getDailyTotal(TransactionType.WITHDRAWAL, today);
+            }
 
-        // Verification result
-        JLabel verificationLabel = new JLabel(" ");
-        verificationLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
+            long start = System.nanoTime();
+            for (int i = 0; i < scanRounds; i++) {
+                for (var type : types) {
+                    sink += account.getTransactionHistory().stream()
+                            .filter(t -> t.getType() == type).mapToLong(Transaction::getAmount).sum();
+                }
+            }
+            double scanMicros = (System.nanoTime() - start) / 1e3 / scanRounds;
 
-        // Amount input
-        JPanel amountPanel = new JPanel();
-        amountPanel.setLayout(new FlowLayout(FlowLayout.CENTER));
-        JLabel amountLabel = new JLabel("Amount to Transfer: ₹");
-        JTextField amountField = new JTextField(10);
-        amountPanel.add(amountLabel);
-        amountPanel.add(amountField);
+            start = System.nanoTime();
+            for (int i = 0; i < rounds; i++) {
+                for (var type : types) {
+                    sink += account.getTotalForTransactionType(type);
+                }
+            }
+            double runningMicros = (System.nanoTime() - start) / 1e3 / rounds;
 
-        // Transfer button
-        JButton transferButton = new JButton("Transfer");
-        transferButton.setAlignmentX(Component.CENTER_ALIGNMENT);
-        transferButton.setEnabled(false); // Disabled until account is verified
+            start = System.nanoTime();
+            for (int i = 0; i < rounds; i++) {
+                sink += account.getDailyTotal(TransactionType.WITHDRAWAL, today);
+            }
+            double todayMicros = (System.nanoTime() - start) / 1e3 / rounds;
 
-        // Status label
-        JLabel statusLabel = new JLabel(" ");
-        statusLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
+            System.out.printf("%12d | %13.1f | %13.3f | %13.3f%n", transactions, scanMicros, runningMicros, todayMicros);
+        }
+    }
 
-        // Back button
-        JButton backButton = new JButton("Back to Main Menu");
-        backButton.setAlignmentX(Component.CENTER_ALIGNMENT);
+    /**
+     * Builds one account with a transaction a minute and times date-range
+     * queries and the mini-statement through the index, against filtering a
+     * full copy of the history.
+     */
+    static void historyRanges(int transactions) {
+        System.out.printf("""
 
-        // Add components to the panel
-        transferPanel.add(headerLabel);
-        transferPanel.add(Box.createVerticalStrut(20));
-        transferPanel.add(balanceLabel);
-        transferPanel.add(Box.createVerticalStrut(20));
-        transferPanel.add(destAccountPanel);
-        transferPanel.add(Box.createVerticalStrut(5));
-        transferPanel.add(verificationLabel);
-        transferPanel.add(Box.createVerticalStrut(10));
-        transferPanel.add(amountPanel);
-        transferPanel.add(Box.createVerticalStrut(20));
-        transferPanel.add(transferButton);
-        transferPanel.add(Box.createVerticalStrut(10));
-        transferPanel.add(statusLabel);
-        transferPanel.add(Box.createVerticalStrut(30));
-        transferPanel.add(backButton);
+            History range queries (%,d transactions, one a minute)
+            Query                              | Filter copy µs | Indexed µs    | Rows
+            ------------------------------------------------------------------------------%n""", transactions);
 
-        // Verify button action
-        verifyButton.addActionListener(e -> {
-            String destinationAccountNumber = destAccountField.getText();
+        var account = new Account("10000000", "0000", "Benchmark", 0, TransactionStore.inMemory(1 << 20));
+        long start = System.currentTimeMillis() - transactions * 60_000L;
+        for (int i = 0; i < transactions; i++) {
+            account.depositAt(100 + i % 1_000, new Date(start + i * 60_000L));
+        }
 
-            if (destinationAccountNumber.equals(currentAccount.getAccountNumber())) {
-                verificationLabel.setForeground(Color.RED);
-                verificationLabel.setText("Cannot transfer to the same account");
-                transferButton.setEnabled(false);
-                return;
+        var random = new java.util.Random(3);
+        long span = transactions * 60_000L;
+        record Query(String name, long length) {}
+        for (var query : java.util.List.of(new Query("One hour", 3_600_000L), new Query("One day", 86_400_000L),
+                new Query("Thirty days", 30 * 86_400_000L))) {
+            var froms = new long[64];
+            for (int i = 0; i < froms.length; i++) {
+                froms[i] = start + (long) (random.nextDouble() * Math.max(1, span - query.length()));
             }
 
-            Account destinationAccount = bank.getAccount(destinationAccountNumber);
+            int copyRounds = 5;
+            long nanos = System.nanoTime();
+            for (int i = 0; i < copyRounds; i++) {
+                long from = froms[i];
+                long to = from + query.length();
+                sink += account.getTransactionHistory().stream()
+                        .filter(t -> t.getTimestampMillis() >= from && t.getTimestampMillis() < to)
+                        .count();
+            }
+            double copyMicros = (System.nanoTime() - nanos) / 1e3 / copyRounds;
 
-            if (destinationAccount != null) {
-                verificationLabel.setForeground(Color.GREEN.darker());
-                verificationLabel.setText("Account verified: " + destinationAccount.getAccountHolder());
-                transferButton.setEnabled(true);
-            } else {
-                verificationLabel.setForeground(Color.RED);
-                verificationLabel.setText("Account not found");
-                transferButton.setEnabled(false);
+            int rounds = 20_000;
+            long rows = 0;
+            for (int i = 0; i < rounds; i++) { // warm up
+                long from = froms[i % froms.length];
+                sink += account.getTransactionsBetween(new Date(from), new Date(from + query.length())).size();
             }
-        });
+            nanos = System.nanoTime();
+            for (int i = 0; i < rounds; i++) {
+                long from = froms[i % froms.length];
+                rows += account.getTransactionsBetween(new Date(from), new Date(from + query.length())).size();
+            }
+            double indexedMicros = (System.nanoTime() - nanos) / 1e3 / rounds;
+            sink += rows;
+            System.out.printf("%-35s| %14.1f | %13.2f | %d%n", query.name(), copyMicros, indexedMicros, rows / rounds);
+        }
 
-        // Transfer button action
-        transferButton.addActionListener(e -> {
-            try {
-                String destinationAccountNumber = destAccountField.getText();
-                Account destinationAccount = bank.getAccount(destinationAccountNumber);
+        int copyRounds = 5;
+        long nanos = System.nanoTime();
+        for (int i = 0; i < copyRounds; i++) {
+            var all = account.getTransactionHistory();
+            sink += all.subList(all.size() - Account.MINI_STATEMENT_SIZE, all.size()).size();
+        }
+        double copyMicros = (System.nanoTime() - nanos) / 1e3 / copyRounds;
+        int rounds = 200_000;
+        for (int i = 0; i < rounds; i++) { // warm up
+            sink += account.getMiniStatement().size();
+        }
+        nanos = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            sink += account.getMiniStatement().size();
+        }
+        System.out.printf("%-35s| %14.1f | %13.2f | %d%n", "Mini-statement", copyMicros,
+                (System.nanoTime() - nanos) / 1e3 / rounds, Account.MINI_STATEMENT_SIZE);
+    }
 
-                if (destinationAccount == null) {
-                    statusLabel.setForeground(Color.RED);
-                    statusLabel.setText("Destination account not found");
-                    return;
-                }
+    /**
+     * Grows one busy account's history with every segment on the heap and
+     * with the default tiered store, and compares the heap it keeps, append
+     * cost, and paging through to the oldest transaction.
+     */
+    static void historyTiers() {
+        final int pageSize = 50;
+        System.out.printf("""
+
+            Tiered history (one account, page size %d)
+            Store        | Transactions | Heap MB  | Append ns | First page µs | All pages ms | Spilled MB
+            --------------------------------------------------------------------------------------------%n""",
+                pageSize);
+
+        for (int transactions : new int[] {100_000, 1_000_000, 4_000_000}) {
+            tierRow("On heap", TransactionStore.inMemory(TransactionStore.HEAP_SEGMENT_BYTES), transactions, pageSize);
+            tierRow("Tiered", TransactionStore.tiered(TransactionStore.HEAP_SEGMENT_BYTES,
+                    TransactionStore.HEAP_HOT_SEGMENTS), transactions, pageSize);
+        }
+    }
+
+    private static void tierRow(String label, TransactionStore store, int transactions, int pageSize) {
+        long before = usedHeapAfterGc();
+        var account = new Account("10000000", "0000", "Benchmark", 0, store);
+        long time = System.currentTimeMillis();
+        long start = System.nanoTime();
+        for (int i = 0; i < transactions; i++) {
+            account.depositAt(100 + i % 1_000, new Date(time + i));
+        }
+        double appendNanos = (double) (System.nanoTime() - start) / transactions;
+        double heapMegabytes = (usedHeapAfterGc() - before) / 1e6;
 
-                double amount = Double.parseDouble(amountField.getText());
+        final int pageRounds = 100_000;
+        for (int i = 0; i < pageRounds; i++) { // warm up
+            sink += account.getHistoryPage(pageSize).transactions().size();
+        }
+        start = System.nanoTime();
+        for (int i = 0; i < pageRounds; i++) {
+            sink += account.getHistoryPage(pageSize).transactions().size();
+        }
+        double pageMicros = (System.nanoTime() - start) / 1e3 / pageRounds;
+
+        start = System.nanoTime();
+        var page = account.getHistoryPage(pageSize);
+        long seen = page.transactions().size();
+        while (page.hasMore()) {
+            page = account.getHistoryPage(page.nextToken(), pageSize);
+            seen += page.transactions().size();
+        }
+        double allMillis = (System.nanoTime() - start) / 1e6;
+        sink += seen;
 
-                if (amount <= 0) {
-                    statusLabel.setForeground(Color.RED);
-                    statusLabel.setText("Invalid amount. Please enter a positive number.");
-                    return;
+        System.out.printf("%-13s| %12d | %8.1f | %9.1f | %13.2f | %12.1f | %10.1f%s%n", label, transactions,
+                heapMegabytes, appendNanos, pageMicros, allMillis, store.getSpilledBytes() / 1e6,
+                seen == transactions ? "" : "  (saw " + seen + ")");
+    }
+
+    /**
+     * Measures what recording and reading transactions allocate now that
+     * descriptions are stored as codes and rendered on demand.
+     */
+    static void transactionDescriptions() {
+        final int transactions = 1_000_000;
+        final int pageSize = 50;
+        System.out.print("""
+
+            Transaction descriptions (bytes allocated and time per transaction)
+            Operation                          | Bytes/txn    | ns/txn
+            -------------------------------------------------------------
+            """);
+
+        var account = new Account("10000000", "0000", "Benchmark", Money.ofRupees(1_000_000_000),
+                TransactionStore.inMemory(1 << 20));
+        var other = new Account("20000000", "0000", "Benchmark", 0, TransactionStore.inMemory(1 << 20));
+        var date = new Date();
+        try {
+            for (int round = 0; round < 2; round++) { // the first round warms up
+                long bytes = allocatedBytes();
+                long start = System.nanoTime();
+                for (int i = 0; i < transactions; i++) {
+                    account.depositAt(1, date);
                 }
+                printDescriptionRow("Record deposit", bytes, start, transactions, round);
 
-                boolean success = currentAccount.transfer(destinationAccount, amount);
+                bytes = allocatedBytes();
+                start = System.nanoTime();
+                for (int i = 0; i < transactions; i++) {
+                    account.transferAt(other, 1, date);
+                }
+                printDescriptionRow("Record transfer", bytes, start, transactions, round);
 
-                if (success) {
-                    statusLabel.setForeground(Color.GREEN.darker());
-                    statusLabel.setText("Transfer successful! New balance: " +
-                            formatter.format(currentAccount.getBalance()));
-                    balanceLabel.setText("Current Balance: " +
-                            formatter.format(currentAccount.getBalance()));
-                    amountField.setText("");
-                    transferButton.setEnabled(false);
-                    verificationLabel.setText(" ");
-                    destAccountField.setText("");
-                } else {
-                    statusLabel.setForeground(Color.RED);
-                    statusLabel.setText("Transfer failed. Please try again.");
+                bytes = allocatedBytes();
+                start = System.nanoTime();
+                for (int i = 0; i < transactions / pageSize; i++) {
+                    for (var t : account.getHistoryPage(pageSize).transactions()) {
+                        sink += t.getAmount();
+                    }
                 }
-            } catch (NumberFormatException ex) {
-                statusLabel.setForeground(Color.RED);
-                statusLabel.setText("Invalid input. Please enter a valid amount.");
-            } catch (InsufficientFundsException ex) {
-                statusLabel.setForeground(Color.RED);
-                statusLabel.setText("Error: " + ex.getMessage());
-            } catch (Exception ex) {
-                statusLabel.setForeground(Color.RED);
-                statusLabel.setText("Error: " + ex.getMessage());
+                printDescriptionRow("Read pages, amounts only", bytes, start, transactions, round);
+
+                bytes = allocatedBytes();
+                start = System.nanoTime();
+                for (int i = 0; i < transactions / pageSize; i++) {
+                    for (var t : account.getHistoryPage(pageSize).transactions()) {
+                        sink += t.getDescription().length();
+                    }
+                }
+                printDescriptionRow("Read pages with descriptions", bytes, start, transactions, round);
             }
-        });
+        } catch (InsufficientFundsException e) {
+            throw new IllegalStateException(e); // the balance covers every transfer
+        }
+    }
+
+    private static void printDescriptionRow(String label, long bytesBefore, long start, int transactions, int round) {
+        long nanos = System.nanoTime() - start;
+        long bytes = allocatedBytes() - bytesBefore;
+        if (round > 0) {
+            System.out.printf("%-35s| %12.1f | %12.1f%n", label, (double) bytes / transactions, (double) nanos / transactions);
+        }
+    }
 
-        // Back button action
-        backButton.addActionListener(e -> showPanel(mainMenuPanel));
+    private static long allocatedBytes() {
+        var threads = (com.sun.management.ThreadMXBean) java.lang.management.ManagementFactory.getThreadMXBean();
+        return threads.getThreadAllocatedBytes(Thread.currentThread().threadId());
     }
 
     /**
-     * Creates the transaction history panel
+     * Measures taking transaction ids from several threads at once, and
+     * finding a transaction by id through the bank's index against
+     * scanning every account's history for it.
      */
-    private void createHistoryPanel() {
-        historyPanel = new JPanel();
-        historyPanel.setLayout(new BorderLayout(10, 10));
-        historyPanel.setBorder(BorderFactory.createEmptyBorder(20, 20, 20, 20));
+    static void transactionIds() {
+        final int idsPerThread = 1_000_000;
+        System.out.print("""
 
-        // Header
-        JLabel headerLabel = new JLabel("Transaction History", JLabel.CENTER);
-        headerLabel.setFont(new Font("Arial", Font.BOLD, 24));
+            Transaction ids (1,000,000 per thread)
+            Threads | Ids/sec
+            ------------------------------------------------
+            """);
+        for (int threads : THREAD_COUNTS) {
+            var ids = new TransactionIds(1);
+            long nanos = timeThreads(threads, worker -> {
+                long previous = 0;
+                for (int i = 0; i < idsPerThread; i++) {
+                    long id = ids.next();
+                    if (id <= previous) {
+                        throw new IllegalStateException("Id went backwards: " + id + " after " + previous);
+                    }
+                    previous = id;
+                }
+                sink += previous;
+            });
+            System.out.printf("%7d | %12.0f%n", threads, (double) threads * idsPerThread * 1e9 / nanos);
+        }
 
-        // Transaction table
-        String[] columnNames = {"Date & Time", "Type", "Amount", "Description"};
-        java.util.List<Transaction> transactions = currentAccount.getTransactionHistory();
-        Object[][] data = new Object[transactions.size()][4];
+        final int accountCount = 10_000;
+        final int perAccount = 100;
+        final int scans = 20;
+        final int lookups = 1_000_000;
+        var bank = new Bank("Benchmark");
+        var accounts = new Account[accountCount];
+        for (int i = 0; i < accountCount; i++) {
+            accounts[i] = bank.newAccount(String.valueOf(30_000_000 + i), "0000", "Benchmark", 0);
+        }
+        bank.addAccounts(accounts, accountCount);
+        var date = new Date();
+        for (int round = 0; round < perAccount; round++) {
+            for (Account account : accounts) {
+                account.depositAt(1, date);
+            }
+        }
 
-        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+        // Ids spread over the whole bank, oldest and newest alike
+        var random = new java.util.Random(42);
+        var wanted = new long[1024];
+        for (int i = 0; i < wanted.length; i++) {
+            var history = accounts[random.nextInt(accountCount)].getTransactionHistory();
+            wanted[i] = history.get(random.nextInt(history.size())).getId();
+        }
 
-        for (int i = 0; i < transactions.size(); i++) {
-            Transaction t = transactions.get(i);
-            data[i][0] = dateFormat.format(t.getTimestamp());
-            data[i][1] = t.getType().toString();
-            data[i][2] = String.format("₹%.2f", t.getAmount());
-            data[i][3] = t.getDescription();
+        long start = System.nanoTime();
+        for (int i = 0; i < scans; i++) {
+            if (scanForTransaction(accounts, wanted[i]) == null) {
+                throw new IllegalStateException("Lost transaction " + wanted[i]);
+            }
         }
+        double scanMicros = (System.nanoTime() - start) / 1e3 / scans;
 
-        JTable table = new JTable(data, columnNames);
-        table.setPreferredScrollableViewportSize(new Dimension(450, 300));
-        table.setFillsViewportHeight(true);
-        table.getColumnModel().getColumn(0).setPreferredWidth(150);
-        table.getColumnModel().getColumn(1).setPreferredWidth(80);
-        table.getColumnModel().getColumn(2).setPreferredWidth(80);
-        table.getColumnModel().getColumn(3).setPreferredWidth(200);
+        start = System.nanoTime();
+        bank.findTransaction(wanted[0]);
+        double buildMillis = (System.nanoTime() - start) / 1e6;
 
-        // Add sorting capability
-        table.setAutoCreateRowSorter(true);
+        start = System.nanoTime();
+        for (int i = 0; i < lookups; i++) {
+            Transaction found = bank.findTransaction(wanted[i & (wanted.length - 1)]);
+            if (found == null || found.getId() != wanted[i & (wanted.length - 1)]) {
+                throw new IllegalStateException("Index lost transaction " + wanted[i & (wanted.length - 1)]);
+            }
+            sink += found.getAmount();
+        }
+        double indexMicros = (System.nanoTime() - start) / 1e3 / lookups;
 
-        JScrollPane scrollPane = new JScrollPane(table);
+        System.out.printf("""
 
-        // Statistics panel
-        JPanel statsPanel = new JPanel();
-        statsPanel.setLayout(new GridLayout(3, 1));
-        statsPanel.setBorder(BorderFactory.createTitledBorder("Transaction Statistics"));
+            Find a transaction by id (%,d accounts x %d transactions)
+            Method                             | us/lookup
+            ------------------------------------------------
+            %-35s| %12.2f
+            %-35s| %12.2f   (index built in %.0f ms)
+            """, accountCount, perAccount, "Scan every history", scanMicros, "Bank transaction index", indexMicros,
+                buildMillis);
+    }
 
-        // Formatter for currency
-        // Using Indian Rupee format
-        var formatter = NumberFormat.getCurrencyInstance(new Locale("en", "IN"));
+    private static Transaction scanForTransaction(Account[] accounts, long id) {
+        for (Account account : accounts) {
+            HistoryPage page = account.getHistoryPage(256);
+            while (true) {
+                for (Transaction t : page.transactions()) {
+                    if (t.getId() == id) {
+                        return t;
+                    }
+                }
+                if (!page.hasMore()) {
+                    break;
+                }
+                page = account.getHistoryPage(page.nextToken(), 256);
+            }
+        }
+        return null;
+    }
 
-        // Calculate totals
-        double depositTotal = currentAccount.getTotalForTransactionType(TransactionType.DEPOSIT);
-        double withdrawalTotal = currentAccount.getTotalForTransactionType(TransactionType.WITHDRAWAL);
-        double transferTotal = currentAccount.getTotalForTransactionType(TransactionType.TRANSFER);
+    /**
+     * Compares formatting amounts with a NumberFormat, as Money.format used
+     * to, against the hand-written rupee formatter, in time and bytes
+     * allocated per amount.
+     */
+    static void rupeeFormatting() {
+        final int amounts = 1_000_000;
+        System.out.print("""
 
-        JLabel depositsLabel = new JLabel("Total Deposits: " + formatter.format(depositTotal));
-        JLabel withdrawalsLabel = new JLabel("Total Withdrawals: " + formatter.format(withdrawalTotal));
-        JLabel transfersLabel = new JLabel("Total Transfers: " + formatter.format(transferTotal));
+            Rupee formatting (1,000,000 amounts)
+            Formatter                          | Bytes/amount | ns/amount
+            -------------------------------------------------------------
+            """);
 
-        statsPanel.add(depositsLabel);
-        statsPanel.add(withdrawalsLabel);
-        statsPanel.add(transfersLabel);
+        var random = new java.util.Random(42);
+        var paise = new long[4096];
+        for (int i = 0; i < paise.length; i++) {
+            paise[i] = random.nextLong(Money.ofRupees(100_000_000)) * (i % 5 == 0 ? -1 : 1);
+        }
 
-        // No transactions message
-        JPanel contentPanel = new JPanel(new BorderLayout());
-        if (transactions.isEmpty()) {
-            contentPanel.add(new JLabel("No transactions found."), BorderLayout.CENTER);
-        } else {
-            contentPanel.add(scrollPane, BorderLayout.CENTER);
-            contentPanel.add(statsPanel, BorderLayout.SOUTH);
+        // Same output apart from where the grouping commas go
+        var jdk = NumberFormat.getCurrencyInstance(Locale.of("en", "IN"));
+        var builder = new StringBuilder(32);
+        var buffer = ByteBuffer.allocate(64);
+        for (long amount : paise) {
+            String expected = jdk.format(BigDecimal.valueOf(amount, 2)).replace(",", "");
+            String formatted = Money.format(amount);
+            builder.setLength(0);
+            buffer.clear();
+            Money.put(buffer, amount).flip();
+            if (!formatted.replace(",", "").equals(expected) || !Money.appendTo(builder, amount).toString().equals(formatted)
+                    || !StandardCharsets.UTF_8.decode(buffer).toString().equals(formatted)) {
+                throw new IllegalStateException("Formatted " + amount + " as " + formatted + ", expected " + expected);
+            }
         }
 
-        // Back button
-        JButton backButton = new JButton("Back to Main Menu");
-        JPanel buttonPanel = new JPanel();
-        buttonPanel.add(backButton);
+        for (int round = 0; round < 2; round++) { // the first round warms up
+            long bytes = allocatedBytes();
+            long start = System.nanoTime();
+            for (int i = 0; i < amounts; i++) {
+                sink += NumberFormat.getCurrencyInstance(Locale.of("en", "IN"))
+                        .format(BigDecimal.valueOf(paise[i & 4095], 2)).length();
+            }
+            printDescriptionRow("NumberFormat per call", bytes, start, amounts, round);
 
-        // Add components to the panel
-        historyPanel.add(headerLabel, BorderLayout.NORTH);
-        historyPanel.add(contentPanel, BorderLayout.CENTER);
-        historyPanel.add(buttonPanel, BorderLayout.SOUTH);
+            bytes = allocatedBytes();
+            start = System.nanoTime();
+            for (int i = 0; i < amounts; i++) {
+                sink += jdk.format(BigDecimal.valueOf(paise[i & 4095], 2)).length();
+            }
+            printDescriptionRow("Cached NumberFormat", bytes, start, amounts, round);
 
-        // Back button action
-        backButton.addActionListener(e -> showPanel(mainMenuPanel));
+            bytes = allocatedBytes();
+            start = System.nanoTime();
+            for (int i = 0; i < amounts; i++) {
+                sink += Money.format(paise[i & 4095]).length();
+            }
+            printDescriptionRow("Money.format", bytes, start, amounts, round);
+
+            bytes = allocatedBytes();
+            start = System.nanoTime();
+            for (int i = 0; i < amounts; i++) {
+                builder.setLength(0);
+                sink += Money.appendTo(builder, paise[i & 4095]).length();
+            }
+            printDescriptionRow("Money.appendTo, reused builder", bytes, start, amounts, round);
+
+            bytes = allocatedBytes();
+            start = System.nanoTime();
+            for (int i = 0; i < amounts; i++) {
+                buffer.clear();
+                sink += Money.put(buffer, paise[i & 4095]).position();
+            }
+            printDescriptionRow("Money.put, reused buffer", bytes, start, amounts, round);
+        }
     }
 
     /**
-     * Creates the change PIN panel
+     * Measures rendering the timestamps of a 100,000-row statement with a
+     * SimpleDateFormat per row, one shared SimpleDateFormat and the cached
+     * Timestamps encoder.
      */
-    private void createChangePinPanel() {
-        changePinPanel = new JPanel();
-        changePinPanel.setLayout(new BoxLayout(changePinPanel, BoxLayout.Y_AXIS));
-        changePinPanel.setBorder(BorderFactory.createEmptyBorder(20, 20, 20, 20));
-
-        // Header
-        JLabel headerLabel = new JLabel("Change PIN");
-        headerLabel.setFont(new Font("Arial", Font.BOLD, 24));
-        headerLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
+    static void timestampRendering() {
+        final int rows = 100_000;
+        System.out.print("""
 
-        // Current PIN input
-        JPanel currentPinPanel = new JPanel();
-        currentPinPanel.setLayout(new FlowLayout(FlowLayout.CENTER));
-        JLabel currentPinLabel = new JLabel("Current PIN: ");
-        JPasswordField currentPinField = new JPasswordField(10);
-        currentPinPanel.add(currentPinLabel);
-        currentPinPanel.add(currentPinField);
+            Statement timestamps (100,000 rows, a few per second)
+            Encoder                            | Bytes/row    | ns/row
+            -------------------------------------------------------------
+            """);
 
-        // New PIN input
-        JPanel newPinPanel = new JPanel();
-        newPinPanel.setLayout(new FlowLayout(FlowLayout.CENTER));
-        JLabel newPinLabel = new JLabel("New PIN: ");
-        JPasswordField newPinField = new JPasswordField(10);
-        newPinPanel.add(newPinLabel);
-        newPinPanel.add(newPinField);
+        var random = new java.util.Random(42);
+        var timestamps = new long[rows];
+        long time = System.currentTimeMillis() - 30L * 86_400_000;
+        for (int i = 0; i < rows; i++) {
+            time += random.nextInt(500);
+            timestamps[i] = time;
+        }
 
-        // Confirm PIN input
-        JPanel confirmPinPanel = new JPanel();
-        confirmPinPanel.setLayout(new FlowLayout(FlowLayout.CENTER));
-        JLabel confirmPinLabel = new JLabel("Confirm New PIN: ");
-        JPasswordField confirmPinField = new JPasswordField(10);
-        confirmPinPanel.add(confirmPinLabel);
-        confirmPinPanel.add(confirmPinField);
+        // Spot-check against the JDK over a few years, daylight-saving changes included
+        var jdk = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+        for (int i = 0; i < 100_000; i++) {
+            long millis = timestamps[0] + (random.nextLong() % (5L * 365 * 86_400_000));
+            if (!Timestamps.format(millis).equals(jdk.format(new Date(millis)))) {
+                throw new IllegalStateException("Formatted " + millis + " as " + Timestamps.format(millis)
+                        + ", expected " + jdk.format(new Date(millis)));
+            }
+        }
 
-        // PIN strength indicator
-        JProgressBar strengthBar = new JProgressBar(0, 4);
-        strengthBar.setValue(0);
-        strengthBar.setStringPainted(true);
-        strengthBar.setString("PIN Strength");
-        strengthBar.setMaximumSize(new Dimension(200, 20));
-        strengthBar.setAlignmentX(Component.CENTER_ALIGNMENT);
+        for (int round = 0; round < 2; round++) { // the first round warms up
+            long bytes = allocatedBytes();
+            long start = System.nanoTime();
+            for (long millis : timestamps) {
+                sink += new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date(millis)).length();
+            }
+            printDescriptionRow("SimpleDateFormat per row", bytes, start, rows, round);
 
-        // PIN requirements info
-        JLabel requirementsLabel = new JLabel("PIN should be at least 4 digits");
-        requirementsLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
-        requirementsLabel.setForeground(Color.GRAY);
+            bytes = allocatedBytes();
+            start = System.nanoTime();
+            for (long millis : timestamps) {
+                sink += jdk.format(new Date(millis)).length();
+            }
+            printDescriptionRow("Shared SimpleDateFormat", bytes, start, rows, round);
 
-        // Add document listener to new PIN field to calculate strength
-        newPinField.getDocument().addDocumentListener(new javax.swing.event.DocumentListener() {
-            @Override
-            public void insertUpdate(javax.swing.event.DocumentEvent e) { updateStrength(); }
-            @Override
-            public void removeUpdate(javax.swing.event.DocumentEvent e) { updateStrength(); }
-            @Override
-            public void changedUpdate(javax.swing.event.DocumentEvent e) { updateStrength(); }
+            bytes = allocatedBytes();
+            start = System.nanoTime();
+            for (long millis : timestamps) {
+                sink += Timestamps.format(millis).length();
+            }
+            printDescriptionRow("Timestamps.format", bytes, start, rows, round);
 
-            private void updateStrength() {
-                String pin = new String(newPinField.getPassword());
+            var statement = new StringBuilder(rows * (Timestamps.LENGTH + 1));
+            bytes = allocatedBytes();
+            start = System.nanoTime();
+            for (long millis : timestamps) {
+                Timestamps.appendTo(statement, millis).append('\n');
+            }
+            sink += statement.length();
+            printDescriptionRow("Timestamps.appendTo, one builder", bytes, start, rows, round);
+        }
+    }
 
-                // Calculate strength (simple example)
-                int strength = 0;
-                if (pin.length() >= 4) strength++;
-                if (pin.length() >= 6) strength++;
-                if (!pin.matches("\\d+")) strength++; // Contains non-digits
-                if (pin.matches(".*[!@#$%^&*()].*")) strength++; // Contains special chars
+    /**
+     * Measures exporting an account's history as TransactionDetails: by
+     * copying it into Transactions and converting each, against the
+     * details stream that builds the records straight from the store.
+     */
+    static void detailsExport() {
+        final int transactions = 2_000_000;
+        System.out.print("""
 
-                strengthBar.setValue(strength);
+            TransactionDetails export (2,000,000 transactions)
+            Method                             | Bytes/record | ns/record    | Records/sec
+            -----------------------------------------------------------------------------
+            """);
 
-                // Update color based on strength
-                if (strength < 2) {
-                    strengthBar.setForeground(Color.RED);
-                    strengthBar.setString("Weak");
-                } else if (strength < 3) {
-                    strengthBar.setForeground(Color.YELLOW);
-                    strengthBar.setString("Medium");
+        var account = new Account("10000000", "0000", "Benchmark", Money.ofRupees(1_000_000_000),
+                TransactionStore.inMemory(1 << 20));
+        var other = new Account("20000000", "0000", "Benchmark", 0, TransactionStore.inMemory(1 << 20));
+        long time = System.currentTimeMillis() - transactions;
+        try {
+            for (int i = 0; i < transactions; i++) {
+                if (i % 4 == 0) {
+                    account.transferAt(other, 1, new Date(time + i));
                 } else {
-                    strengthBar.setForeground(Color.GREEN);
-                    strengthBar.setString("Strong");
+                    account.depositAt(1, new Date(time + i));
                 }
             }
-        });
-
-        // Change PIN button
-        JButton changePinButton = new JButton("Change PIN");
-        changePinButton.setAlignmentX(Component.CENTER_ALIGNMENT);
+        } catch (InsufficientFundsException e) {
+            throw new IllegalStateException(e); // the balance covers every transfer
+        }
 
-        // Status label
-        JLabel statusLabel = new JLabel(" ");
-        statusLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
+        for (int round = 0; round < 2; round++) { // the first round warms up
+            long bytes = allocatedBytes();
+            long start = System.nanoTime();
+            long latest = account.getTransactionHistory().stream()
+                    .map(Transaction::toDetails)
+                    .mapToLong(details -> details.timestamp().toEpochMilli())
+                    .max().orElse(0);
+            printExportRow("History copy, toDetails each", bytes, start, transactions, round);
+
+            bytes = allocatedBytes();
+            start = System.nanoTime();
+            long streamed = account.getTransactionDetails()
+                    .mapToLong(details -> details.timestamp().toEpochMilli())
+                    .max().orElse(0);
+            printExportRow("Details stream", bytes, start, transactions, round);
+            if (streamed != latest || latest != time + transactions - 1) {
+                throw new IllegalStateException("Export lost the transaction times");
+            }
+        }
+    }
 
-        // Back button
-        JButton backButton = new JButton("Back to Main Menu");
-        backButton.setAlignmentX(Component.CENTER_ALIGNMENT);
+    private static void printExportRow(String label, long bytesBefore, long start, int records, int round) {
+        long nanos = System.nanoTime() - start;
+        long bytes = allocatedBytes() - bytesBefore;
+        if (round > 0) {
+            System.out.printf("%-35s| %12.1f | %12.1f | %12.0f%n", label, (double) bytes / records,
+                    (double) nanos / records, records * 1e9 / nanos);
+        }
+    }
 
-        // Add components to the panel
-        changePinPanel.add(headerLabel);
-        changePinPanel.add(Box.createVerticalStrut(30));
-        changePinPanel.add(currentPinPanel);
-        changePinPanel.add(Box.createVerticalStrut(10));
-        changePinPanel.add(newPinPanel);
-        changePinPanel.add(Box.createVerticalStrut(5));
-        changePinPanel.add(strengthBar);
-        changePinPanel.add(Box.createVerticalStrut(5));
-        changePinPanel.add(requirementsLabel);
-        changePinPanel.add(Box.createVerticalStrut(10));
-        changePinPanel.add(confirmPinPanel);
-        changePinPanel.add(Box.createVerticalStrut(20));
-        changePinPanel.add(changePinButton);
-        changePinPanel.add(Box.createVerticalStrut(10));
-        changePinPanel.add(statusLabel);
-        changePinPanel.add(Box.createVerticalStrut(30));
-        changePinPanel.add(backButton);
+    /**
+     * Compares declining withdrawals by throwing InsufficientFundsException
+     * against the result-returning tryWithdraw, with 8% of withdrawals
+     * declined (a typical ATM day) and with every one declined.
+     */
+    static void declinedWithdrawals() {
+        final int withdrawals = 1_000_000;
+        System.out.print("""
 
-        // Change PIN button action
-        changePinButton.addActionListener(e -> {
-            String currentPin = new String(currentPinField.getPassword());
-            String newPin = new String(newPinField.getPassword());
-            String confirmPin = new String(confirmPinField.getPassword());
+            Declined withdrawals (1,000,000 withdrawals)
+            Path                               | Bytes/op     | ns/op
+            -------------------------------------------------------------
+            """);
 
-            if (newPin.length() < 4) {
-                statusLabel.setForeground(Color.RED);
-                statusLabel.setText("PIN must be at least 4 characters");
-                return;
+        var account = new Account("10000000", "0000", "Benchmark", Money.ofRupees(1_000_000_000),
+                TransactionStore.inMemory(1 << 20));
+        var date = new Date();
+        var result = new DebitResult();
+        long tooMuch = Long.MAX_VALUE / 2;
+        for (int round = 0; round < 2; round++) { // the first round warms up
+            for (int percent : new int[] {8, 100}) {
+                long bytes = allocatedBytes();
+                long start = System.nanoTime();
+                int declined = 0;
+                for (int i = 0; i < withdrawals; i++) {
+                    try {
+                        account.withdrawAt(i % 100 < percent ? tooMuch : 1, date);
+                    } catch (InsufficientFundsException e) {
+                        declined++;
+                    }
+                }
+                printDescriptionRow("Exception, " + percent + "% declined", bytes, start, withdrawals, round);
+
+                bytes = allocatedBytes();
+                start = System.nanoTime();
+                int refused = 0;
+                for (int i = 0; i < withdrawals; i++) {
+                    if (!account.tryWithdrawAt(i % 100 < percent ? tooMuch : 1, date, result).isApproved()) {
+                        refused++;
+                    }
+                }
+                printDescriptionRow("DebitResult, " + percent + "% declined", bytes, start, withdrawals, round);
+                if (declined != refused || declined != withdrawals / 100 * percent) {
+                    throw new IllegalStateException("Declined " + declined + " by exception but " + refused + " by result");
+                }
             }
+        }
+    }
 
-            if (!newPin.equals(confirmPin)) {
-                statusLabel.setForeground(Color.RED);
-                statusLabel.setText("PINs do not match. Please try again.");
-                return;
-            }
+    private static void printHistoryRow(String label, double bytesPerTransaction, long scanNanos, int scans, int transactions) {
+        System.out.printf("%-35s| %12.1f | %12.2f | %12.2f%n", label, bytesPerTransaction,
+                scanNanos / 1e6 / scans, (double) scanNanos / scans / transactions);
+    }
 
-            boolean success = currentAccount.changePin(currentPin, newPin);
+    private static long usedHeapAfterGc() {
+        var runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
 
-            if (success) {
-                statusLabel.setForeground(Color.GREEN.darker());
-                statusLabel.setText("PIN changed successfully!");
-                currentPinField.setText("");
-                newPinField.setText("");
-                confirmPinField.setText("");
-                strengthBar.setValue(0);
-                strengthBar.setString("PIN Strength");
-            } else {
-                statusLabel.setForeground(Color.RED);
-                statusLabel.setText("PIN change failed. Incorrect current PIN.");
+    private static void runContentionRound(int threads, int ops) {
+        var account = new Account("900000", "0000", "Warm-up", Money.ofRupees(1_000));
+        timeThreads(threads, worker -> {
+            for (int i = 0; i < ops / 2 / threads; i++) {
+                account.deposit(Money.ofRupees(10));
+                try {
+                    account.withdraw(Money.ofRupees(10));
+                } catch (InsufficientFundsException ignored) {
+                }
             }
         });
-
-        // Back button action
-        backButton.addActionListener(e -> showPanel(mainMenuPanel));
     }
 
     /**
-     * Shows the specified panel and hides all others
-     *
-     * Note: Had to implement this helper method after struggling with CardLayout,
-     * which was not working well for this use case. This approach is cleaner anyway.
-     *
-     * - Rahul (22-Mar-2025)
+     * Starts the given number of threads together and returns how long it
+     * took until the last one finished, in nanoseconds.
      */
-    private void showPanel(JPanel panel) {
-        getContentPane().removeAll();
-        getContentPane().add(panel);
-        revalidate();
-        repaint();
+    static long timeThreads(int threads, java.util.function.IntConsumer body) {
+        var ready = new CountDownLatch(threads);
+        var start = new CountDownLatch(1);
+        var done = new CountDownLatch(threads);
+
+        for (int t = 0; t < threads; t++) {
+            final int worker = t;
+            var thread = new Thread(() -> {
+                ready.countDown();
+                try {
+                    start.await();
+                    body.accept(worker);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+            thread.start();
+        }
+
+        try {
+            ready.await();
+            long begin = System.nanoTime();
+            start.countDown();
+            done.await();
+            return System.nanoTime() - begin;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Benchmark interrupted", e);
+        }
     }
-}
\ No newline at end of file
+}